@@ -0,0 +1,203 @@
+package com.shoppingmall.cache;
+
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.CategorySummary;
+import com.shoppingmall.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Versioned in-memory list of categories with their active product counts.
+ *
+ * Built from MySQL at startup (or on demand) and then maintained incrementally: after a
+ * product write the product's current category is re-read by primary key and the counts
+ * are adjusted. Every effective change bumps the version, which also drives the ETag of
+ * GET /api/products/categories. Readers only see immutable snapshots.
+ *
+ * Refreshes read MySQL outside the lock, so each read takes a ticket first and is applied only
+ * if no read started later (or a rebuild) has been applied for that product already; a slow
+ * read can never overwrite a newer one.
+ */
+@Component
+public class CategoryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryCache.class);
+
+    private final ProductMapper productMapper;
+
+    // Distinguishes versions produced by different processes / restarts
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+
+    // Guarded by this
+    private final Map<Long, String> categoryByProductId = new HashMap<>();
+    private final TreeMap<String, Integer> counts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private long version;
+    private long nextTicket;
+    private long rebuiltAtTicket;
+    // Per product with refreshes in flight: how many, and the latest ticket applied
+    private final Map<Long, Integer> refreshesInFlight = new HashMap<>();
+    private final Map<Long, Long> appliedTickets = new HashMap<>();
+
+    private volatile Snapshot snapshot;
+
+    public CategoryCache(ProductMapper productMapper) {
+        this.productMapper = productMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warn("Failed to build category cache at startup, will retry on first request: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Current categories; builds the cache on first use if startup loading failed
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            rebuild();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * Reload every active product's category from MySQL
+     */
+    public synchronized void rebuild() {
+        rebuiltAtTicket = ++nextTicket;
+        List<Product> assignments = productMapper.findActiveCategoryAssignments();
+        categoryByProductId.clear();
+        counts.clear();
+        for (Product product : assignments) {
+            categoryByProductId.put(product.getId(), product.getCategory());
+            counts.merge(product.getCategory(), 1, Integer::sum);
+        }
+        version++;
+        publish();
+        logger.info("Category cache built: {} categories over {} active products", counts.size(), assignments.size());
+    }
+
+    /**
+     * Re-read one product's category and adjust counts. Called after a write commits; a failed
+     * read is logged and leaves the cache to be rebuilt on the next request.
+     */
+    public void refresh(Long productId) {
+        if (productId == null || snapshot == null) {
+            return;
+        }
+        long ticket;
+        synchronized (this) {
+            ticket = ++nextTicket;
+            refreshesInFlight.merge(productId, 1, Integer::sum);
+        }
+
+        String current;
+        try {
+            current = productMapper.findActiveCategoryById(productId);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh category of product {}, rebuilding on next request: {}",
+                    productId, e.getMessage());
+            synchronized (this) {
+                snapshot = null;
+                finishRefresh(productId);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            try {
+                apply(productId, ticket, current);
+            } finally {
+                finishRefresh(productId);
+            }
+        }
+    }
+
+    // Guarded by this
+
+    private void apply(Long productId, long ticket, String current) {
+        if (ticket < rebuiltAtTicket || ticket < appliedTickets.getOrDefault(productId, 0L)) {
+            return;
+        }
+        appliedTickets.put(productId, ticket);
+        String previous = current != null
+                ? categoryByProductId.put(productId, current)
+                : categoryByProductId.remove(productId);
+        if (Objects.equals(previous, current)) {
+            return;
+        }
+        if (previous != null) {
+            counts.computeIfPresent(previous, (category, count) -> count > 1 ? count - 1 : null);
+        }
+        if (current != null) {
+            counts.merge(current, 1, Integer::sum);
+        }
+        version++;
+        publish();
+    }
+
+    /**
+     * Forget the product's applied ticket once no refresh of it is in flight
+     */
+    private void finishRefresh(Long productId) {
+        if (refreshesInFlight.merge(productId, -1, Integer::sum) <= 0) {
+            refreshesInFlight.remove(productId);
+            appliedTickets.remove(productId);
+        }
+    }
+
+    private void publish() {
+        List<CategorySummary> categories = new ArrayList<>(counts.size());
+        counts.forEach((name, count) -> categories.add(new CategorySummary(name, count)));
+        snapshot = new Snapshot(Collections.unmodifiableList(categories), version,
+                "\"categories-" + instanceTag + "-" + version + "\"");
+    }
+
+    public static final class Snapshot {
+        private final List<CategorySummary> categories;
+        private final long version;
+        private final String eTag;
+
+        private Snapshot(List<CategorySummary> categories, long version, String eTag) {
+            this.categories = categories;
+            this.version = version;
+            this.eTag = eTag;
+        }
+
+        public List<CategorySummary> getCategories() {
+            return categories;
+        }
+
+        public List<String> getNames() {
+            List<String> names = new ArrayList<>(categories.size());
+            for (CategorySummary category : categories) {
+                names.add(category.getName());
+            }
+            return names;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+}
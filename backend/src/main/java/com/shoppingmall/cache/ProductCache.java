@@ -0,0 +1,336 @@
+package com.shoppingmall.cache;
+
+import com.shoppingmall.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for single products, keyed by product id.
+ *
+ * Entries expire after a TTL and are evicted with a second-chance (CLOCK) policy once the
+ * cache grows past its maximum size, so reads never take a lock. Concurrent misses on the
+ * same id share a single load, and "not found" results are cached for a shorter TTL.
+ * Cached instances are never handed out directly; callers always receive a copy.
+ */
+@Component
+public class ProductCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCache.class);
+
+    /** Invalidation times are kept at least this long; no product load runs longer */
+    private static final long INVALIDATION_MEMORY_NANOS = 300_000_000_000L;
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
+    private final ConcurrentHashMap<Long, CompletableFuture<Optional<Product>>> inFlight = new ConcurrentHashMap<>();
+
+    // When each product (or everything) was last invalidated, so that a load which raced with
+    // a write to that product is not cached; writes to other products don't matter
+    private final ConcurrentHashMap<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long allInvalidatedAt = System.nanoTime() - INVALIDATION_MEMORY_NANOS;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProductCache(@Value("${product.cache.enabled:true}") boolean enabled,
+                        @Value("${product.cache.max-size:10000}") int maxSize,
+                        @Value("${product.cache.ttl-seconds:300}") long ttlSeconds,
+                        @Value("${product.cache.negative-ttl-seconds:10}") long negativeTtlSeconds) {
+        this.enabled = enabled;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.negativeTtlNanos = negativeTtlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Return the product for the given id, loading it with the loader on a miss.
+     * Only one load per id runs at a time; concurrent callers wait for its result.
+     */
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        if (!enabled || id == null) {
+            return loader.apply(id);
+        }
+
+        long now = System.nanoTime();
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            if (entry.expiresAt - now > 0) {
+                entry.referenced = true;
+                if (entry.product == null) {
+                    negativeHits.incrementAndGet();
+                    return Optional.empty();
+                }
+                hits.incrementAndGet();
+                return Optional.of(new Product(entry.product));
+            }
+            if (entries.remove(id, entry)) {
+                expirations.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<Optional<Product>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<Product>> existing = inFlight.putIfAbsent(id, load);
+        if (existing != null) {
+            coalescedLoads.incrementAndGet();
+            return copyOf(awaitLoad(existing));
+        }
+
+        try {
+            long startedAt = System.nanoTime();
+            loads.incrementAndGet();
+            Optional<Product> loaded = loader.apply(id);
+            put(id, loaded.orElse(null), startedAt);
+            load.complete(loaded);
+            return copyOf(loaded);
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, load);
+        }
+    }
+
+    /**
+     * Return the cached products for the given ids and load all misses with one loader call.
+     * Ids the loader does not return are cached as "not found". Batch loads are not
+     * deduplicated against concurrent single-id loads.
+     */
+    public Map<Long, Product> getAll(Collection<Long> ids, Function<List<Long>, List<Product>> loader) {
+        Map<Long, Product> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.nanoTime();
+
+        for (Long id : ids) {
+            Entry entry = enabled ? entries.get(id) : null;
+            if (entry != null && entry.expiresAt - now > 0) {
+                entry.referenced = true;
+                if (entry.product != null) {
+                    hits.incrementAndGet();
+                    found.put(id, new Product(entry.product));
+                } else {
+                    negativeHits.incrementAndGet();
+                }
+            } else {
+                if (entry != null && entries.remove(id, entry)) {
+                    expirations.incrementAndGet();
+                }
+                misses.incrementAndGet();
+                missing.add(id);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        long startedAt = System.nanoTime();
+        List<Product> loaded;
+        try {
+            loads.incrementAndGet();
+            loaded = loader.apply(missing);
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            throw e;
+        }
+
+        Set<Long> loadedIds = new HashSet<>();
+        for (Product product : loaded) {
+            loadedIds.add(product.getId());
+            if (enabled) {
+                put(product.getId(), product, startedAt);
+            }
+            found.put(product.getId(), new Product(product));
+        }
+        if (enabled) {
+            for (Long id : missing) {
+                if (!loadedIds.contains(id)) {
+                    put(id, null, startedAt);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Drop the cached entry (positive or negative) for a product
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (invalidatedAt.size() >= maxSize * 4) {
+            invalidatedAt.values().removeIf(at -> now - at > INVALIDATION_MEMORY_NANOS);
+        }
+        invalidatedAt.put(id, now);
+        invalidations.incrementAndGet();
+        entries.remove(id);
+        inFlight.remove(id);
+    }
+
+    /**
+     * Drop every cached entry
+     */
+    public void invalidateAll() {
+        allInvalidatedAt = System.nanoTime();
+        invalidations.incrementAndGet();
+        entries.clear();
+        evictionQueue.clear();
+        evictionQueueSize.set(0);
+        inFlight.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Snapshot of hit/miss/eviction counters
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get() + negativeHits.get();
+        long requestCount = hitCount + misses.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits.get());
+        stats.put("negativeHits", negativeHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", requestCount == 0 ? 0.0 : (double) hitCount / requestCount);
+        stats.put("loads", loads.get());
+        stats.put("coalescedLoads", coalescedLoads.get());
+        stats.put("loadFailures", loadFailures.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * Cache a load that started at startedAt, unless the product was invalidated since
+     */
+    private void put(Long id, Product product, long startedAt) {
+        long ttl = product != null ? ttlNanos : negativeTtlNanos;
+        if (ttl <= 0 || invalidatedSince(id, startedAt)) {
+            return;
+        }
+
+        Entry entry = new Entry(id, product != null ? new Product(product) : null, System.nanoTime() + ttl);
+        entries.put(id, entry);
+        if (invalidatedSince(id, startedAt)) {
+            // An invalidation landed between the check and the put; it may have missed this entry
+            entries.remove(id, entry);
+            return;
+        }
+        evictionQueue.offer(entry);
+        evictionQueueSize.incrementAndGet();
+        evictIfNeeded();
+    }
+
+    /**
+     * Second-chance eviction: entries read since they were last examined are re-queued once
+     * before being dropped. Queue nodes whose entry was already replaced or invalidated are
+     * discarded on the way.
+     */
+    private void evictIfNeeded() {
+        int budget = maxSize;
+        while ((entries.size() > maxSize || evictionQueueSize.get() > maxSize * 2) && budget-- > 0) {
+            Entry candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return;
+            }
+            evictionQueueSize.decrementAndGet();
+
+            if (entries.get(candidate.id) != candidate) {
+                continue;
+            }
+            if (candidate.referenced && entries.size() > maxSize) {
+                candidate.referenced = false;
+                evictionQueue.offer(candidate);
+                evictionQueueSize.incrementAndGet();
+                continue;
+            }
+            if (entries.size() > maxSize && entries.remove(candidate.id, candidate)) {
+                evictions.incrementAndGet();
+            } else if (entries.get(candidate.id) == candidate) {
+                // Still live and under the size limit: keep tracking it
+                evictionQueue.offer(candidate);
+                evictionQueueSize.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private boolean invalidatedSince(Long id, long startedAt) {
+        if (allInvalidatedAt - startedAt >= 0) {
+            return true;
+        }
+        Long at = invalidatedAt.get(id);
+        return at != null && at - startedAt >= 0;
+    }
+
+    private Optional<Product> awaitLoad(CompletableFuture<Optional<Product>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            logger.warn("Product load failed: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private Optional<Product> copyOf(Optional<Product> product) {
+        return product.map(Product::new);
+    }
+
+    private static final class Entry {
+        private final Long id;
+        private final Product product;
+        private final long expiresAt;
+        private volatile boolean referenced;
+
+        private Entry(Long id, Product product, long expiresAt) {
+            this.id = id;
+            this.product = product;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.shoppingmall.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches listing totals per filter (category, price range, count cap).
+ *
+ * Totals only change when a product is created, deleted, activated/deactivated or has its
+ * category or price edited, so ProductService invalidates the whole cache on those writes.
+ * A generation number guards against storing a count that was computed concurrently with
+ * an invalidation. Entries also expire after a TTL to bound staleness from other nodes.
+ */
+@Component
+public class ProductCountCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProductCountCache(@Value("${product.count-cache.enabled:true}") boolean enabled,
+                             @Value("${product.count-cache.max-entries:1000}") int maxEntries,
+                             @Value("${product.count-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    public static String key(String category, BigDecimal minPrice, BigDecimal maxPrice, Integer cap) {
+        return (category != null ? category : "") + "|"
+                + (minPrice != null ? minPrice.stripTrailingZeros().toPlainString() : "") + "|"
+                + (maxPrice != null ? maxPrice.stripTrailingZeros().toPlainString() : "") + "|"
+                + (cap != null ? cap : "");
+    }
+
+    /**
+     * Cached count for the key, or null on a miss
+     */
+    public Integer get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.count;
+        }
+        if (entry != null) {
+            entries.remove(key, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Current generation; pass it back to {@link #put} so that counts computed across an
+     * invalidation are dropped
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(String key, long expectedGeneration, int count) {
+        if (!enabled || generation.get() != expectedGeneration) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            makeRoom(now);
+        }
+        Entry entry = new Entry(count, now + ttlMillis);
+        entries.put(key, entry);
+        if (generation.get() != expectedGeneration) {
+            // Invalidated between the check and the put
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Drop expired entries, or if none have expired the one closest to expiry, which is the
+     * oldest since all entries share one TTL. Only runs when the cache is full, so the scan
+     * is bounded by max-entries.
+     */
+    private void makeRoom(long now) {
+        String victim = null;
+        long victimExpiresAt = Long.MAX_VALUE;
+        boolean expired = false;
+        for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+            long expiresAt = candidate.getValue().expiresAt;
+            if (expiresAt <= now) {
+                expired |= entries.remove(candidate.getKey(), candidate.getValue());
+            } else if (expiresAt < victimExpiresAt) {
+                victim = candidate.getKey();
+                victimExpiresAt = expiresAt;
+            }
+        }
+        if (!expired && victim != null && entries.remove(victim) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final int count;
+        private final long expiresAt;
+
+        private Entry(int count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.shoppingmall.cache;
+
+import com.shoppingmall.model.ProductSearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of search results, keyed by the normalized query plus paging and filters.
+ *
+ * Head queries arrive in bursts; concurrent misses on the same key share a single search, and
+ * everyone else inside the TTL is served from memory. Each entry is tagged with the ids of the
+ * products it contains, so a stock or rating change drops exactly the results showing that product.
+ * Writes that can change which products match (create, edit, delete, activation) drop everything.
+ * Anything else, such as facet counts moving because of a product not on the page, is bounded
+ * by the TTL. Once the cache is full, entries are evicted with the same second-chance (CLOCK)
+ * policy as {@link ProductCache}, expired entries first.
+ * Cached values are shared between callers and must be treated as read-only.
+ */
+@Component
+public class SearchResultCache {
+
+    /** Invalidation times are kept at least this long; no search runs longer */
+    private static final long INVALIDATION_MEMORY_NANOS = 300_000_000_000L;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
+    private final ConcurrentHashMap<Long, Set<String>> keysByProduct = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // When each product (or everything) was last invalidated, so that a search which raced
+    // with a write to one of its products is not cached; writes to other products don't matter
+    private final ConcurrentHashMap<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long allInvalidatedAt = System.nanoTime() - INVALIDATION_MEMORY_NANOS;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong taggedInvalidations = new AtomicLong();
+    private final AtomicLong fullInvalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public SearchResultCache(@Value("${search.result-cache.enabled:true}") boolean enabled,
+                             @Value("${search.result-cache.max-entries:2000}") int maxEntries,
+                             @Value("${search.result-cache.ttl-seconds:15}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Key for a simple search: normalized query and limit
+     */
+    public static String key(String query, Integer limit) {
+        return "q|" + normalize(query) + "|" + (limit != null ? limit : "");
+    }
+
+    /**
+     * Key for a faceted search: normalized query, filters, sort and page window
+     */
+    public static String key(ProductSearchRequest request, int from, int size) {
+        ProductSearchRequest.Filters filters = request.getFilters();
+        List<String> categories = new ArrayList<>(filters.getCategory() != null ? filters.getCategory() : List.of());
+        categories.sort(null);
+        return "a|" + normalize(request.getQuery())
+                + "|" + String.join(",", categories)
+                + "|" + plain(filters.getMinPrice()) + "|" + plain(filters.getMaxPrice())
+                + "|" + plain(filters.getMinRating())
+                + "|" + Boolean.TRUE.equals(filters.getInStock())
+                + "|" + request.getSort().name() + "|" + from + "|" + size;
+    }
+
+    /**
+     * Return the cached result for the key, or run the search on a miss. Only one search per
+     * key runs at a time; concurrent callers wait for its result. productIds names the
+     * products a result contains, which become its invalidation tags.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> search, Function<T, Collection<Long>> productIds) {
+        if (!enabled || ttlNanos <= 0) {
+            return search.get();
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAt - System.nanoTime() > 0) {
+                entry.referenced = true;
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            remove(key, entry);
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            coalescedLoads.incrementAndGet();
+            return (T) awaitLoad(existing);
+        }
+
+        try {
+            long startedAt = System.nanoTime();
+            loads.incrementAndGet();
+            T result = search.get();
+            if (result != null) {
+                put(key, result, productIds.apply(result), startedAt);
+            }
+            load.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Drop every cached result that contains the product
+     */
+    public void invalidate(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (invalidatedAt.size() >= maxEntries * 4) {
+            invalidatedAt.values().removeIf(at -> now - at > INVALIDATION_MEMORY_NANOS);
+        }
+        invalidatedAt.put(productId, now);
+        taggedInvalidations.incrementAndGet();
+        Set<String> keys = keysByProduct.remove(productId);
+        if (keys != null) {
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    remove(key, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every cached result
+     */
+    public void invalidateAll() {
+        allInvalidatedAt = System.nanoTime();
+        fullInvalidations.incrementAndGet();
+        entries.clear();
+        keysByProduct.clear();
+        evictionQueue.clear();
+        evictionQueueSize.set(0);
+    }
+
+    public Map<String, Object> getStats() {
+        long requestCount = hits.get() + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("taggedProducts", keysByProduct.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", requestCount == 0 ? 0.0 : (double) hits.get() / requestCount);
+        stats.put("loads", loads.get());
+        stats.put("coalescedLoads", coalescedLoads.get());
+        stats.put("loadFailures", loadFailures.get());
+        stats.put("taggedInvalidations", taggedInvalidations.get());
+        stats.put("fullInvalidations", fullInvalidations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    private void put(String key, Object value, Collection<Long> productIds, long startedAt) {
+        List<Long> tags = productIds != null ? List.copyOf(productIds) : List.of();
+        if (invalidatedSince(tags, startedAt)) {
+            return;
+        }
+        Entry entry = new Entry(key, value, tags, System.nanoTime() + ttlNanos);
+        // Tags go in before the entry so an invalidation can never miss a visible entry
+        for (Long productId : entry.productIds) {
+            keysByProduct.computeIfAbsent(productId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        entries.put(key, entry);
+        if (invalidatedSince(tags, startedAt)) {
+            // A write landed while tagging; it may have missed this entry
+            remove(key, entry);
+            return;
+        }
+        evictionQueue.offer(entry);
+        evictionQueueSize.incrementAndGet();
+        evictIfNeeded();
+    }
+
+    private boolean invalidatedSince(List<Long> productIds, long startedAt) {
+        if (allInvalidatedAt - startedAt >= 0) {
+            return true;
+        }
+        for (Long productId : productIds) {
+            Long at = invalidatedAt.get(productId);
+            if (at != null && at - startedAt >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            for (Long productId : entry.productIds) {
+                keysByProduct.computeIfPresent(productId, (id, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    /**
+     * Second-chance eviction: expired entries go as soon as the hand reaches them, entries hit
+     * since they were last examined are re-queued once before being dropped. Queue nodes whose
+     * entry was already replaced or invalidated are discarded on the way.
+     */
+    private void evictIfNeeded() {
+        int budget = maxEntries;
+        while ((entries.size() > maxEntries || evictionQueueSize.get() > maxEntries * 2) && budget-- > 0) {
+            Entry candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return;
+            }
+            evictionQueueSize.decrementAndGet();
+
+            if (entries.get(candidate.key) != candidate) {
+                continue;
+            }
+            if (candidate.expiresAt - System.nanoTime() <= 0) {
+                remove(candidate.key, candidate);
+                expirations.incrementAndGet();
+                continue;
+            }
+            if (candidate.referenced && entries.size() > maxEntries) {
+                candidate.referenced = false;
+                evictionQueue.offer(candidate);
+                evictionQueueSize.incrementAndGet();
+                continue;
+            }
+            if (entries.size() > maxEntries) {
+                remove(candidate.key, candidate);
+                evictions.incrementAndGet();
+            } else {
+                // Still live and under the size limit: keep tracking it
+                evictionQueue.offer(candidate);
+                evictionQueueSize.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private Object awaitLoad(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lowercase, trimmed, single-spaced; "Red  Shoes " and "red shoes" share an entry
+     */
+    private static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String plain(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros().toPlainString() : "";
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Object value;
+        private final List<Long> productIds;
+        private final long expiresAt;
+        private volatile boolean referenced;
+
+        private Entry(String key, Object value, List<Long> productIds, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.productIds = productIds;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.shoppingmall.catalog;
+
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductPage;
+import com.shoppingmall.model.ProductSummary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Optional in-memory engine for product listings.
+ *
+ * Holds every active product in a {@link CatalogSnapshot} and answers
+ * filter + sort + page + count without touching MySQL. The snapshot is loaded once at startup
+ * and afterwards patched from the ProductService write paths: changed ids are collected,
+ * re-read in batches and folded into a new snapshot that replaces the old one atomically.
+ * Callers must fall back to the mapper while {@link #isServing()} is false.
+ */
+@Component
+public class CatalogEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogEngine.class);
+    private static final int REFRESH_CHUNK_SIZE = 500;
+
+    private final ProductMapper productMapper;
+    private final boolean enabled;
+    private final long refreshDelayMillis;
+
+    private final ScheduledExecutorService executor;
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private volatile CatalogSnapshot snapshot;
+    private volatile long loadedAt;
+    private volatile long lastRebuildMillis;
+    private volatile long lastPatchMillis;
+
+    public CatalogEngine(ProductMapper productMapper,
+                         @Value("${catalog.engine.enabled:false}") boolean enabled,
+                         @Value("${catalog.engine.refresh-delay-ms:200}") long refreshDelayMillis) {
+        this.productMapper = productMapper;
+        this.enabled = enabled;
+        this.refreshDelayMillis = refreshDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            executor.execute(this::loadAll);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isServing() {
+        return enabled && snapshot != null;
+    }
+
+    /**
+     * Answer a listing query from memory, or empty when the engine cannot serve it
+     */
+    public Optional<ProductPage> query(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                       String sortBy, String sortOrder, Integer offset, Integer limit) {
+        CatalogSnapshot current = snapshot;
+        if (!enabled || current == null) {
+            return Optional.empty();
+        }
+
+        CatalogSnapshot.SortKey sortKey;
+        boolean descending = false;
+        if ("price".equals(sortBy)) {
+            sortKey = CatalogSnapshot.SortKey.PRICE;
+            descending = "desc".equals(sortOrder);
+        } else if ("rating".equals(sortBy)) {
+            sortKey = CatalogSnapshot.SortKey.RATING;
+        } else if ("name".equals(sortBy)) {
+            sortKey = CatalogSnapshot.SortKey.NAME;
+        } else {
+            sortKey = CatalogSnapshot.SortKey.CREATED_AT;
+        }
+
+        return Optional.of(current.query(category, minPrice, maxPrice, sortKey, descending,
+                offset != null ? offset : 0, limit != null ? limit : 0));
+    }
+
+    /**
+     * Schedule a product to be re-read and patched into the snapshot.
+     * Calls arriving within the refresh delay are folded into one patch.
+     */
+    public void refresh(Long productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        pendingIds.add(productId);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::applyPending, refreshDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Discard the current snapshot and load everything from MySQL again
+     */
+    public void reload() {
+        if (enabled) {
+            executor.execute(this::loadAll);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        CatalogSnapshot current = snapshot;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("serving", enabled && current != null);
+        status.put("products", current != null ? current.size() : 0);
+        status.put("categories", current != null ? current.categoryCount() : 0);
+        status.put("pendingRefreshes", pendingIds.size());
+        status.put("loadedAt", loadedAt);
+        status.put("lastRebuildMillis", lastRebuildMillis);
+        status.put("lastPatchMillis", lastPatchMillis);
+        return status;
+    }
+
+    private void loadAll() {
+        try {
+            long start = System.currentTimeMillis();
+            List<ProductSummary> products = productMapper.findAllSummaries(null, null, null, null, null, null, null);
+            snapshot = CatalogSnapshot.build(products);
+            loadedAt = System.currentTimeMillis();
+            lastRebuildMillis = loadedAt - start;
+            logger.info("Catalog engine loaded {} products in {} ms", products.size(), lastRebuildMillis);
+            // Re-apply anything written while the load was running
+            if (!pendingIds.isEmpty()) {
+                applyPending();
+            }
+        } catch (Exception e) {
+            logger.error("Catalog engine failed to load products, listings stay on MySQL: ", e);
+        }
+    }
+
+    private void applyPending() {
+        refreshScheduled.set(false);
+        CatalogSnapshot current = snapshot;
+        if (current == null || pendingIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(pendingIds);
+        pendingIds.removeAll(ids);
+        try {
+            long start = System.currentTimeMillis();
+            List<ProductSummary> active = new ArrayList<>(ids.size());
+            for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + REFRESH_CHUNK_SIZE));
+                for (Product product : productMapper.findByIdsIncludingInactive(chunk)) {
+                    if (Boolean.TRUE.equals(product.getIsActive())) {
+                        active.add(new ProductSummary(product));
+                    }
+                }
+            }
+            snapshot = current.patch(ids, active);
+            lastPatchMillis = System.currentTimeMillis() - start;
+            logger.debug("Catalog engine applied {} product changes in {} ms", ids.size(), lastPatchMillis);
+        } catch (Exception e) {
+            logger.error("Catalog engine failed to apply product changes, retrying: ", e);
+            pendingIds.addAll(ids);
+            if (refreshScheduled.compareAndSet(false, true)) {
+                executor.schedule(this::applyPending, refreshDelayMillis * 10, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
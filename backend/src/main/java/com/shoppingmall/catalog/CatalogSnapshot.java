@@ -0,0 +1,450 @@
+package com.shoppingmall.catalog;
+
+import com.shoppingmall.model.ProductPage;
+import com.shoppingmall.model.ProductSummary;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable, column-oriented view of all active products.
+ *
+ * Every product column is an array indexed by row number, numbers as primitives. For every sort
+ * key there is a presorted permutation of row numbers, both over the whole catalog and per
+ * category, so a listing query is a single walk over one permutation with a price check per
+ * row; only the rows of the returned page become ProductSummary objects.
+ *
+ * {@link #patch} folds changed products into a new snapshot without sorting the catalog again.
+ * A change that keeps every filter and sort value (stock, image, review count) overwrites its
+ * row and shares the permutations. Other changes retire the old row, append the new one and
+ * merge the few appended rows into each permutation. Retired rows stay in the columns until a
+ * full build, which patch does itself once they make up a quarter of the rows.
+ */
+final class CatalogSnapshot {
+
+    enum SortKey { CREATED_AT, PRICE, RATING, NAME }
+
+    static final CatalogSnapshot EMPTY = build(List.of());
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_INSTANT = Long.MIN_VALUE;
+
+    /**
+     * Row order for one sort key, on row numbers
+     */
+    @FunctionalInterface
+    private interface RowOrder {
+        int compare(int a, int b);
+    }
+
+    private final Columns columns;
+    private final Map<String, Integer> categoryOrdinalByName;
+    private final int retiredRows;
+
+    // [sortKey][position] -> row
+    private final int[][] globalOrder;
+    // [categoryOrdinal][sortKey][position] -> row
+    private final int[][][] categoryOrder;
+
+    private CatalogSnapshot(Columns columns, Map<String, Integer> categoryOrdinalByName, int retiredRows,
+                            int[][] globalOrder, int[][][] categoryOrder) {
+        this.columns = columns;
+        this.categoryOrdinalByName = categoryOrdinalByName;
+        this.retiredRows = retiredRows;
+        this.globalOrder = globalOrder;
+        this.categoryOrder = categoryOrder;
+    }
+
+    static CatalogSnapshot build(Collection<ProductSummary> products) {
+        Map<String, Integer> categoryOrdinalByName = new HashMap<>();
+        Columns columns = new Columns(products.size());
+        for (ProductSummary product : products) {
+            columns.append(product, categoryOrdinalByName);
+        }
+
+        int n = columns.size;
+        SortKey[] keys = SortKey.values();
+        int[][] globalOrder = new int[keys.length][];
+        for (SortKey key : keys) {
+            int[] order = new int[n];
+            for (int row = 0; row < n; row++) {
+                order[row] = row;
+            }
+            sort(order, columns.order(key));
+            globalOrder[key.ordinal()] = order;
+        }
+        return new CatalogSnapshot(columns, categoryOrdinalByName, 0,
+                globalOrder, splitByCategory(globalOrder, columns, categoryOrdinalByName.size()));
+    }
+
+    /**
+     * This snapshot with the given products re-read: every id in changedIds is replaced by its
+     * row in active, or removed when active has none. This snapshot is left as it was.
+     */
+    CatalogSnapshot patch(Collection<Long> changedIds, Collection<ProductSummary> active) {
+        long[] changed = changedIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        Map<Long, ProductSummary> replacements = new HashMap<>(active.size() * 2);
+        for (ProductSummary product : active) {
+            replacements.put(product.getId(), product);
+        }
+
+        Columns next = columns.copy(replacements.size());
+        Map<String, Integer> ordinals = new HashMap<>(categoryOrdinalByName);
+        boolean[] retired = new boolean[next.ids.length];
+        int newlyRetired = 0;
+        int firstAppended = next.size;
+
+        // Walk live rows only; rows retired by earlier patches still carry their old ids
+        for (int row : globalOrder[0]) {
+            if (Arrays.binarySearch(changed, next.ids[row]) < 0) {
+                continue;
+            }
+            ProductSummary replacement = replacements.remove(next.ids[row]);
+            if (replacement != null && next.keepsOrder(row, replacement)) {
+                next.set(row, replacement, next.categoryOrdinals[row]);
+            } else {
+                retired[row] = true;
+                newlyRetired++;
+                if (replacement != null) {
+                    next.append(replacement, ordinals);
+                }
+            }
+        }
+        for (ProductSummary product : replacements.values()) {
+            next.append(product, ordinals);
+        }
+
+        int live = globalOrder[0].length - newlyRetired + (next.size - firstAppended);
+        if (retiredRows + newlyRetired > live / 4) {
+            return build(next.live(retired, globalOrder[0], firstAppended));
+        }
+        if (newlyRetired == 0 && next.size == firstAppended) {
+            return new CatalogSnapshot(next, categoryOrdinalByName, retiredRows, globalOrder, categoryOrder);
+        }
+
+        SortKey[] keys = SortKey.values();
+        int[][] nextOrder = new int[keys.length][];
+        for (SortKey key : keys) {
+            RowOrder rowOrder = next.order(key);
+            int[] appended = new int[next.size - firstAppended];
+            for (int i = 0; i < appended.length; i++) {
+                appended[i] = firstAppended + i;
+            }
+            sort(appended, rowOrder);
+            nextOrder[key.ordinal()] = merge(globalOrder[key.ordinal()], retired, appended, rowOrder);
+        }
+        return new CatalogSnapshot(next, ordinals, retiredRows + newlyRetired,
+                nextOrder, splitByCategory(nextOrder, next, ordinals.size()));
+    }
+
+    int size() {
+        return globalOrder[0].length;
+    }
+
+    int categoryCount() {
+        int count = 0;
+        for (int[][] orders : categoryOrder) {
+            if (orders[0].length > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Filter, sort and page in one pass; the returned total counts every matching row
+     */
+    ProductPage query(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                      SortKey sortKey, boolean descending, int offset, int limit) {
+        int[] order;
+        if (category != null && !category.isEmpty()) {
+            Integer ordinal = categoryOrdinalByName.get(category);
+            if (ordinal == null) {
+                return new ProductPage(List.of(), 0);
+            }
+            order = categoryOrder[ordinal][sortKey.ordinal()];
+        } else {
+            order = globalOrder[sortKey.ordinal()];
+        }
+
+        long min = minPrice != null ? toCents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long max = maxPrice != null ? toCents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+        int end = limit > 0 ? offset + limit : Integer.MAX_VALUE;
+
+        // Without a price filter the permutation length is the total and paging is a slice
+        if (minPrice == null && maxPrice == null) {
+            List<ProductSummary> page = new ArrayList<>(Math.max(0, Math.min(order.length, end) - offset));
+            for (int position = offset; position < order.length && position < end; position++) {
+                page.add(columns.summary(order[descending ? order.length - 1 - position : position]));
+            }
+            return new ProductPage(page, order.length);
+        }
+
+        long[] priceCents = columns.priceCents;
+        List<ProductSummary> page = new ArrayList<>(limit > 0 ? limit : 16);
+        int matched = 0;
+        for (int i = 0; i < order.length; i++) {
+            int row = order[descending ? order.length - 1 - i : i];
+            long price = priceCents[row];
+            if (price < min || price > max) {
+                continue;
+            }
+            if (matched >= offset && matched < end) {
+                page.add(columns.summary(row));
+            }
+            matched++;
+        }
+        return new ProductPage(page, matched);
+    }
+
+    /**
+     * Split each global permutation by category; order within a category is preserved
+     */
+    private static int[][][] splitByCategory(int[][] globalOrder, Columns columns, int categories) {
+        int[] categorySizes = new int[categories];
+        for (int row : globalOrder[0]) {
+            categorySizes[columns.categoryOrdinals[row]]++;
+        }
+        int[][][] categoryOrder = new int[categories][globalOrder.length][];
+        for (int key = 0; key < globalOrder.length; key++) {
+            int[] fill = new int[categories];
+            for (int category = 0; category < categories; category++) {
+                categoryOrder[category][key] = new int[categorySizes[category]];
+            }
+            for (int row : globalOrder[key]) {
+                int category = columns.categoryOrdinals[row];
+                categoryOrder[category][key][fill[category]++] = row;
+            }
+        }
+        return categoryOrder;
+    }
+
+    /**
+     * Merge a sorted permutation, minus its retired rows, with sorted appended rows
+     */
+    private static int[] merge(int[] order, boolean[] retired, int[] appended, RowOrder rowOrder) {
+        int live = 0;
+        for (int row : order) {
+            if (!retired[row]) {
+                live++;
+            }
+        }
+        int[] merged = new int[live + appended.length];
+        int at = 0;
+        int next = 0;
+        for (int row : order) {
+            if (retired[row]) {
+                continue;
+            }
+            while (next < appended.length && rowOrder.compare(appended[next], row) < 0) {
+                merged[at++] = appended[next++];
+            }
+            merged[at++] = row;
+        }
+        while (next < appended.length) {
+            merged[at++] = appended[next++];
+        }
+        return merged;
+    }
+
+    /**
+     * Stable merge sort of row numbers, so the permutations need no boxed copies
+     */
+    private static void sort(int[] rows, RowOrder rowOrder) {
+        if (rows.length < 2) {
+            return;
+        }
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int lo = 0; lo < rows.length - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, rows.length);
+                if (rowOrder.compare(rows[mid - 1], rows[mid]) <= 0) {
+                    continue;
+                }
+                System.arraycopy(rows, lo, buffer, lo, hi - lo);
+                int left = lo;
+                int right = mid;
+                for (int at = lo; at < hi; at++) {
+                    if (right >= hi || (left < mid && rowOrder.compare(buffer[left], buffer[right]) <= 0)) {
+                        rows[at] = buffer[left++];
+                    } else {
+                        rows[at] = buffer[right++];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int compareNames(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(a, b);
+    }
+
+    private static long toCents(BigDecimal amount, RoundingMode roundingMode) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.setScale(2, roundingMode).unscaledValue().longValue();
+    }
+
+    private static long toSortableInstant(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NULL_INSTANT;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    private static LocalDateTime fromSortableInstant(long instant) {
+        if (instant == NULL_INSTANT) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(instant, 1_000_000_000L),
+                (int) Math.floorMod(instant, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * The product columns. Only written while a snapshot is being built or patched, before it
+     * is published; prices and ratings are in hundredths, matching their DECIMAL(_,2) columns.
+     */
+    private static final class Columns {
+
+        private int size;
+        private long[] ids;
+        private String[] names;
+        private long[] priceCents;
+        private int[] categoryOrdinals;
+        private String[] categories;
+        private String[] imageUrls;
+        private int[] stockQuantities;
+        private int[] ratingCents;
+        private int[] reviewCounts;
+        private long[] createdAt;
+
+        private Columns(int capacity) {
+            ids = new long[capacity];
+            names = new String[capacity];
+            priceCents = new long[capacity];
+            categoryOrdinals = new int[capacity];
+            categories = new String[capacity];
+            imageUrls = new String[capacity];
+            stockQuantities = new int[capacity];
+            ratingCents = new int[capacity];
+            reviewCounts = new int[capacity];
+            createdAt = new long[capacity];
+        }
+
+        private Columns copy(int extra) {
+            Columns copy = new Columns(0);
+            int capacity = size + extra;
+            copy.size = size;
+            copy.ids = Arrays.copyOf(ids, capacity);
+            copy.names = Arrays.copyOf(names, capacity);
+            copy.priceCents = Arrays.copyOf(priceCents, capacity);
+            copy.categoryOrdinals = Arrays.copyOf(categoryOrdinals, capacity);
+            copy.categories = Arrays.copyOf(categories, capacity);
+            copy.imageUrls = Arrays.copyOf(imageUrls, capacity);
+            copy.stockQuantities = Arrays.copyOf(stockQuantities, capacity);
+            copy.ratingCents = Arrays.copyOf(ratingCents, capacity);
+            copy.reviewCounts = Arrays.copyOf(reviewCounts, capacity);
+            copy.createdAt = Arrays.copyOf(createdAt, capacity);
+            return copy;
+        }
+
+        private void append(ProductSummary product, Map<String, Integer> categoryOrdinalByName) {
+            set(size++, product, categoryOrdinalByName.computeIfAbsent(
+                    product.getCategory(), category -> categoryOrdinalByName.size()));
+        }
+
+        private void set(int row, ProductSummary product, int categoryOrdinal) {
+            ids[row] = product.getId();
+            names[row] = product.getName();
+            priceCents[row] = toCents(product.getPrice(), RoundingMode.HALF_UP);
+            categoryOrdinals[row] = categoryOrdinal;
+            categories[row] = product.getCategory();
+            imageUrls[row] = product.getImageUrl();
+            stockQuantities[row] = product.getStockQuantity() != null ? product.getStockQuantity() : NULL_INT;
+            ratingCents[row] = product.getRating() != null
+                    ? (int) toCents(product.getRating(), RoundingMode.HALF_UP)
+                    : NULL_INT;
+            reviewCounts[row] = product.getReviewCount() != null ? product.getReviewCount() : NULL_INT;
+            createdAt[row] = toSortableInstant(product.getCreatedAt());
+        }
+
+        /**
+         * Whether the product keeps this row's place in every permutation and category
+         */
+        private boolean keepsOrder(int row, ProductSummary product) {
+            int rating = product.getRating() != null
+                    ? (int) toCents(product.getRating(), RoundingMode.HALF_UP)
+                    : NULL_INT;
+            return priceCents[row] == toCents(product.getPrice(), RoundingMode.HALF_UP)
+                    && ratingCents[row] == rating
+                    && createdAt[row] == toSortableInstant(product.getCreatedAt())
+                    && Objects.equals(names[row], product.getName())
+                    && Objects.equals(categories[row], product.getCategory());
+        }
+
+        private ProductSummary summary(int row) {
+            ProductSummary product = new ProductSummary();
+            product.setId(ids[row]);
+            product.setName(names[row]);
+            product.setPrice(BigDecimal.valueOf(priceCents[row], 2));
+            product.setCategory(categories[row]);
+            product.setImageUrl(imageUrls[row]);
+            product.setStockQuantity(stockQuantities[row] != NULL_INT ? stockQuantities[row] : null);
+            product.setRating(ratingCents[row] != NULL_INT ? BigDecimal.valueOf(ratingCents[row], 2) : null);
+            product.setReviewCount(reviewCounts[row] != NULL_INT ? reviewCounts[row] : null);
+            product.setCreatedAt(fromSortableInstant(createdAt[row]));
+            return product;
+        }
+
+        /**
+         * Rows still in use, in catalog order, for a full build
+         */
+        private List<ProductSummary> live(boolean[] retired, int[] order, int firstAppended) {
+            List<ProductSummary> products = new ArrayList<>(order.length + size - firstAppended);
+            for (int row : order) {
+                if (!retired[row]) {
+                    products.add(summary(row));
+                }
+            }
+            for (int row = firstAppended; row < size; row++) {
+                products.add(summary(row));
+            }
+            return products;
+        }
+
+        private RowOrder order(SortKey key) {
+            return switch (key) {
+                case CREATED_AT -> (a, b) -> {
+                    int cmp = Long.compare(createdAt[b], createdAt[a]);
+                    return cmp != 0 ? cmp : Long.compare(ids[b], ids[a]);
+                };
+                case PRICE -> (a, b) -> {
+                    int cmp = Long.compare(priceCents[a], priceCents[b]);
+                    return cmp != 0 ? cmp : Long.compare(ids[a], ids[b]);
+                };
+                case RATING -> (a, b) -> {
+                    int cmp = Integer.compare(ratingCents[b], ratingCents[a]);
+                    return cmp != 0 ? cmp : Long.compare(ids[b], ids[a]);
+                };
+                case NAME -> (a, b) -> {
+                    int cmp = compareNames(names[a], names[b]);
+                    return cmp != 0 ? cmp : Long.compare(ids[a], ids[b]);
+                };
+            };
+        }
+    }
+}
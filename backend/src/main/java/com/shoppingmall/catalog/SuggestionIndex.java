@@ -0,0 +1,366 @@
+package com.shoppingmall.catalog;
+
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductSummary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autocomplete over product names and categories, answered from memory.
+ *
+ * Keeps the name, category and popularity of every active product and serves lookups from a
+ * {@link SuggestionTrie} built over them. Popularity is review count weighted by rating; a
+ * category is as popular as all of its products together. Product writes are collected like in
+ * {@link CatalogEngine}: changed ids are re-read after a short delay and only the suggestions they
+ * touch are patched into the trie, so lookups never wait on MySQL or Elasticsearch. The trie is
+ * built from scratch at load and once enough patches have piled up.
+ */
+@Component
+public class SuggestionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionIndex.class);
+    private static final int REFRESH_CHUNK_SIZE = 500;
+    /** Patched suggestions tolerated before a full build, at least this many or 5% of the trie */
+    private static final int MIN_CHANGES_BEFORE_BUILD = 512;
+
+    private record Source(String name, String category, double popularity) {
+    }
+
+    /**
+     * Products sharing a category and their summed popularity
+     */
+    private static final class CategoryTotal {
+        private int products;
+        private double weight;
+    }
+
+    private final ProductMapper productMapper;
+    private final boolean enabled;
+    private final int maxResults;
+    private final long refreshDelayMillis;
+
+    private final ScheduledExecutorService executor;
+    private final Map<Long, Source> sources = new HashMap<>();
+    /** Normalized name to the products carrying it */
+    private final Map<String, Set<Long>> productsByText = new HashMap<>();
+    private final Map<String, CategoryTotal> categories = new HashMap<>();
+    /** Normalized category to the category spellings normalizing to it */
+    private final Map<String, Set<String>> categoriesByText = new HashMap<>();
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+
+    private volatile SuggestionTrie trie;
+    private volatile long loadedAt;
+    private volatile long lastRebuildMillis;
+    private volatile long lastPatchMillis;
+    private final AtomicLong patches = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public SuggestionIndex(ProductMapper productMapper,
+                           @Value("${search.suggestions.enabled:true}") boolean enabled,
+                           @Value("${search.suggestions.max-results:10}") int maxResults,
+                           @Value("${search.suggestions.refresh-delay-ms:2000}") long refreshDelayMillis) {
+        this.productMapper = productMapper;
+        this.enabled = enabled;
+        this.maxResults = Math.max(1, maxResults);
+        this.refreshDelayMillis = refreshDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suggestion-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            executor.execute(this::loadAll);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Suggestions for a search box prefix; empty until the first load has finished
+     */
+    public List<String> suggest(String prefix, int limit) {
+        SuggestionTrie current = trie;
+        if (!enabled || current == null) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<String> suggestions = current.suggest(prefix, Math.min(limit, maxResults));
+        lookupNanos.addAndGet(System.nanoTime() - start);
+        lookups.incrementAndGet();
+        return suggestions;
+    }
+
+    /**
+     * Schedule a product to be re-read; writes within the refresh delay share one patch
+     */
+    public void refresh(Long productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        pendingIds.add(productId);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::applyPending, refreshDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Discard everything and load all products from MySQL again
+     */
+    public void reload() {
+        if (enabled) {
+            executor.execute(this::loadAll);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        SuggestionTrie current = trie;
+        long count = lookups.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("serving", enabled && current != null);
+        status.put("suggestions", current != null ? current.size() : 0);
+        status.put("keys", current != null ? current.keyCount() : 0);
+        status.put("precomputedNodes", current != null ? current.precomputedNodes() : 0);
+        status.put("patchedSuggestions", current != null ? current.changeCount() : 0);
+        status.put("pendingRefreshes", pendingIds.size());
+        status.put("lookups", count);
+        status.put("avgLookupMicros", count > 0 ? lookupNanos.get() / count / 1000.0 : 0);
+        status.put("loadedAt", loadedAt);
+        status.put("lastRebuildMillis", lastRebuildMillis);
+        status.put("lastPatchMillis", lastPatchMillis);
+        status.put("rebuilds", rebuilds.get());
+        status.put("patches", patches.get());
+        return status;
+    }
+
+    // Runs on the single index thread only, which owns the sources and the maps derived from them
+
+    private void loadAll() {
+        try {
+            long start = System.currentTimeMillis();
+            List<ProductSummary> products = productMapper.findAllSummaries(null, null, null, null, null, null, null);
+            sources.clear();
+            productsByText.clear();
+            categories.clear();
+            categoriesByText.clear();
+            for (ProductSummary product : products) {
+                add(product.getId(), new Source(product.getName(), product.getCategory(),
+                        popularity(product.getReviewCount(), product.getRating())), null);
+            }
+            rebuild();
+            loadedAt = System.currentTimeMillis();
+            lastRebuildMillis = loadedAt - start;
+            logger.info("Suggestion index loaded {} products in {} ms", products.size(), lastRebuildMillis);
+            if (!pendingIds.isEmpty()) {
+                applyPending();
+            }
+        } catch (Exception e) {
+            logger.error("Suggestion index failed to load products, suggestions stay empty: ", e);
+        }
+    }
+
+    private void applyPending() {
+        refreshScheduled.set(false);
+        if (trie == null || pendingIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(pendingIds);
+        pendingIds.removeAll(ids);
+        try {
+            long start = System.currentTimeMillis();
+            Map<Long, Source> current = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + REFRESH_CHUNK_SIZE));
+                for (Product product : productMapper.findByIdsIncludingInactive(chunk)) {
+                    if (Boolean.TRUE.equals(product.getIsActive())) {
+                        current.put(product.getId(), new Source(product.getName(), product.getCategory(),
+                                popularity(product.getReviewCount(), product.getRating())));
+                    }
+                }
+            }
+
+            // Read everything first, so a failed read leaves the maps untouched for the retry
+            Set<String> touched = new HashSet<>();
+            for (Long id : ids) {
+                Source before = sources.get(id);
+                Source after = current.get(id);
+                if (Objects.equals(before, after)) {
+                    continue;
+                }
+                if (before != null) {
+                    remove(id, before, touched);
+                }
+                if (after != null) {
+                    add(id, after, touched);
+                }
+            }
+            if (touched.isEmpty()) {
+                return;
+            }
+
+            SuggestionTrie patched = patch(trie, touched);
+            if (patched.changeCount() > Math.max(MIN_CHANGES_BEFORE_BUILD, patched.size() / 20)) {
+                rebuild();
+                lastRebuildMillis = System.currentTimeMillis() - start;
+            } else {
+                trie = patched;
+                patches.incrementAndGet();
+                lastPatchMillis = System.currentTimeMillis() - start;
+            }
+            logger.debug("Suggestion index applied {} product changes touching {} suggestions in {} ms",
+                    ids.size(), touched.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Suggestion index failed to apply product changes, retrying: ", e);
+            pendingIds.addAll(ids);
+            if (refreshScheduled.compareAndSet(false, true)) {
+                executor.schedule(this::applyPending, refreshDelayMillis * 10, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void rebuild() {
+        List<SuggestionTrie.Entry> entries = new ArrayList<>(sources.size() + categories.size());
+        for (Source source : sources.values()) {
+            entries.add(new SuggestionTrie.Entry(source.name(), source.popularity()));
+        }
+        categories.forEach((category, total) -> entries.add(new SuggestionTrie.Entry(category, total.weight)));
+        trie = SuggestionTrie.build(entries, maxResults);
+        rebuilds.incrementAndGet();
+    }
+
+    /**
+     * Trie with the current entry for each touched normalized text, or without it if nothing
+     * carries that text any more
+     */
+    private SuggestionTrie patch(SuggestionTrie base, Set<String> touched) {
+        List<SuggestionTrie.Entry> upserts = new ArrayList<>();
+        List<String> removals = new ArrayList<>();
+        for (String text : touched) {
+            SuggestionTrie.Entry entry = entryFor(text);
+            if (entry != null) {
+                upserts.add(entry);
+            } else {
+                removals.add(text);
+            }
+        }
+        return base.patch(upserts, removals);
+    }
+
+    /**
+     * The most popular product name or category normalizing to text, as a full build would pick it
+     */
+    private SuggestionTrie.Entry entryFor(String text) {
+        SuggestionTrie.Entry best = null;
+        for (Long id : productsByText.getOrDefault(text, Set.of())) {
+            Source source = sources.get(id);
+            if (best == null || source.popularity() > best.weight()) {
+                best = new SuggestionTrie.Entry(source.name(), source.popularity());
+            }
+        }
+        for (String category : categoriesByText.getOrDefault(text, Set.of())) {
+            double weight = categories.get(category).weight;
+            if (best == null || weight > best.weight()) {
+                best = new SuggestionTrie.Entry(category, weight);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Record a product and note the normalized texts whose entry may have changed
+     */
+    private void add(Long id, Source source, Set<String> touched) {
+        sources.put(id, source);
+        String name = SuggestionTrie.normalize(source.name());
+        if (!name.isEmpty()) {
+            productsByText.computeIfAbsent(name, key -> new HashSet<>()).add(id);
+            touch(touched, name);
+        }
+        if (source.category() != null) {
+            CategoryTotal total = categories.computeIfAbsent(source.category(), key -> new CategoryTotal());
+            total.products++;
+            total.weight += source.popularity();
+            String category = SuggestionTrie.normalize(source.category());
+            if (!category.isEmpty()) {
+                categoriesByText.computeIfAbsent(category, key -> new HashSet<>()).add(source.category());
+                touch(touched, category);
+            }
+        }
+    }
+
+    private void remove(Long id, Source source, Set<String> touched) {
+        sources.remove(id);
+        String name = SuggestionTrie.normalize(source.name());
+        Set<Long> named = productsByText.get(name);
+        if (named != null && named.remove(id) && named.isEmpty()) {
+            productsByText.remove(name);
+        }
+        touch(touched, name);
+        if (source.category() != null) {
+            CategoryTotal total = categories.get(source.category());
+            if (total != null && --total.products == 0) {
+                categories.remove(source.category());
+                String category = SuggestionTrie.normalize(source.category());
+                Set<String> spellings = categoriesByText.get(category);
+                if (spellings != null && spellings.remove(source.category()) && spellings.isEmpty()) {
+                    categoriesByText.remove(category);
+                }
+            } else if (total != null) {
+                total.weight -= source.popularity();
+            }
+            touch(touched, SuggestionTrie.normalize(source.category()));
+        }
+    }
+
+    private static void touch(Set<String> touched, String text) {
+        if (touched != null && !text.isEmpty()) {
+            touched.add(text);
+        }
+    }
+
+    /**
+     * Every product counts at least once, so new items without reviews still rank among themselves
+     */
+    private static double popularity(Integer reviewCount, BigDecimal rating) {
+        double reviews = reviewCount != null ? reviewCount : 0;
+        double stars = rating != null ? rating.doubleValue() : 0;
+        return (1 + reviews) * (1 + stars / 5.0);
+    }
+}
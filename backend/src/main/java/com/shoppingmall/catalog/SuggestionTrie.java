@@ -0,0 +1,428 @@
+package com.shoppingmall.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable prefix index for autocomplete.
+ *
+ * Every suggestion is inserted once per word it contains (the suffix starting at that word), so
+ * "phone" finds "Smart Phone X". Keys are kept in one sorted array, which makes any prefix a
+ * contiguous range found by binary search; the range is the trie node for that prefix. Nodes
+ * covering more than {@link #SCAN_LIMIT} keys carry their top-K suggestions precomputed, smaller
+ * ones are ranked by a direct scan, so a lookup never touches more than a few thousand keys.
+ * Keys starting at the first word score higher than inner-word matches.
+ *
+ * {@link #patch} applies changed suggestions without rebuilding: the new trie shares the base
+ * layer, masks the base entries that changed, and holds their current versions in a small delta
+ * layer of its own. Lookups rank both layers and merge them. Base nodes keep twice topK so masked
+ * entries rarely leave a node short; once {@link #changeCount()} grows, the owner builds a fresh
+ * trie.
+ */
+public class SuggestionTrie {
+
+    /** Ranges up to this size are ranked on the fly instead of stored */
+    static final int SCAN_LIMIT = 256;
+
+    /** Keys are cut after this many characters; longer queries are checked against the full text */
+    static final int MAX_KEY_LENGTH = 32;
+
+    private static final double INNER_WORD_FACTOR = 0.5;
+
+    private static final Comparator<Hit> BY_RANK = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(Hit::text);
+
+    /**
+     * A suggestion and its popularity; text is what the client shows
+     */
+    public record Entry(String text, double weight) {
+    }
+
+    private record Key(String text, int entry, double score) {
+    }
+
+    private record Hit(String text, double score) {
+    }
+
+    private final Layer base;
+    /** Base entries replaced or removed since the base was built */
+    private final BitSet masked;
+    /** Normalized text to its current entry for everything changed since the base; null when removed */
+    private final Map<String, Entry> changes;
+    private final Layer delta;
+    private final int topK;
+
+    private SuggestionTrie(Layer base, BitSet masked, Map<String, Entry> changes, int topK) {
+        this.base = base;
+        this.masked = masked;
+        this.changes = changes;
+        this.topK = topK;
+        List<Entry> current = changes.values().stream().filter(Objects::nonNull).toList();
+        this.delta = current.isEmpty() ? null : new Layer(current, topK);
+    }
+
+    public static SuggestionTrie build(Collection<Entry> entries, int topK) {
+        int k = Math.max(1, topK);
+        return new SuggestionTrie(new Layer(dedupe(entries), k * 2), new BitSet(), Map.of(), k);
+    }
+
+    /**
+     * A trie with the given suggestions added or replaced and the given texts removed, keyed by
+     * normalized text. Costs a rebuild of the changes only; this trie is left as it was.
+     */
+    public SuggestionTrie patch(Collection<Entry> upserts, Collection<String> removals) {
+        BitSet nextMasked = (BitSet) masked.clone();
+        Map<String, Entry> nextChanges = new HashMap<>(changes);
+        for (String text : removals) {
+            String normalized = normalize(text);
+            if (base.mask(normalized, nextMasked)) {
+                nextChanges.put(normalized, null);
+            } else {
+                nextChanges.remove(normalized);
+            }
+        }
+        for (Entry entry : upserts) {
+            String normalized = normalize(entry.text());
+            if (!normalized.isEmpty()) {
+                base.mask(normalized, nextMasked);
+                nextChanges.put(normalized, entry);
+            }
+        }
+        return new SuggestionTrie(base, nextMasked, nextChanges, topK);
+    }
+
+    /**
+     * Best suggestions whose text has a word starting with the prefix, most popular first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String query = normalize(prefix);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<Hit> hits = base.lookup(query, limit, masked);
+        if (delta != null) {
+            hits.addAll(delta.lookup(query, limit, null));
+            hits.sort(BY_RANK);
+        }
+
+        List<String> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (Hit hit : hits) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(hit.text());
+        }
+        return result;
+    }
+
+    public int size() {
+        return base.texts.length - masked.cardinality() + (delta != null ? delta.texts.length : 0);
+    }
+
+    public int keyCount() {
+        return base.keys.length + (delta != null ? delta.keys.length : 0);
+    }
+
+    public int precomputedNodes() {
+        return base.topByRange.size();
+    }
+
+    /**
+     * Suggestions changed or removed since the base layer was built
+     */
+    public int changeCount() {
+        return changes.size();
+    }
+
+    /**
+     * Lowercase, accent-free, words separated by single spaces
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String source = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                source = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+
+        StringBuilder normalized = new StringBuilder(source.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK
+                    || Character.getType(c) == Character.COMBINING_SPACING_MARK
+                    || Character.getType(c) == Character.ENCLOSING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                pendingSpace = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * One sorted key array with its precomputed nodes; never changes once built
+     */
+    private static final class Layer {
+
+        private final String[] texts;
+        private final String[] normalizedTexts;
+        private final Map<String, Integer> entryByText;
+        private final String[] keys;
+        private final int[] keyEntries;
+        private final double[] keyScores;
+        private final Map<Long, int[]> topByRange = new HashMap<>();
+        private final int topK;
+
+        private Layer(List<Entry> distinct, int topK) {
+            this.topK = topK;
+            texts = new String[distinct.size()];
+            normalizedTexts = new String[distinct.size()];
+            entryByText = new HashMap<>(distinct.size() * 2);
+
+            List<Key> keyList = new ArrayList<>();
+            for (int i = 0; i < distinct.size(); i++) {
+                texts[i] = distinct.get(i).text();
+                normalizedTexts[i] = normalize(texts[i]);
+                String normalized = normalizedTexts[i];
+                entryByText.put(normalized, i);
+                double weight = distinct.get(i).weight();
+                for (int start = 0; start < normalized.length(); start++) {
+                    if (start == 0 || normalized.charAt(start - 1) == ' ') {
+                        keyList.add(new Key(normalized.substring(start, Math.min(normalized.length(), start + MAX_KEY_LENGTH)),
+                                i, start == 0 ? weight : weight * INNER_WORD_FACTOR));
+                    }
+                }
+            }
+
+            Key[] sorted = keyList.toArray(new Key[0]);
+            Arrays.parallelSort(sorted, (a, b) -> a.text().compareTo(b.text()));
+
+            keys = new String[sorted.length];
+            keyEntries = new int[sorted.length];
+            keyScores = new double[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keys[i] = sorted[i].text();
+                keyEntries[i] = sorted[i].entry();
+                keyScores[i] = sorted[i].score();
+            }
+
+            if (keys.length > 0) {
+                build(0, keys.length, 0);
+            }
+        }
+
+        /**
+         * Set the bit of the entry with this normalized text, if this layer has one
+         */
+        private boolean mask(String normalized, BitSet bits) {
+            Integer entry = entryByText.get(normalized);
+            if (entry == null) {
+                return false;
+            }
+            bits.set(entry);
+            return true;
+        }
+
+        /**
+         * Up to limit best hits for a normalized query, skipping masked entries
+         */
+        private List<Hit> lookup(String query, int limit, BitSet masked) {
+            List<Hit> hits = new ArrayList<>();
+            if (keys.length == 0) {
+                return hits;
+            }
+            String prefix = query.length() > MAX_KEY_LENGTH ? query.substring(0, MAX_KEY_LENGTH) : query;
+            boolean verify = prefix.length() < query.length();
+
+            int lo = lowerBound(prefix);
+            int hi = lowerBound(prefix + Character.MAX_VALUE);
+            if (lo >= hi) {
+                return hits;
+            }
+
+            int[] ranked = hi - lo > SCAN_LIMIT ? topByRange.get(rangeKey(lo, hi)) : null;
+            if (ranked == null) {
+                ranked = scan(lo, hi, masked);
+            }
+
+            for (int keyIndex : ranked) {
+                if (hits.size() >= limit) {
+                    break;
+                }
+                int entry = keyEntries[keyIndex];
+                if ((masked != null && masked.get(entry))
+                        || (verify && !matchesAtWord(normalizedTexts[entry], query))) {
+                    continue;
+                }
+                hits.add(new Hit(texts[entry], keyScores[keyIndex]));
+            }
+            return hits;
+        }
+
+        /**
+         * Walk the node for keys[lo, hi) sharing the first depth characters and return its
+         * top-K key indices, one per entry. Large nodes keep their result for lookups.
+         */
+        private int[] build(int lo, int hi, int depth) {
+            if (hi - lo <= SCAN_LIMIT) {
+                return scan(lo, hi, null);
+            }
+
+            List<int[]> parts = new ArrayList<>();
+            int i = lo;
+            // Keys that end here sort before every longer key with the same prefix
+            int terminalEnd = lo;
+            while (terminalEnd < hi && keys[terminalEnd].length() <= depth) {
+                terminalEnd++;
+            }
+            if (terminalEnd > lo) {
+                parts.add(scan(lo, terminalEnd, null));
+                i = terminalEnd;
+            }
+            while (i < hi) {
+                char c = keys[i].charAt(depth);
+                int j = i + 1;
+                while (j < hi && keys[j].charAt(depth) == c) {
+                    j++;
+                }
+                parts.add(build(i, j, depth + 1));
+                i = j;
+            }
+
+            int[] top = parts.size() == 1 ? parts.get(0) : merge(parts);
+            topByRange.put(rangeKey(lo, hi), top);
+            return top;
+        }
+
+        private int[] scan(int lo, int hi, BitSet masked) {
+            int[] candidates = new int[hi - lo];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                if (masked == null || !masked.get(keyEntries[i])) {
+                    candidates[count++] = i;
+                }
+            }
+            return select(candidates, count);
+        }
+
+        /**
+         * Union of ranked key lists, keeping the best key per entry and the topK best entries
+         */
+        private int[] merge(List<int[]> lists) {
+            int total = 0;
+            for (int[] list : lists) {
+                total += list.length;
+            }
+            int[] candidates = new int[total];
+            int at = 0;
+            for (int[] list : lists) {
+                System.arraycopy(list, 0, candidates, at, list.length);
+                at += list.length;
+            }
+            return select(candidates, total);
+        }
+
+        /**
+         * Pick the best-scoring key of up to topK distinct entries by repeated selection;
+         * topK is small, so this beats sorting the candidates. Reorders the candidate array.
+         */
+        private int[] select(int[] candidates, int count) {
+            int[] top = new int[Math.min(topK, count)];
+            int found = 0;
+            int remaining = count;
+            while (found < top.length && remaining > 0) {
+                int best = 0;
+                for (int i = 1; i < remaining; i++) {
+                    if (better(candidates[i], candidates[best])) {
+                        best = i;
+                    }
+                }
+                int keyIndex = candidates[best];
+                candidates[best] = candidates[--remaining];
+
+                boolean duplicate = false;
+                for (int i = 0; i < found; i++) {
+                    if (keyEntries[top[i]] == keyEntries[keyIndex]) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (!duplicate) {
+                    top[found++] = keyIndex;
+                }
+            }
+            return found == top.length ? top : Arrays.copyOf(top, found);
+        }
+
+        private boolean better(int a, int b) {
+            int byScore = Double.compare(keyScores[a], keyScores[b]);
+            return byScore != 0 ? byScore > 0 : texts[keyEntries[a]].compareTo(texts[keyEntries[b]]) < 0;
+        }
+
+        private int lowerBound(String value) {
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(value) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static long rangeKey(int lo, int hi) {
+        return ((long) lo << 32) | hi;
+    }
+
+    private static boolean matchesAtWord(String text, String query) {
+        int at = text.indexOf(query);
+        while (at >= 0) {
+            if (at == 0 || text.charAt(at - 1) == ' ') {
+                return true;
+            }
+            at = text.indexOf(query, at + 1);
+        }
+        return false;
+    }
+
+    /**
+     * One entry per normalized text, keeping the most popular spelling
+     */
+    private static List<Entry> dedupe(Collection<Entry> entries) {
+        Map<String, Entry> byText = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            String normalized = normalize(entry.text());
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            byText.merge(normalized, entry,
+                    (current, candidate) -> candidate.weight() > current.weight() ? candidate : current);
+        }
+        return new ArrayList<>(byText.values());
+    }
+}
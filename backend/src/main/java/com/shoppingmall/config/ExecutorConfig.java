@@ -0,0 +1,46 @@
+package com.shoppingmall.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Small pool for read queries that run alongside the request thread (e.g. listing counts).
+     * When saturated the caller runs the task itself instead of queueing without bound.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService productQueryExecutor(@Value("${product.query-executor.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "product-query-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * One thread for the scheduled search consistency check, which can run for minutes and
+     * must not hold one of the scheduler threads the outbox dispatcher and health probe run on
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService searchConsistencyExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-consistency");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
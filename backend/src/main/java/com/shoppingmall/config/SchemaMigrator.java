@@ -0,0 +1,153 @@
+package com.shoppingmall.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings an existing MySQL database up to schema.sql at startup.
+ *
+ * schema.sql only runs from docker-entrypoint-initdb.d on a fresh volume, so tables and indexes
+ * added since a database was created would otherwise be missing. Each CREATE TABLE and CREATE
+ * INDEX in schema.sql whose table or index doesn't exist yet, and each column added to an existing
+ * table that is missing, is collected. Runs while the context starts, before the schedulers and
+ * ApplicationReadyEvent listeners touch the tables.
+ *
+ * Building the FULLTEXT indexes or altering a large table can block writes to it for a while, so
+ * the statements are only applied with schema.migrate-on-startup=true. Otherwise they are logged
+ * to be run by hand, e.g. in a maintenance window.
+ */
+@Component
+public class SchemaMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE\\s+TABLE\\s+IF\\s+NOT\\s+EXISTS\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+|FULLTEXT\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private record AddedColumn(String table, String column, String ddl) {
+    }
+
+    /**
+     * Columns added to tables that existed before
+     */
+    private static final List<AddedColumn> ADDED_COLUMNS = List.of(
+            new AddedColumn("search_outbox", "partial",
+                    "ALTER TABLE search_outbox ADD COLUMN partial BOOLEAN NOT NULL DEFAULT FALSE AFTER product_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${schema.migrate-on-startup:false}")
+    private boolean enabled;
+
+    public SchemaMigrator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        String product = jdbcTemplate.execute((Connection connection) -> connection.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equalsIgnoreCase(product)) {
+            // Embedded test databases are created from schema.sql by spring.sql.init
+            return;
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String statement : statements()) {
+            Matcher table = CREATE_TABLE.matcher(statement);
+            if (table.lookingAt()) {
+                if (!tableExists(table.group(1))) {
+                    missing.add(statement);
+                }
+                continue;
+            }
+            Matcher index = CREATE_INDEX.matcher(statement);
+            if (index.lookingAt() && !indexExists(index.group(2), index.group(1))) {
+                missing.add(statement);
+            }
+        }
+        for (AddedColumn column : ADDED_COLUMNS) {
+            if (!columnExists(column.table(), column.column())) {
+                missing.add(column.ddl());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        if (!enabled) {
+            logger.warn("Database schema is behind schema.sql; run these statements or set "
+                    + "schema.migrate-on-startup=true:\n{}", String.join(";\n", missing) + ";");
+            return;
+        }
+        for (String statement : missing) {
+            logger.info("Applying schema change: {}", statement);
+            jdbcTemplate.execute(statement);
+        }
+        logger.info("Schema upgrade applied {} change(s)", missing.size());
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean indexExists(String table, String index) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics "
+                        + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?",
+                Integer.class, table, index);
+        return count != null && count > 0;
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns "
+                        + "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    /**
+     * schema.sql split into statements, with comments removed
+     */
+    private List<String> statements() {
+        String script;
+        try {
+            script = StreamUtils.copyToString(new ClassPathResource("schema.sql").getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        StringBuilder withoutComments = new StringBuilder(script.length());
+        for (String line : script.split("\n")) {
+            int comment = line.indexOf("--");
+            withoutComments.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String statement : withoutComments.toString().split(";")) {
+            String trimmed = statement.trim().replaceAll("\\s+", " ");
+            if (!trimmed.isEmpty()) {
+                statements.add(trimmed);
+            }
+        }
+        return statements;
+    }
+}
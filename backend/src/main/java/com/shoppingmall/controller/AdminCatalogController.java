@@ -0,0 +1,162 @@
+package com.shoppingmall.controller;
+
+import com.shoppingmall.cache.CategoryCache;
+import com.shoppingmall.cache.ProductCache;
+import com.shoppingmall.cache.ProductCountCache;
+import com.shoppingmall.cache.SearchResultCache;
+import com.shoppingmall.catalog.CatalogEngine;
+import com.shoppingmall.catalog.SuggestionIndex;
+import com.shoppingmall.search.LocalSearchIndex;
+import com.shoppingmall.service.ProductExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/catalog")
+@CrossOrigin(origins = "${cors.allowed-origins}", maxAge = 3600)
+public class AdminCatalogController {
+
+    private final ProductCache productCache;
+    private final ProductCountCache productCountCache;
+    private final CategoryCache categoryCache;
+    private final SearchResultCache searchResultCache;
+    private final CatalogEngine catalogEngine;
+    private final SuggestionIndex suggestionIndex;
+    private final LocalSearchIndex localSearchIndex;
+    private final ProductExportService productExportService;
+
+    @Autowired
+    public AdminCatalogController(ProductCache productCache, ProductCountCache productCountCache,
+                                  CategoryCache categoryCache, SearchResultCache searchResultCache,
+                                  CatalogEngine catalogEngine,
+                                  SuggestionIndex suggestionIndex, LocalSearchIndex localSearchIndex,
+                                  ProductExportService productExportService) {
+        this.productCache = productCache;
+        this.productCountCache = productCountCache;
+        this.categoryCache = categoryCache;
+        this.searchResultCache = searchResultCache;
+        this.catalogEngine = catalogEngine;
+        this.suggestionIndex = suggestionIndex;
+        this.localSearchIndex = localSearchIndex;
+        this.productExportService = productExportService;
+    }
+
+    /**
+     * Product, listing-count and search result cache statistics
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> getProductCacheStats() {
+        return ResponseEntity.ok(Map.of(
+            "products", productCache.getStats(),
+            "counts", productCountCache.getStats(),
+            "searchResults", searchResultCache.getStats()
+        ));
+    }
+
+    /**
+     * Drop every cached product, listing count and search result
+     */
+    @DeleteMapping("/cache")
+    public ResponseEntity<?> clearProductCache() {
+        productCache.invalidateAll();
+        productCountCache.invalidateAll();
+        searchResultCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "Product caches cleared"));
+    }
+
+    /**
+     * In-memory catalog engine status
+     */
+    @GetMapping("/engine")
+    public ResponseEntity<?> getCatalogEngineStatus() {
+        return ResponseEntity.ok(catalogEngine.getStatus());
+    }
+
+    /**
+     * Reload the in-memory catalog engine from MySQL
+     */
+    @PostMapping("/engine/reload")
+    public ResponseEntity<?> reloadCatalogEngine() {
+        if (!catalogEngine.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Catalog engine is disabled"));
+        }
+        catalogEngine.reload();
+        return ResponseEntity.accepted().body(Map.of("message", "Catalog engine reload started"));
+    }
+
+    /**
+     * Autocomplete index size and lookup latency
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<?> getSuggestionIndexStatus() {
+        return ResponseEntity.ok(suggestionIndex.getStatus());
+    }
+
+    /**
+     * Reload the autocomplete index from MySQL
+     */
+    @PostMapping("/suggestions/reload")
+    public ResponseEntity<?> reloadSuggestionIndex() {
+        if (!suggestionIndex.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Suggestion index is disabled"));
+        }
+        suggestionIndex.reload();
+        return ResponseEntity.accepted().body(Map.of("message", "Suggestion index reload started"));
+    }
+
+    /**
+     * Embedded local search index status
+     */
+    @GetMapping("/search-index")
+    public ResponseEntity<?> getLocalSearchIndexStatus() {
+        return ResponseEntity.ok(localSearchIndex.getStatus());
+    }
+
+    /**
+     * Rebuild the embedded local search index from MySQL; the old contents serve until it commits
+     */
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<?> rebuildLocalSearchIndex() {
+        if (!localSearchIndex.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Local search index is disabled"));
+        }
+        localSearchIndex.rebuild();
+        return ResponseEntity.accepted().body(Map.of("message", "Local search index rebuild started"));
+    }
+
+    /**
+     * Rebuild the category cache from MySQL
+     */
+    @PostMapping("/categories/rebuild")
+    public ResponseEntity<?> rebuildCategories() {
+        categoryCache.rebuild();
+        CategoryCache.Snapshot snapshot = categoryCache.getSnapshot();
+        return ResponseEntity.ok(Map.of(
+            "categories", snapshot.getCategories().size(),
+            "version", snapshot.getVersion()
+        ));
+    }
+
+    /**
+     * Stream the full catalog as NDJSON or CSV, ordered by id.
+     * Pass the last id received as afterId to resume an interrupted export.
+     */
+    @GetMapping("/export")
+    public void exportProducts(@RequestParam(defaultValue = ProductExportService.FORMAT_NDJSON) String format,
+                               @RequestParam(required = false) Long afterId,
+                               HttpServletResponse response) throws IOException {
+        if (!ProductExportService.FORMAT_NDJSON.equals(format) && !ProductExportService.FORMAT_CSV.equals(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported export format: " + format);
+            return;
+        }
+
+        response.setContentType(ProductExportService.contentTypeOf(format));
+        response.setHeader("Content-Disposition", "attachment; filename=\"products." + format + "\"");
+        productExportService.exportProducts(format, afterId, response.getOutputStream());
+    }
+}
@@ -1,14 +1,21 @@
 package com.shoppingmall.controller;
 
-import com.shoppingmall.model.Product;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.exception.ResourceNotFoundException;
+import com.shoppingmall.model.ReindexJob;
+import com.shoppingmall.search.ElasticsearchCircuitBreaker;
+import com.shoppingmall.search.ElasticsearchHttpClients;
+import com.shoppingmall.search.ProductIndexManager;
+import com.shoppingmall.search.SearchConsistencyChecker;
+import com.shoppingmall.search.SearchOutboxDispatcher;
 import com.shoppingmall.service.ProductElasticsearchService;
-import com.shoppingmall.service.ProductService;
+import com.shoppingmall.service.ReindexJobService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -20,38 +27,45 @@ public class AdminElasticsearchController {
     private ProductElasticsearchService elasticsearchService;
     
     @Autowired
-    private ProductService productService;
+    private ReindexJobService reindexJobService;
+    
+    @Autowired
+    private SearchOutboxDispatcher searchOutboxDispatcher;
+    
+    @Autowired
+    private ProductIndexManager indexManager;
+    
+    @Autowired
+    private ElasticsearchHttpClients httpClients;
+    
+    @Autowired
+    private SearchConsistencyChecker consistencyChecker;
 
     /**
-     * Bulk index all products to Elasticsearch (for initial setup or re-indexing)
+     * Start a background reindex of every product (for initial setup or re-indexing).
+     * Returns immediately; poll the job status endpoint for progress.
      */
     @PostMapping("/reindex-products")
     public ResponseEntity<?> reindexAllProducts() {
         try {
-            // Get all products from MySQL
-            List<Product> products = productService.getAllProducts(null, null, null, "id", "asc", 1, 1000);
-            
-            if (products.isEmpty()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("message", "No products found in database");
-                response.put("success", false);
-                return ResponseEntity.ok(response);
-            }
-            
-            // Bulk index to Elasticsearch
-            int indexedCount = elasticsearchService.bulkIndexProducts(products);
+            ReindexJob job = reindexJobService.startJob();
             
             Map<String, Object> response = new HashMap<>();
-            response.put("message", "Products reindexed successfully");
-            response.put("totalProducts", products.size());
-            response.put("indexedCount", indexedCount);
+            response.put("message", "Reindex job started");
+            response.put("jobId", job.getId());
+            response.put("status", job.getStatus());
+            response.put("totalProducts", job.getTotalProducts());
+            response.put("partitionCount", job.getPartitionCount());
+            response.put("statusUrl", "/api/admin/elasticsearch/reindex-jobs/" + job.getId());
             response.put("success", true);
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().body(response);
             
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage(), "success", false));
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
-            response.put("message", "Failed to reindex products");
+            response.put("message", "Failed to start reindex job");
             response.put("error", e.getMessage());
             response.put("success", false);
             
@@ -59,6 +73,135 @@ public class AdminElasticsearchController {
         }
     }
 
+    /**
+     * Recent reindex jobs, newest first
+     */
+    @GetMapping("/reindex-jobs")
+    public ResponseEntity<?> getReindexJobs(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(Map.of("jobs", reindexJobService.getRecentJobs(limit)));
+    }
+
+    /**
+     * Progress, throughput and per-partition checkpoints of a reindex job
+     */
+    @GetMapping("/reindex-jobs/{id}")
+    public ResponseEntity<?> getReindexJobStatus(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(reindexJobService.getJobStatus(id));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Resume a failed, cancelled or interrupted job from its checkpoints
+     */
+    @PostMapping("/reindex-jobs/{id}/resume")
+    public ResponseEntity<?> resumeReindexJob(@PathVariable Long id) {
+        try {
+            ReindexJob job = reindexJobService.resumeJob(id);
+            return ResponseEntity.accepted().body(Map.of("message", "Reindex job resumed", "jobId", job.getId()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/reindex-jobs/{id}/cancel")
+    public ResponseEntity<?> cancelReindexJob(@PathVariable Long id) {
+        try {
+            reindexJobService.cancelJob(id);
+            return ResponseEntity.accepted().body(Map.of("message", "Reindex job cancelling", "jobId", id));
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Search alias, the index it points to, retained indices and any build in progress
+     */
+    @GetMapping("/indices")
+    public ResponseEntity<?> getIndices() {
+        return ResponseEntity.ok(indexManager.getStatus());
+    }
+
+    /**
+     * Catch the previous index up with MySQL and point the alias back at it, in the background.
+     * Poll the rollback status endpoint for the outcome.
+     */
+    @PostMapping("/indices/rollback")
+    public ResponseEntity<?> rollbackIndex() {
+        try {
+            Map<String, Object> response = new LinkedHashMap<>(reindexJobService.startRollback());
+            response.put("message", "Rollback started");
+            response.put("statusUrl", "/api/admin/elasticsearch/indices/rollback");
+            return ResponseEntity.accepted().body(response);
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to start rollback", "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * The running or last finished rollback
+     */
+    @GetMapping("/indices/rollback")
+    public ResponseEntity<?> getRollbackStatus() {
+        Map<String, Object> status = reindexJobService.getRollbackStatus();
+        if (status == null) {
+            return ResponseEntity.ok(Map.of("message", "No rollback has run yet"));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Delete indices beyond the retention policy
+     */
+    @PostMapping("/indices/prune")
+    public ResponseEntity<?> pruneIndices() {
+        try {
+            return ResponseEntity.ok(Map.of("deleted", indexManager.prune()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Search outbox backlog and lag
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<?> getOutboxStats() {
+        return ResponseEntity.ok(searchOutboxDispatcher.getStats());
+    }
+
+    /**
+     * Result of the last index/MySQL consistency check
+     */
+    @GetMapping("/consistency")
+    public ResponseEntity<?> getConsistencyReport() {
+        Map<String, Object> report = consistencyChecker.getLastReport();
+        if (report == null) {
+            return ResponseEntity.ok(Map.of("message", "No consistency check has run yet", "running", consistencyChecker.isRunning()));
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Compare the search index with MySQL now and re-sync the documents that differ
+     */
+    @PostMapping("/consistency/check")
+    public ResponseEntity<?> checkConsistency() {
+        try {
+            return ResponseEntity.ok(consistencyChecker.check());
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Consistency check failed", "error", String.valueOf(e.getMessage())));
+        }
+    }
+
     /**
      * Check Elasticsearch status and connection
      */
@@ -67,10 +210,15 @@ public class AdminElasticsearchController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            boolean isAvailable = elasticsearchService.isAvailable();
+            ElasticsearchCircuitBreaker circuitBreaker = elasticsearchService.getCircuitBreaker();
+            boolean isAvailable = circuitBreaker.getState() != ElasticsearchCircuitBreaker.State.OPEN;
             response.put("available", isAvailable);
             response.put("status", isAvailable ? "connected" : "disconnected");
             response.put("service", "ProductElasticsearchService");
+            response.put("circuitBreaker", circuitBreaker.getStats());
+            response.put("httpClient", httpClients.getStats());
+            response.put("reindexRunning", reindexJobService.isRunning());
+            response.put("outbox", searchOutboxDispatcher.getStats());
             
             return ResponseEntity.ok(response);
             
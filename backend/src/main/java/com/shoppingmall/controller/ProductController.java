@@ -1,14 +1,27 @@
 package com.shoppingmall.controller;
 
+import com.shoppingmall.cache.CategoryCache;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.exception.ServiceUnavailableException;
 import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductBatch;
+import com.shoppingmall.model.ProductPage;
+import com.shoppingmall.model.ProductSearchRequest;
+import com.shoppingmall.model.ProductSearchResult;
+import com.shoppingmall.model.ProductSlice;
+import com.shoppingmall.model.ProductSummary;
 import com.shoppingmall.service.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,21 +49,57 @@ public class ProductController {
             @RequestParam(defaultValue = "created_at") String sortBy,
             @RequestParam(defaultValue = "desc") String sortOrder,
             @RequestParam(defaultValue = "1") Integer page,
-            @RequestParam(defaultValue = "20") Integer limit) {
+            @RequestParam(defaultValue = "20") Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean approximateCount) {
         
         try {
-            List<Product> products = productService.getAllProducts(
-                category, minPrice, maxPrice, sortBy, sortOrder, page, limit
+            // Keyset mode: any cursor parameter (empty for the first page) switches off page numbers
+            if (cursor != null) {
+                ProductSlice slice = productService.getProductsAfter(
+                    category, minPrice, maxPrice, sortBy, sortOrder, cursor, limit
+                );
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("products", slice.getProducts());
+                response.put("size", slice.getProducts().size());
+                response.put("hasMore", slice.isHasMore());
+                response.put("nextCursor", slice.getNextCursor());
+                return ResponseEntity.ok(response);
+            }
+            
+            ProductPage productPage = productService.getProductPage(
+                category, minPrice, maxPrice, sortBy, sortOrder, page, limit, approximateCount
             );
             
-            int totalCount = productService.countProducts(category, minPrice, maxPrice);
+            int totalCount = productPage.getTotal();
             
             return ResponseEntity.ok(Map.of(
-                "products", products,
+                "products", productPage.getProducts(),
                 "total", totalCount,
                 "page", page,
                 "size", limit,
-                "totalPages", (int) Math.ceil((double) totalCount / limit)
+                "totalPages", (int) Math.ceil((double) totalCount / limit),
+                "totalExact", productPage.isTotalExact()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Error fetching products: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Batch product lookup (GET variant): /api/products/batch?ids=1,2,3
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getProductsByIds(@RequestParam List<Long> ids) {
+        try {
+            ProductBatch batch = productService.getProductsByIds(ids);
+            
+            return ResponseEntity.ok(Map.of(
+                "products", batch.getProducts(),
+                "missingIds", batch.getMissingIds(),
+                "count", batch.getProducts().size()
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -58,6 +107,14 @@ public class ProductController {
         }
     }
 
+    /**
+     * Batch product lookup (POST variant) for id lists too long for a query string: {"ids": [1, 2, 3]}
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getProductsByIdsPost(@RequestBody Map<String, List<Long>> batchRequest) {
+        return getProductsByIds(batchRequest.getOrDefault("ids", List.of()));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getProductById(@PathVariable Long id) {
         try {
@@ -77,16 +134,32 @@ public class ProductController {
     @GetMapping("/search")
     public ResponseEntity<?> searchProducts(
             @RequestParam String q,
-            @RequestParam(defaultValue = "50") Integer limit) {
+            @RequestParam(defaultValue = "50") Integer limit,
+            @RequestParam(required = false) String cursor) {
         
         try {
-            List<Product> products = productService.searchProducts(q, limit);
+            // Paged mode: any cursor parameter (empty for the first page) returns a next-page cursor
+            if (cursor != null) {
+                ProductSlice slice = productService.searchProductsAfter(q, cursor, limit);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("products", slice.getProducts());
+                response.put("query", q);
+                response.put("count", slice.getProducts().size());
+                response.put("hasMore", slice.isHasMore());
+                response.put("nextCursor", slice.getNextCursor());
+                return ResponseEntity.ok(response);
+            }
+            
+            List<ProductSummary> products = productService.searchProducts(q, limit);
             
             return ResponseEntity.ok(Map.of(
                 "products", products,
                 "query", q,
                 "count", products.size()
             ));
+        } catch (ServiceUnavailableException e) {
+            return ResponseEntity.status(503).body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(Map.of("message", "Error searching products: " + e.getMessage()));
@@ -94,10 +167,25 @@ public class ProductController {
     }
 
     @GetMapping("/categories")
-    public ResponseEntity<?> getAllCategories() {
+    public ResponseEntity<?> getAllCategories(WebRequest request) {
         try {
-            List<String> categories = productService.getAllCategories();
-            return ResponseEntity.ok(Map.of("categories", categories));
+            CategoryCache.Snapshot snapshot = productService.getCategorySnapshot();
+            
+            // Clients and proxies revalidate with If-None-Match; unchanged lists cost a 304
+            if (request.checkNotModified(snapshot.getETag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getETag())
+                    .build();
+            }
+            
+            return ResponseEntity.ok()
+                .eTag(snapshot.getETag())
+                .cacheControl(CacheControl.noCache())
+                .body(Map.of(
+                    "categories", snapshot.getNames(),
+                    "categoryCounts", snapshot.getCategories(),
+                    "version", snapshot.getVersion()
+                ));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(Map.of("message", "Error fetching categories: " + e.getMessage()));
@@ -107,7 +195,7 @@ public class ProductController {
     @GetMapping("/category/{category}")
     public ResponseEntity<?> getProductsByCategory(@PathVariable String category) {
         try {
-            List<Product> products = productService.getProductsByCategory(category);
+            List<ProductSummary> products = productService.getProductsByCategory(category);
             
             return ResponseEntity.ok(Map.of(
                 "products", products,
@@ -125,51 +213,90 @@ public class ProductController {
      * Provides full-text search, faceted filtering, and relevance scoring
      */
     @PostMapping("/search/advanced")
-    public ResponseEntity<?> advancedSearchPost(@RequestBody Map<String, Object> searchRequest) {
+    public ResponseEntity<?> advancedSearchPost(@RequestBody ProductSearchRequest searchRequest) {
         try {
-            // Fallback to regular search
-            String query = (String) searchRequest.getOrDefault("query", "");
-            Integer size = (Integer) searchRequest.getOrDefault("size", 50);
-            return searchProducts(query, size);
+            return ResponseEntity.ok(toSearchResponse(productService.advancedSearch(searchRequest)));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error in advanced search", e);
-            // Fallback to regular search on error
-            return searchProducts("", 50);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "Search failed, please try again"));
         }
     }
     
     /**
      * Advanced search endpoint using Elasticsearch (GET method)
-     * Provides full-text search, faceted filtering, and relevance scoring
+     * Provides full-text search, faceted filtering, and relevance scoring.
+     * category may be repeated or comma-separated for multi-select.
      */
     @GetMapping("/search/advanced")
     public ResponseEntity<?> advancedSearch(
             @RequestParam(required = false) String q,
-            @RequestParam(required = false) String category,
+            @RequestParam(required = false) List<String> category,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) BigDecimal minRating,
+            @RequestParam(required = false) Boolean inStock,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "relevance") String sortBy,
             @RequestParam(defaultValue = "desc") String order) {
         
         try {
-            // Fallback to regular search
-            return searchProducts(q != null ? q : "", size);
+            ProductSearchRequest searchRequest = new ProductSearchRequest();
+            searchRequest.setQuery(q);
+            searchRequest.getFilters().setCategory(category);
+            searchRequest.getFilters().setMinPrice(minPrice);
+            searchRequest.getFilters().setMaxPrice(maxPrice);
+            searchRequest.getFilters().setMinRating(minRating);
+            searchRequest.getFilters().setInStock(inStock);
+            // Clamp before multiplying so page * size cannot overflow past the window check
+            int pageSize = Math.max(1, Math.min(size, ProductService.MAX_SEARCH_PAGE_SIZE));
+            long from = (long) Math.max(0, page) * pageSize;
+            if (from + pageSize > ProductService.MAX_SEARCH_WINDOW) {
+                return ResponseEntity.badRequest().body(Map.of("message",
+                        "Cannot page past " + ProductService.MAX_SEARCH_WINDOW + " results; narrow the search"));
+            }
+            searchRequest.setFrom((int) from);
+            searchRequest.setSize(pageSize);
+            searchRequest.setSortBy(ProductSearchRequest.SortBy.parse(sortBy, order).name());
+            
+            return ResponseEntity.ok(toSearchResponse(productService.advancedSearch(searchRequest)));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
-            // Fallback to regular search on error
-            return searchProducts(q != null ? q : "", size);
+            logger.error("Error in advanced search", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "Search failed, please try again"));
         }
     }
     
+    private Map<String, Object> toSearchResponse(ProductSearchResult result) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("products", result.getProducts());
+        response.put("total", result.getTotal());
+        response.put("totalExact", result.isTotalExact());
+        response.put("from", result.getFrom());
+        response.put("size", result.getSize());
+        response.put("facets", Map.of(
+            "categories", result.getCategoryFacets(),
+            "priceRanges", result.getPriceFacets()
+        ));
+        response.put("engine", result.getEngine());
+        return response;
+    }
+    
     /**
      * Get search suggestions for autocomplete
      */
     @GetMapping("/search/suggestions")
-    public ResponseEntity<?> getSearchSuggestions(@RequestParam String prefix) {
+    public ResponseEntity<?> getSearchSuggestions(@RequestParam String prefix,
+                                                  @RequestParam(defaultValue = "8") int limit) {
         try {
-            return ResponseEntity.ok(Map.of("suggestions", List.of()));
+            return ResponseEntity.ok(Map.of("suggestions", productService.getSearchSuggestions(prefix, limit)));
         } catch (Exception e) {
+            logger.error("Failed to get search suggestions: ", e);
             return ResponseEntity.ok(Map.of("suggestions", List.of()));
         }
     }
@@ -1,50 +1,60 @@
 package com.shoppingmall.document;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
-@Document(indexName = "products")
+/**
+ * Mirrors resources/elasticsearch/product-index.json, which is the mapping actually applied
+ * (ProductIndexManager). Keep the two in sync.
+ */
+@Document(indexName = "products", createIndex = false)
 public class ProductDocument {
     
     @Id
     private Long id;
     
-    @Field(type = FieldType.Text, analyzer = "standard")
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "standard"),
+            otherFields = @InnerField(suffix = "prefix", type = FieldType.Text,
+                    analyzer = "prefix_index", searchAnalyzer = "prefix_search"))
     private String name;
     
     @Field(type = FieldType.Text, analyzer = "standard")
     private String description;
     
-    @Field(type = FieldType.Double)
+    @Field(type = FieldType.Scaled_Float, scalingFactor = 100)
     private BigDecimal price;
     
-    @Field(type = FieldType.Keyword)
+    @Field(type = FieldType.Keyword, eagerGlobalOrdinals = true)
     private String category;
     
-    @Field(type = FieldType.Keyword)
+    @Field(type = FieldType.Keyword, index = false, docValues = false)
     private String imageUrl;
     
     @Field(type = FieldType.Integer)
     private Integer stockQuantity;
     
-    @Field(type = FieldType.Float)
+    @Field(type = FieldType.Scaled_Float, scalingFactor = 100)
     private Float rating;
     
-    @Field(type = FieldType.Integer)
+    @Field(type = FieldType.Integer, docValues = false)
     private Integer reviewCount;
     
     @Field(type = FieldType.Boolean)
     private Boolean isActive;
     
-    @Field(type = FieldType.Date)
+    @Field(type = FieldType.Date, format = {DateFormat.date_optional_time, DateFormat.epoch_millis})
     private LocalDateTime createdAt;
     
-    @Field(type = FieldType.Date)
+    @Field(type = FieldType.Date, format = {DateFormat.date_optional_time, DateFormat.epoch_millis})
     private LocalDateTime updatedAt;
 
     // Constructors
@@ -1,10 +1,17 @@
 package com.shoppingmall.mapper;
 
+import com.shoppingmall.model.FacetBucket;
+import com.shoppingmall.model.IdRangeChecksum;
 import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductSearchRequest;
+import com.shoppingmall.model.ProductSummary;
+import com.shoppingmall.util.ProductCursor;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,20 +23,59 @@ public interface ProductMapper {
     
     // Read
     Optional<Product> findById(@Param("id") Long id);
-    List<Product> findAll(@Param("category") String category, 
-                         @Param("minPrice") BigDecimal minPrice,
-                         @Param("maxPrice") BigDecimal maxPrice,
-                         @Param("sortBy") String sortBy,
-                         @Param("sortOrder") String sortOrder,
-                         @Param("limit") Integer limit,
-                         @Param("offset") Integer offset);
-    
-    List<Product> findByCategory(@Param("category") String category);
-    List<Product> searchByName(@Param("query") String query, @Param("limit") Integer limit);
+    List<Product> findByIds(@Param("ids") List<Long> ids);
+    List<Product> findByIdsIncludingInactive(@Param("ids") List<Long> ids);
+    
+    // Read (listing projection)
+    List<ProductSummary> findAllSummaries(@Param("category") String category,
+                                          @Param("minPrice") BigDecimal minPrice,
+                                          @Param("maxPrice") BigDecimal maxPrice,
+                                          @Param("sortBy") String sortBy,
+                                          @Param("sortOrder") String sortOrder,
+                                          @Param("limit") Integer limit,
+                                          @Param("offset") Integer offset);
+    List<ProductSummary> findSummariesAfter(@Param("category") String category,
+                                            @Param("minPrice") BigDecimal minPrice,
+                                            @Param("maxPrice") BigDecimal maxPrice,
+                                            @Param("sort") String sort,
+                                            @Param("cursor") ProductCursor cursor,
+                                            @Param("limit") Integer limit);
+    List<ProductSummary> findSummariesByCategory(@Param("category") String category);
+    List<ProductSummary> searchSummariesFiltered(@Param("request") ProductSearchRequest request,
+                                                 @Param("sort") String sort,
+                                                 @Param("offset") int offset,
+                                                 @Param("limit") int limit);
+    long countSummariesFiltered(@Param("request") ProductSearchRequest request);
+    List<FacetBucket> findCategoryFacets(@Param("request") ProductSearchRequest request, @Param("limit") int limit);
+    List<FacetBucket> findPriceFacets(@Param("request") ProductSearchRequest request,
+                                      @Param("breaks") List<BigDecimal> breaks);
+    List<ProductSummary> searchSummariesByName(@Param("query") String query, @Param("limit") Integer limit,
+                                              @Param("mode") String mode);
+    
     List<String> findAllCategories();
+    
+    // Streaming read of every product (active or not) in id order, for exports
+    Cursor<Product> streamAll(@Param("afterId") Long afterId);
+    Cursor<Product> streamRange(@Param("afterId") Long afterId, @Param("toId") Long toId);
+    Cursor<Product> streamUpdatedSince(@Param("since") LocalDateTime since);
+    Long findMinId();
+    Long findMaxId();
+    long countAll();
+    LocalDateTime findDatabaseTime();
+    
+    // Search index consistency check: checksums per id range, then the synced fields row by row
+    List<IdRangeChecksum> findIdRangeChecksums(@Param("ranges") List<IdRangeChecksum> ranges,
+                                               @Param("weightModulus") int weightModulus);
+    List<Product> findSyncFieldsInIdRanges(@Param("ranges") List<IdRangeChecksum> ranges);
+    List<Product> findActiveCategoryAssignments();
+    String findActiveCategoryById(@Param("id") Long id);
     int countProducts(@Param("category") String category, 
                      @Param("minPrice") BigDecimal minPrice,
                      @Param("maxPrice") BigDecimal maxPrice);
+    int countProductsUpTo(@Param("category") String category,
+                          @Param("minPrice") BigDecimal minPrice,
+                          @Param("maxPrice") BigDecimal maxPrice,
+                          @Param("cap") Integer cap);
     
     // Update
     int update(Product product);
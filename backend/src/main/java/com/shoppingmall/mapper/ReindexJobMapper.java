@@ -0,0 +1,34 @@
+package com.shoppingmall.mapper;
+
+import com.shoppingmall.model.ReindexJob;
+import com.shoppingmall.model.ReindexPartition;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+@Mapper
+public interface ReindexJobMapper {
+
+    // Jobs
+    int insertJob(ReindexJob job);
+    Optional<ReindexJob> findJobById(@Param("id") Long id);
+    List<ReindexJob> findRecentJobs(@Param("limit") int limit);
+    List<ReindexJob> findJobsByStatus(@Param("status") String status);
+    int updateJobStatus(@Param("id") Long id,
+                        @Param("status") String status,
+                        @Param("errorMessage") String errorMessage);
+
+    // Partitions
+    int insertPartitions(@Param("partitions") List<ReindexPartition> partitions);
+    List<ReindexPartition> findPartitionsByJobId(@Param("jobId") Long jobId);
+    int updatePartitionStatus(@Param("id") Long id,
+                              @Param("status") String status,
+                              @Param("errorMessage") String errorMessage);
+    int checkpointPartition(@Param("id") Long id,
+                            @Param("lastId") Long lastId,
+                            @Param("indexed") long indexed,
+                            @Param("failed") long failed,
+                            @Param("retried") long retried);
+}
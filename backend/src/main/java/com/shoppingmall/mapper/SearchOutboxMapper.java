@@ -0,0 +1,51 @@
+package com.shoppingmall.mapper;
+
+import com.shoppingmall.model.SearchOutboxEvent;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface SearchOutboxMapper {
+
+    /**
+     * Queue a change; delayMs holds it back so a burst of changes to one product is synced once
+     */
+    int insert(@Param("productId") Long productId, @Param("partial") boolean partial, @Param("delayMs") long delayMs);
+
+    List<SearchOutboxEvent> findDue(@Param("limit") int limit);
+
+    /**
+     * Remove every event for the given products up to maxId; one re-sync covers all of them.
+     * With partialOnly, full-document events are kept: a partial update doesn't cover them.
+     */
+    int deleteUpTo(@Param("productIds") Collection<Long> productIds, @Param("maxId") Long maxId,
+                   @Param("partialOnly") boolean partialOnly);
+
+    int markFailed(@Param("productIds") Collection<Long> productIds,
+                   @Param("maxId") Long maxId,
+                   @Param("error") String error,
+                   @Param("baseDelayMs") long baseDelayMs,
+                   @Param("maxDelayMs") long maxDelayMs);
+
+    /**
+     * Dead-letter events that failed maxAttempts times: copied to search_outbox_dead, then
+     * removed from the outbox by deleteDeadLettered
+     */
+    int copyExhaustedToDead(@Param("maxAttempts") int maxAttempts);
+
+    int deleteDeadLettered();
+
+    int purgeDeadBefore(@Param("retentionDays") int retentionDays);
+
+    long countDead();
+
+    long countPending();
+
+    LocalDateTime findOldestCreatedAt();
+
+    Integer findMaxAttempts();
+}
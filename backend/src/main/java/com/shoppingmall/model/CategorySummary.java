@@ -0,0 +1,19 @@
+package com.shoppingmall.model;
+
+public class CategorySummary {
+    private final String name;
+    private final int productCount;
+
+    public CategorySummary(String name, int productCount) {
+        this.name = name;
+        this.productCount = productCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+}
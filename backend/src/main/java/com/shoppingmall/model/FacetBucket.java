@@ -0,0 +1,61 @@
+package com.shoppingmall.model;
+
+import java.math.BigDecimal;
+
+/**
+ * One facet value with its hit count. Range buckets also carry their bounds (from inclusive,
+ * to exclusive; null means unbounded).
+ */
+public class FacetBucket {
+    private String key;
+    private BigDecimal from;
+    private BigDecimal to;
+    private long count;
+
+    public FacetBucket() {
+    }
+
+    public FacetBucket(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    public FacetBucket(String key, BigDecimal from, BigDecimal to, long count) {
+        this.key = key;
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public BigDecimal getFrom() {
+        return from;
+    }
+
+    public void setFrom(BigDecimal from) {
+        this.from = from;
+    }
+
+    public BigDecimal getTo() {
+        return to;
+    }
+
+    public void setTo(BigDecimal to) {
+        this.to = to;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
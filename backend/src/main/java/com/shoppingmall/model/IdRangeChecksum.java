@@ -0,0 +1,94 @@
+package com.shoppingmall.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates over the products with fromId <= id < toId that the search index must agree on:
+ * row count, and sums of stock, price (in cents), updated_at (epoch seconds, as UTC) and the
+ * active flag, each term weighted by (id % weight modulus + 1). The weights make the sums
+ * depend on which row holds which value, so two documents with swapped or offsetting values
+ * no longer cancel out. Any sync drift in the range changes at least one of them.
+ */
+public class IdRangeChecksum {
+    private long fromId;
+    private long toId;
+    private long count;
+    private long stockSum;
+    private BigDecimal priceSum;
+    private long updatedSum;
+    private long activeSum;
+
+    public IdRangeChecksum() {
+    }
+
+    public IdRangeChecksum(long fromId, long toId) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.priceSum = BigDecimal.ZERO;
+    }
+
+    public boolean matches(IdRangeChecksum other) {
+        return other != null
+                && count == other.count
+                && stockSum == other.stockSum
+                && priceSum.compareTo(other.priceSum) == 0
+                && updatedSum == other.updatedSum
+                && activeSum == other.activeSum;
+    }
+
+    public long getFromId() {
+        return fromId;
+    }
+
+    public void setFromId(long fromId) {
+        this.fromId = fromId;
+    }
+
+    public long getToId() {
+        return toId;
+    }
+
+    public void setToId(long toId) {
+        this.toId = toId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getStockSum() {
+        return stockSum;
+    }
+
+    public void setStockSum(long stockSum) {
+        this.stockSum = stockSum;
+    }
+
+    public BigDecimal getPriceSum() {
+        return priceSum;
+    }
+
+    public void setPriceSum(BigDecimal priceSum) {
+        this.priceSum = priceSum;
+    }
+
+    public long getUpdatedSum() {
+        return updatedSum;
+    }
+
+    public void setUpdatedSum(long updatedSum) {
+        this.updatedSum = updatedSum;
+    }
+
+    public long getActiveSum() {
+        return activeSum;
+    }
+
+    public void setActiveSum(long activeSum) {
+        this.activeSum = activeSum;
+    }
+}
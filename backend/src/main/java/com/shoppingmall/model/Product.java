@@ -32,6 +32,21 @@ public class Product {
         this.isActive = true;
     }
 
+    public Product(Product other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.description = other.description;
+        this.price = other.price;
+        this.category = other.category;
+        this.imageUrl = other.imageUrl;
+        this.stockQuantity = other.stockQuantity;
+        this.rating = other.rating;
+        this.reviewCount = other.reviewCount;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.isActive = other.isActive;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -0,0 +1,25 @@
+package com.shoppingmall.model;
+
+import java.util.List;
+
+/**
+ * Result of a batch product lookup: found products in request order plus the ids that were
+ * not found (or are inactive)
+ */
+public class ProductBatch {
+    private final List<Product> products;
+    private final List<Long> missingIds;
+
+    public ProductBatch(List<Product> products, List<Long> missingIds) {
+        this.products = products;
+        this.missingIds = missingIds;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+}
@@ -0,0 +1,34 @@
+package com.shoppingmall.model;
+
+import java.util.List;
+
+public class ProductPage {
+    private final List<ProductSummary> products;
+    private final int total;
+    private final boolean totalExact;
+
+    public ProductPage(List<ProductSummary> products, int total) {
+        this(products, total, true);
+    }
+
+    public ProductPage(List<ProductSummary> products, int total, boolean totalExact) {
+        this.products = products;
+        this.total = total;
+        this.totalExact = totalExact;
+    }
+
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * False when the total was capped in approximate count mode (i.e. "total or more")
+     */
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+}
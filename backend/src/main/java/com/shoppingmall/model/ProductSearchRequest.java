@@ -0,0 +1,151 @@
+package com.shoppingmall.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Advanced search request; the JSON shape matches the frontend's productsAPI.searchAdvanced
+ */
+public class ProductSearchRequest {
+
+    public enum SortBy {
+        RELEVANCE, PRICE_ASC, PRICE_DESC, RATING_DESC, NEWEST;
+
+        /**
+         * Accepts the enum names as well as the sortBy/order pairs used by the listing endpoints
+         */
+        public static SortBy parse(String sortBy, String order) {
+            if (sortBy == null || sortBy.isBlank()) {
+                return RELEVANCE;
+            }
+            String value = sortBy.trim().toUpperCase(Locale.ROOT);
+            boolean asc = "asc".equalsIgnoreCase(order);
+            switch (value) {
+                case "PRICE":
+                    return asc ? PRICE_ASC : PRICE_DESC;
+                case "RATING":
+                    return RATING_DESC;
+                case "NEWEST":
+                case "CREATED_AT":
+                    return NEWEST;
+                default:
+                    try {
+                        return SortBy.valueOf(value);
+                    } catch (IllegalArgumentException e) {
+                        return RELEVANCE;
+                    }
+            }
+        }
+    }
+
+    public static class Filters {
+        private List<String> category = new ArrayList<>();
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private BigDecimal minRating;
+        private Boolean inStock;
+
+        public List<String> getCategory() {
+            return category;
+        }
+
+        public void setCategory(List<String> category) {
+            this.category = category != null ? category : new ArrayList<>();
+        }
+
+        public BigDecimal getMinPrice() {
+            return minPrice;
+        }
+
+        public void setMinPrice(BigDecimal minPrice) {
+            this.minPrice = minPrice;
+        }
+
+        public BigDecimal getMaxPrice() {
+            return maxPrice;
+        }
+
+        public void setMaxPrice(BigDecimal maxPrice) {
+            this.maxPrice = maxPrice;
+        }
+
+        public BigDecimal getMinRating() {
+            return minRating;
+        }
+
+        public void setMinRating(BigDecimal minRating) {
+            this.minRating = minRating;
+        }
+
+        public Boolean getInStock() {
+            return inStock;
+        }
+
+        public void setInStock(Boolean inStock) {
+            this.inStock = inStock;
+        }
+
+        public boolean hasPriceRange() {
+            return minPrice != null || maxPrice != null;
+        }
+    }
+
+    private String query;
+    private Filters filters = new Filters();
+    private Integer from;
+    private Integer size;
+    private String sortBy;
+
+    public ProductSearchRequest() {
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public boolean hasQuery() {
+        return query != null && !query.isBlank();
+    }
+
+    public Filters getFilters() {
+        return filters;
+    }
+
+    public void setFilters(Filters filters) {
+        this.filters = filters != null ? filters : new Filters();
+    }
+
+    public Integer getFrom() {
+        return from;
+    }
+
+    public void setFrom(Integer from) {
+        this.from = from;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public void setSortBy(String sortBy) {
+        this.sortBy = sortBy;
+    }
+
+    public SortBy getSort() {
+        return SortBy.parse(sortBy, null);
+    }
+}
@@ -0,0 +1,96 @@
+package com.shoppingmall.model;
+
+import java.util.List;
+
+/**
+ * One page of advanced search hits plus the facets for the whole result set
+ */
+public class ProductSearchResult {
+    private List<ProductSummary> products;
+    private long total;
+    private boolean totalExact;
+    private int from;
+    private int size;
+    private List<FacetBucket> categoryFacets;
+    private List<FacetBucket> priceFacets;
+    private String engine;
+
+    public ProductSearchResult() {
+    }
+
+    public ProductSearchResult(List<ProductSummary> products, long total, boolean totalExact, int from, int size,
+                               List<FacetBucket> categoryFacets, List<FacetBucket> priceFacets, String engine) {
+        this.products = products;
+        this.total = total;
+        this.totalExact = totalExact;
+        this.from = from;
+        this.size = size;
+        this.categoryFacets = categoryFacets;
+        this.priceFacets = priceFacets;
+        this.engine = engine;
+    }
+
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<ProductSummary> products) {
+        this.products = products;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    public void setTotalExact(boolean totalExact) {
+        this.totalExact = totalExact;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public void setFrom(int from) {
+        this.from = from;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public List<FacetBucket> getCategoryFacets() {
+        return categoryFacets;
+    }
+
+    public void setCategoryFacets(List<FacetBucket> categoryFacets) {
+        this.categoryFacets = categoryFacets;
+    }
+
+    public List<FacetBucket> getPriceFacets() {
+        return priceFacets;
+    }
+
+    public void setPriceFacets(List<FacetBucket> priceFacets) {
+        this.priceFacets = priceFacets;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+}
@@ -0,0 +1,28 @@
+package com.shoppingmall.model;
+
+import java.util.List;
+
+/**
+ * One keyset-paginated page of products; nextCursor is null on the last page
+ */
+public class ProductSlice {
+    private final List<ProductSummary> products;
+    private final String nextCursor;
+
+    public ProductSlice(List<ProductSummary> products, String nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.shoppingmall.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Listing-card projection of a product: everything except the description and audit columns.
+ * Used by list and search endpoints; the detail endpoint still returns the full Product.
+ */
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private String category;
+    private String imageUrl;
+    private Integer stockQuantity;
+    private BigDecimal rating;
+    private Integer reviewCount;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public ProductSummary() {
+    }
+
+    public ProductSummary(Product product) {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.price = product.getPrice();
+        this.category = product.getCategory();
+        this.imageUrl = product.getImageUrl();
+        this.stockQuantity = product.getStockQuantity();
+        this.rating = product.getRating();
+        this.reviewCount = product.getReviewCount();
+        this.createdAt = product.getCreatedAt();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public void setStockQuantity(Integer stockQuantity) {
+        this.stockQuantity = stockQuantity;
+    }
+
+    public BigDecimal getRating() {
+        return rating;
+    }
+
+    public void setRating(BigDecimal rating) {
+        this.rating = rating;
+    }
+
+    public Integer getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(Integer reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isInStock() {
+        return stockQuantity != null && stockQuantity > 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.shoppingmall.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inclusive id range [startId, endId] of a reindex job. lastId is the checkpoint: every
+ * product up to it has been acknowledged by Elasticsearch.
+ */
+public class ReindexPartition {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private Long id;
+    private Long jobId;
+    private Integer partitionNo;
+    private Long startId;
+    private Long endId;
+    private Long lastId;
+    private String status;
+    private Long indexedCount;
+    private Long failedCount;
+    private Long retriedCount;
+    private String errorMessage;
+    private LocalDateTime updatedAt;
+
+    public ReindexPartition() {
+    }
+
+    public ReindexPartition(Long jobId, Integer partitionNo, Long startId, Long endId) {
+        this.jobId = jobId;
+        this.partitionNo = partitionNo;
+        this.startId = startId;
+        this.endId = endId;
+        this.status = PENDING;
+        this.indexedCount = 0L;
+        this.failedCount = 0L;
+        this.retriedCount = 0L;
+    }
+
+    /**
+     * Id after which streaming (re)starts
+     */
+    public long resumeAfterId() {
+        return lastId != null ? lastId : startId - 1;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Integer getPartitionNo() {
+        return partitionNo;
+    }
+
+    public void setPartitionNo(Integer partitionNo) {
+        this.partitionNo = partitionNo;
+    }
+
+    public Long getStartId() {
+        return startId;
+    }
+
+    public void setStartId(Long startId) {
+        this.startId = startId;
+    }
+
+    public Long getEndId() {
+        return endId;
+    }
+
+    public void setEndId(Long endId) {
+        this.endId = endId;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(Long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public Long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Long getRetriedCount() {
+        return retriedCount;
+    }
+
+    public void setRetriedCount(Long retriedCount) {
+        this.retriedCount = retriedCount;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
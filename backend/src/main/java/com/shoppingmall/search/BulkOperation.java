@@ -0,0 +1,54 @@
+package com.shoppingmall.search;
+
+import java.util.Map;
+
+/**
+ * One action of an Elasticsearch _bulk request
+ */
+public class BulkOperation {
+
+    public enum Type { INDEX, UPDATE, DELETE }
+
+    private final Type type;
+    private final String index;
+    private final String id;
+    private final Map<String, Object> source;
+
+    private BulkOperation(Type type, String index, String id, Map<String, Object> source) {
+        this.type = type;
+        this.index = index;
+        this.id = id;
+        this.source = source;
+    }
+
+    public static BulkOperation index(String index, Object id, Map<String, Object> document) {
+        return new BulkOperation(Type.INDEX, index, String.valueOf(id), document);
+    }
+
+    /**
+     * Partial update: only the given fields are changed in the stored document
+     */
+    public static BulkOperation update(String index, Object id, Map<String, Object> partialDocument) {
+        return new BulkOperation(Type.UPDATE, index, String.valueOf(id), partialDocument);
+    }
+
+    public static BulkOperation delete(String index, Object id) {
+        return new BulkOperation(Type.DELETE, index, String.valueOf(id), null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Map<String, Object> getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,116 @@
+package com.shoppingmall.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outcome of a bulk indexing run. Counters are updated concurrently by bulk workers.
+ */
+public class BulkReport {
+
+    private static final int MAX_RECORDED_ERRORS = 20;
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+    private final Set<String> failedIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> missingIds = ConcurrentHashMap.newKeySet();
+    private volatile long tookMillis;
+
+    void recordRequest(long requestBytes) {
+        requests.incrementAndGet();
+        bytes.addAndGet(requestBytes);
+    }
+
+    void recordSuccess(long count) {
+        succeeded.addAndGet(count);
+    }
+
+    void recordRetry(long count) {
+        retried.addAndGet(count);
+    }
+
+    void recordFailure(String id, int status, String reason) {
+        failed.incrementAndGet();
+        failedIds.add(id);
+        synchronized (errors) {
+            if (errors.size() < MAX_RECORDED_ERRORS) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("id", id);
+                error.put("status", status);
+                error.put("reason", reason);
+                errors.add(error);
+            }
+        }
+    }
+
+    void recordMissing(String id) {
+        missingIds.add(id);
+    }
+
+    void setTookMillis(long tookMillis) {
+        this.tookMillis = tookMillis;
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Document ids of every failed operation
+     */
+    public Set<String> getFailedIds() {
+        return failedIds;
+    }
+
+    /**
+     * Document ids of partial updates that found no document to update; neither succeeded
+     * nor failed, the caller decides whether to send the full document
+     */
+    public Set<String> getMissingIds() {
+        return missingIds;
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public List<Map<String, Object>> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("indexed", getSucceeded());
+        report.put("failed", getFailed());
+        report.put("missing", missingIds.size());
+        report.put("retried", getRetried());
+        report.put("requests", getRequests());
+        report.put("bytes", bytes.get());
+        report.put("tookMillis", tookMillis);
+        report.put("errors", getErrors());
+        return report;
+    }
+}
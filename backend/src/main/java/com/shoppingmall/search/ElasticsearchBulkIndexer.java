@@ -0,0 +1,327 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends documents to Elasticsearch through the _bulk API.
+ *
+ * Operations are serialized to NDJSON as they are added and cut into requests bounded by both
+ * action count and byte size. Up to {@code concurrency} requests per session are in flight at
+ * once; adding to a session blocks when that limit is reached, so a streaming producer cannot
+ * outrun the cluster. Items rejected with 429 (the write thread pool queue is full) are resent
+ * with exponential backoff; every other item error is final and lands in the {@link BulkReport}.
+ */
+@Component
+public class ElasticsearchBulkIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchBulkIndexer.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String RESPONSE_FILTER =
+            "?filter_path=errors,items.*.status,items.*.error.type,items.*.error.reason";
+
+    @Value("${elasticsearch.url:http://elasticsearch:9200}")
+    private String elasticsearchUrl;
+
+    private final int maxActions;
+    private final long maxBytes;
+    private final int concurrency;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ElasticsearchCircuitBreaker circuitBreaker;
+    private final ExecutorService executor;
+
+    public ElasticsearchBulkIndexer(ElasticsearchCircuitBreaker circuitBreaker,
+                                    ElasticsearchHttpClients httpClients,
+                                    @Value("${elasticsearch.bulk.max-actions:1000}") int maxActions,
+                                    @Value("${elasticsearch.bulk.max-bytes:5242880}") long maxBytes,
+                                    @Value("${elasticsearch.bulk.concurrency:3}") int concurrency,
+                                    @Value("${elasticsearch.bulk.max-retries:3}") int maxRetries,
+                                    @Value("${elasticsearch.bulk.initial-backoff-ms:200}") long initialBackoffMillis) {
+        this.circuitBreaker = circuitBreaker;
+        this.maxActions = Math.max(1, maxActions);
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.restTemplate = httpClients.bulk();
+        this.objectMapper = new ObjectMapper();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "es-bulk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Start a session for streaming operations; call {@link Session#finish()} to flush and wait
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * Send a known set of operations and wait for all of them
+     */
+    public BulkReport execute(Collection<BulkOperation> operations) {
+        Session session = openSession();
+        for (BulkOperation operation : operations) {
+            session.add(operation);
+        }
+        return session.finish();
+    }
+
+    /**
+     * A serialized operation: action line plus optional source line, each newline-terminated
+     */
+    private record Entry(BulkOperation operation, byte[] payload) {
+    }
+
+    public class Session {
+
+        private final BulkReport report = new BulkReport();
+        private final Semaphore inFlight = new Semaphore(concurrency);
+        private final long startedAt = System.currentTimeMillis();
+        private List<Entry> batch = new ArrayList<>();
+        private long batchBytes;
+        private boolean finished;
+
+        public synchronized void add(BulkOperation operation) {
+            if (finished) {
+                throw new IllegalStateException("Bulk session already finished");
+            }
+            Entry entry = new Entry(operation, serialize(operation));
+            if (!batch.isEmpty() && (batch.size() >= maxActions || batchBytes + entry.payload().length > maxBytes)) {
+                flush();
+            }
+            batch.add(entry);
+            batchBytes += entry.payload().length;
+        }
+
+        /**
+         * Send whatever is buffered, wait for every in-flight request and return the report
+         */
+        public synchronized BulkReport finish() {
+            if (!finished) {
+                finished = true;
+                flush();
+                inFlight.acquireUninterruptibly(concurrency);
+                inFlight.release(concurrency);
+                report.setTookMillis(System.currentTimeMillis() - startedAt);
+            }
+            return report;
+        }
+
+        public BulkReport getReport() {
+            return report;
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Entry> toSend = batch;
+            batch = new ArrayList<>();
+            batchBytes = 0;
+
+            // Blocks the producer while `concurrency` requests are already outstanding
+            inFlight.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        sendWithRetry(toSend, report);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+    }
+
+    private void sendWithRetry(List<Entry> entries, BulkReport report) {
+        List<Entry> pending = entries;
+        int attempt = 0;
+        while (!pending.isEmpty()) {
+            boolean canRetry = attempt < maxRetries;
+            List<Entry> retry;
+            try {
+                retry = send(pending, report, canRetry);
+            } catch (HttpStatusCodeException e) {
+                int status = e.getStatusCode().value();
+                if (status != 429 && status < 500) {
+                    circuitBreaker.recordSuccess();
+                    failAll(pending, report, status, e.getStatusText());
+                    return;
+                }
+                // 429 is the cluster shedding load: retried, and counted against the breaker
+                circuitBreaker.recordFailure(e);
+                retry = canRetry ? pending : failAll(pending, report, status, e.getStatusText());
+            } catch (ElasticsearchBusyException e) {
+                // Refused locally before reaching the cluster; back off and try again
+                circuitBreaker.recordSkipped();
+                retry = canRetry ? pending : failAll(pending, report, 0, e.getMessage());
+            } catch (ElasticsearchUnavailableException e) {
+                // Circuit open; nothing was sent and no trial slot taken
+                retry = canRetry ? pending : failAll(pending, report, 0, e.getMessage());
+            } catch (Exception e) {
+                circuitBreaker.recordFailure(e);
+                logger.warn("Bulk request of {} actions failed: {}", pending.size(), e.getMessage());
+                retry = canRetry ? pending : failAll(pending, report, 0, e.getMessage());
+            }
+
+            if (retry.isEmpty()) {
+                return;
+            }
+            attempt++;
+            report.recordRetry(retry.size());
+            if (!backoff(attempt)) {
+                failAll(retry, report, 0, "interrupted");
+                return;
+            }
+            pending = retry;
+        }
+    }
+
+    /**
+     * Send one request; returns the entries that should be resent
+     */
+    private List<Entry> send(List<Entry> entries, BulkReport report, boolean canRetry) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new ElasticsearchUnavailableException("Elasticsearch circuit is open");
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            body.writeBytes(entry.payload());
+        }
+        byte[] payload = body.toByteArray();
+        report.recordRequest(payload.length);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(NDJSON);
+        ResponseEntity<String> response = restTemplate.exchange(
+                elasticsearchUrl + "/_bulk" + RESPONSE_FILTER, HttpMethod.POST,
+                new HttpEntity<>(payload, headers), String.class);
+        circuitBreaker.recordSuccess();
+
+        JsonNode root = readTree(response.getBody());
+        if (!root.path("errors").asBoolean(false)) {
+            report.recordSuccess(entries.size());
+            return List.of();
+        }
+
+        // Items come back in request order
+        JsonNode items = root.path("items");
+        List<Entry> retry = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            JsonNode item = items.path(i);
+            Iterator<JsonNode> results = item.elements();
+            JsonNode result = results.hasNext() ? results.next() : item;
+            int status = result.path("status").asInt(0);
+
+            if (status >= 200 && status < 300) {
+                report.recordSuccess(1);
+            } else if (status == 404 && entry.operation().getType() == BulkOperation.Type.DELETE) {
+                // Already gone is what a delete wants
+                report.recordSuccess(1);
+            } else if (status == 404 && entry.operation().getType() == BulkOperation.Type.UPDATE) {
+                report.recordMissing(entry.operation().getId());
+            } else if (status == 429 && canRetry) {
+                retry.add(entry);
+            } else {
+                JsonNode error = result.path("error");
+                String reason = error.path("type").asText("unknown") + ": " + error.path("reason").asText("");
+                report.recordFailure(entry.operation().getId(), status, reason);
+            }
+        }
+        return retry;
+    }
+
+    private List<Entry> failAll(List<Entry> entries, BulkReport report, int status, String reason) {
+        for (Entry entry : entries) {
+            report.recordFailure(entry.operation().getId(), status, reason);
+        }
+        return List.of();
+    }
+
+    /**
+     * Exponential backoff with full jitter; false if the worker was interrupted
+     */
+    private boolean backoff(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private byte[] serialize(BulkOperation operation) {
+        String action = operation.getType().name().toLowerCase();
+        Map<String, Object> metadata = Map.of("_index", operation.getIndex(), "_id", operation.getId());
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(objectMapper.writeValueAsBytes(Map.of(action, metadata)));
+            out.write('\n');
+            if (operation.getType() == BulkOperation.Type.INDEX) {
+                out.write(objectMapper.writeValueAsBytes(operation.getSource()));
+                out.write('\n');
+            } else if (operation.getType() == BulkOperation.Type.UPDATE) {
+                out.write(objectMapper.writeValueAsBytes(Map.of("doc", operation.getSource())));
+                out.write('\n');
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body == null ? "{}" : body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.shoppingmall.search;
+
+/**
+ * Thrown when a request to Elasticsearch is refused locally because its operation already has
+ * the maximum number of requests in flight. Nothing was sent, so it says nothing about the
+ * health of the cluster and must not count against the circuit breaker.
+ */
+public class ElasticsearchBusyException extends RuntimeException {
+
+    public ElasticsearchBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,202 @@
+package com.shoppingmall.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker guarding every call to Elasticsearch.
+ *
+ * CLOSED: calls flow; consecutive failures past the threshold open the circuit.
+ * OPEN: calls are rejected without touching the network until the open period elapses.
+ * HALF_OPEN: a single trial call is let through; its outcome closes or re-opens the circuit.
+ *
+ * Outcomes come from real calls and from a periodic health probe. A probe can close the
+ * circuit but never resets the failure count of a closed one, so real calls failing now and then
+ * still add up. The state is a volatile field, so {@link #isOpen()} and {@link #allowRequest()}
+ * on the hot path are a field read in the common case.
+ */
+@Component
+public class ElasticsearchCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchCircuitBreaker.class);
+    private static final int MAX_RECORDED_TRANSITIONS = 20;
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private volatile String lastFailure;
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong totalFailures = new AtomicLong();
+    private final AtomicLong totalSuccesses = new AtomicLong();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong transitionCount = new AtomicLong();
+    private final Deque<Map<String, Object>> recentTransitions = new ArrayDeque<>();
+
+    public ElasticsearchCircuitBreaker(@Value("${elasticsearch.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                       @Value("${elasticsearch.circuit-breaker.open-duration-ms:30000}") long openDurationMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Whether calls are being turned away right now: open within the open period, or half-open
+     * with the trial call taken. Has no side effects, so callers can use it to pick a path; the
+     * call itself goes through {@link #allowRequest()} right before it is sent.
+     */
+    public boolean isOpen() {
+        State current = state;
+        if (current == State.OPEN) {
+            return System.currentTimeMillis() - openedAt < openDurationMillis;
+        }
+        return current == State.HALF_OPEN && trialInFlight.get();
+    }
+
+    /**
+     * Whether a call to Elasticsearch may be sent now. In the half-open state this takes the
+     * single trial slot, which the call's recorded outcome frees, so only call it right before
+     * sending.
+     */
+    public boolean allowRequest() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                rejectedCalls.incrementAndGet();
+                return false;
+            }
+            transition(State.OPEN, State.HALF_OPEN, "open period elapsed");
+        }
+        // HALF_OPEN: exactly one trial call at a time
+        if (trialInFlight.compareAndSet(false, true)) {
+            return true;
+        }
+        rejectedCalls.incrementAndGet();
+        return false;
+    }
+
+    public void recordSuccess() {
+        totalSuccesses.incrementAndGet();
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            transition(state, State.CLOSED, "call succeeded");
+        }
+        trialInFlight.set(false);
+    }
+
+    public void recordFailure(Throwable cause) {
+        totalFailures.incrementAndGet();
+        lastFailure = cause != null ? cause.getClass().getSimpleName() + ": " + cause.getMessage() : "unknown";
+        int failures = consecutiveFailures.incrementAndGet();
+
+        State current = state;
+        if (current == State.HALF_OPEN) {
+            transition(State.HALF_OPEN, State.OPEN, "trial call failed");
+        } else if (current == State.CLOSED && failures >= failureThreshold) {
+            transition(State.CLOSED, State.OPEN, failures + " consecutive failures");
+        }
+        trialInFlight.set(false);
+    }
+
+    /**
+     * The health probe found the cluster usable. Closes an open or half-open circuit; a closed
+     * circuit keeps its failure count.
+     */
+    public void recordProbeSuccess() {
+        State current = state;
+        if (current != State.CLOSED) {
+            consecutiveFailures.set(0);
+            transition(current, State.CLOSED, "health probe succeeded");
+        }
+    }
+
+    /**
+     * The health probe failed or found the cluster red. Counts like a failed call, but leaves a
+     * trial call in flight to record its own outcome.
+     */
+    public void recordProbeFailure(Throwable cause) {
+        totalFailures.incrementAndGet();
+        lastFailure = cause != null ? cause.getClass().getSimpleName() + ": " + cause.getMessage() : "unknown";
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.CLOSED && failures >= failureThreshold) {
+            transition(State.CLOSED, State.OPEN, failures + " consecutive failures");
+        }
+    }
+
+    /**
+     * The call was never sent (rejected locally, e.g. too many in flight); frees the trial slot
+     * without counting as an outcome
+     */
+    public void recordSkipped() {
+        trialInFlight.set(false);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("failureThreshold", failureThreshold);
+        stats.put("totalFailures", totalFailures.get());
+        stats.put("totalSuccesses", totalSuccesses.get());
+        stats.put("rejectedCalls", rejectedCalls.get());
+        stats.put("transitions", transitionCount.get());
+        stats.put("openedAt", openedAt > 0 ? Instant.ofEpochMilli(openedAt).toString() : null);
+        stats.put("lastFailure", lastFailure);
+        synchronized (recentTransitions) {
+            stats.put("recentTransitions", new ArrayList<>(recentTransitions));
+        }
+        return stats;
+    }
+
+    private synchronized void transition(State from, State to, String reason) {
+        if (state != from) {
+            return;
+        }
+        if (to == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        state = to;
+        transitionCount.incrementAndGet();
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("from", from.name());
+        record.put("to", to.name());
+        record.put("reason", reason);
+        record.put("at", Instant.now().toString());
+        synchronized (recentTransitions) {
+            recentTransitions.addFirst(record);
+            while (recentTransitions.size() > MAX_RECORDED_TRANSITIONS) {
+                recentTransitions.removeLast();
+            }
+        }
+
+        if (to == State.OPEN) {
+            logger.warn("Elasticsearch circuit {} -> {}: {}", from, to, reason);
+        } else {
+            logger.info("Elasticsearch circuit {} -> {}: {}", from, to, reason);
+        }
+    }
+}
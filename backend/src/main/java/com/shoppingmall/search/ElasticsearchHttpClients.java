@@ -0,0 +1,234 @@
+package com.shoppingmall.search;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP clients for every call to Elasticsearch.
+ *
+ * One keep-alive connection pool is shared by a RestTemplate per kind of operation, each with
+ * its own response timeout: searches fail fast so a hung node cannot park request threads,
+ * while bulk and admin calls (alias swaps, refresh, settings) are allowed to take longer.
+ * Every operation also caps its requests in flight; a caller that cannot get a slot within the
+ * pool timeout gets an {@link ElasticsearchBusyException} instead of queueing without bound.
+ */
+@Component
+public class ElasticsearchHttpClients {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final long poolTimeoutMillis;
+    private final List<Operation> operations = new ArrayList<>();
+
+    private final RestTemplate search;
+    private final RestTemplate bulk;
+    private final RestTemplate admin;
+
+    public ElasticsearchHttpClients(@Value("${elasticsearch.http.max-connections:50}") int maxConnections,
+                                    @Value("${elasticsearch.http.connect-timeout-ms:1000}") long connectTimeoutMillis,
+                                    @Value("${elasticsearch.http.pool-timeout-ms:500}") long poolTimeoutMillis,
+                                    @Value("${elasticsearch.http.keep-alive-seconds:30}") long keepAliveSeconds,
+                                    @Value("${elasticsearch.http.search.read-timeout-ms:2000}") long searchTimeoutMillis,
+                                    @Value("${elasticsearch.http.search.max-in-flight:32}") int searchMaxInFlight,
+                                    @Value("${elasticsearch.http.bulk.read-timeout-ms:60000}") long bulkTimeoutMillis,
+                                    @Value("${elasticsearch.http.bulk.max-in-flight:8}") int bulkMaxInFlight,
+                                    @Value("${elasticsearch.http.admin.read-timeout-ms:120000}") long adminTimeoutMillis,
+                                    @Value("${elasticsearch.http.admin.max-in-flight:4}") int adminMaxInFlight) {
+        this.poolTimeoutMillis = poolTimeoutMillis;
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        this.search = restTemplate(new Operation("search", searchMaxInFlight), searchTimeoutMillis, keepAliveSeconds);
+        this.bulk = restTemplate(new Operation("bulk", bulkMaxInFlight), bulkTimeoutMillis, keepAliveSeconds);
+        this.admin = restTemplate(new Operation("admin", adminMaxInFlight), adminTimeoutMillis, keepAliveSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionManager.close(CloseMode.GRACEFUL);
+    }
+
+    /** Queries: _search, _count on the read path */
+    public RestTemplate search() {
+        return search;
+    }
+
+    /** _bulk requests */
+    public RestTemplate bulk() {
+        return bulk;
+    }
+
+    /** Index management, aliases, refresh, health probes */
+    public RestTemplate admin() {
+        return admin;
+    }
+
+    public Map<String, Object> getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> poolStats = new LinkedHashMap<>();
+        poolStats.put("leased", pool.getLeased());
+        poolStats.put("available", pool.getAvailable());
+        poolStats.put("pending", pool.getPending());
+        poolStats.put("max", pool.getMax());
+
+        Map<String, Object> operationStats = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            operationStats.put(operation.name, operation.getStats());
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool", poolStats);
+        stats.put("operations", operationStats);
+        return stats;
+    }
+
+    private RestTemplate restTemplate(Operation operation, long readTimeoutMillis, long keepAliveSeconds) {
+        // Clients share the pool; closing is left to the connection manager
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMillis))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofSeconds(keepAliveSeconds))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(keepAliveSeconds))
+                .build();
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
+        restTemplate.getInterceptors().add(operation);
+        operations.add(operation);
+        return restTemplate;
+    }
+
+    /**
+     * Caps requests in flight for one kind of operation. The slot is held until the response
+     * is closed, i.e. until its body has been read, not just until the headers arrive.
+     */
+    private final class Operation implements ClientHttpRequestInterceptor {
+
+        private final String name;
+        private final int maxInFlight;
+        private final Semaphore permits;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Operation(String name, int maxInFlight) {
+            this.name = name;
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.permits = new Semaphore(this.maxInFlight);
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+                throws IOException {
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(poolTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for an Elasticsearch " + name + " slot", e);
+            }
+            if (!acquired) {
+                rejected.incrementAndGet();
+                throw new ElasticsearchBusyException(maxInFlight + " Elasticsearch " + name + " requests already in flight");
+            }
+
+            requests.incrementAndGet();
+            try {
+                return new ReleasingResponse(execution.execute(request, body), permits);
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("inFlight", maxInFlight - permits.availablePermits());
+            stats.put("maxInFlight", maxInFlight);
+            stats.put("requests", requests.get());
+            stats.put("rejected", rejected.get());
+            return stats;
+        }
+    }
+
+    private static final class ReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
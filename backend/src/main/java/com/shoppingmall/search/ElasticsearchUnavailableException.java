@@ -0,0 +1,12 @@
+package com.shoppingmall.search;
+
+/**
+ * Thrown right before a request to Elasticsearch when the circuit breaker turns it away. Nothing
+ * was sent and no trial slot was taken, so there is no outcome to record.
+ */
+public class ElasticsearchUnavailableException extends RuntimeException {
+
+    public ElasticsearchUnavailableException(String message) {
+        super(message);
+    }
+}
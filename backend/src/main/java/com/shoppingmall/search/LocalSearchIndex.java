@@ -0,0 +1,499 @@
+package com.shoppingmall.search;
+
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductSummary;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.MMapDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Embedded Lucene index of active products, kept on local disk and read through mmap.
+ *
+ * Serves full-text search when Elasticsearch is down, or as the only engine on small
+ * deployments (search.engine=local). Queries mirror the Elasticsearch multi_match: best of
+ * name^2 and description, AUTO fuzziness. Every document stores the listing fields, so a hit
+ * becomes a {@link ProductSummary} without a trip to MySQL.
+ *
+ * All writes run on one thread. Product writes are collected like in the catalog engine and
+ * re-read by id; searchers only see commits, so a rebuild streaming the whole table replaces
+ * the old contents in one step. Each commit records the time up to which changes are known to
+ * be applied; on startup rows updated since then are re-read. Rows hard-deleted while the
+ * application was down are only removed by a rebuild.
+ */
+@Component
+public class LocalSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalSearchIndex.class);
+
+    private static final String SYNCED_AT = "syncedAt";
+    private static final long CATCH_UP_SLACK_SECONDS = 300;
+    private static final int COMMIT_EVERY = 5000;
+    private static final int REFRESH_CHUNK_SIZE = 500;
+    private static final float NAME_BOOST = 2.0f;
+    private static final int FUZZY_MAX_EXPANSIONS = 50;
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private final ProductMapper productMapper;
+    private final TransactionTemplate streamTemplate;
+    private final boolean enabled;
+    private final Path directoryPath;
+    private final long refreshDelayMillis;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final ScheduledExecutorService executor;
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    private MMapDirectory directory;
+    private volatile IndexWriter writer;
+    private volatile SearcherManager searcherManager;
+    private volatile boolean serving;
+    private volatile LocalDateTime pendingSince;
+    private volatile LocalDateTime syncedAt;
+    private volatile long lastRebuildMillis;
+    private volatile String lastError;
+
+    public LocalSearchIndex(ProductMapper productMapper, PlatformTransactionManager transactionManager,
+                            @Value("${search.local.enabled:false}") boolean enabled,
+                            @Value("${search.local.directory:./data/search/products}") String directory,
+                            @Value("${search.local.refresh-delay-ms:1000}") long refreshDelayMillis) {
+        this.productMapper = productMapper;
+        this.streamTemplate = new TransactionTemplate(transactionManager);
+        this.streamTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.directoryPath = Paths.get(directory);
+        this.refreshDelayMillis = refreshDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void openOnStartup() {
+        if (enabled) {
+            executor.execute(this::open);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                // Uncommitted changes are picked up again by the catch-up pass after restart
+                writer.rollback();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close local search index: {}", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isServing() {
+        return enabled && serving;
+    }
+
+    /**
+     * Full-text search over active products, best match first
+     */
+    public List<ProductSummary> search(String queryText, int limit) {
+        SearcherManager manager = searcherManager;
+        if (!isServing() || manager == null || limit <= 0) {
+            return List.of();
+        }
+        Query query = buildQuery(queryText);
+        if (query == null) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        try {
+            IndexSearcher searcher = manager.acquire();
+            try {
+                ScoreDoc[] hits = searcher.search(query, limit).scoreDocs;
+                StoredFields storedFields = searcher.storedFields();
+                List<ProductSummary> results = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    results.add(toSummary(storedFields.document(hit.doc)));
+                }
+                return results;
+            } finally {
+                manager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            searchNanos.addAndGet(System.nanoTime() - start);
+            searches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Schedule a product to be re-read; writes within the refresh delay share one commit
+     */
+    public void refresh(Long productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        pendingIds.add(productId);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            try {
+                pendingSince = productMapper.findDatabaseTime();
+            } catch (RuntimeException e) {
+                // The batch is then stamped when it is applied; catch-up slack covers the gap
+                pendingSince = null;
+            }
+            executor.schedule(this::applyPending, refreshDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replace the index contents with a fresh scan of the products table
+     */
+    public void rebuild() {
+        if (enabled) {
+            executor.execute(this::rebuildAll);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        long count = searches.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("serving", isServing());
+        status.put("directory", directoryPath.toAbsolutePath().toString());
+        status.put("documents", writer != null ? writer.getDocStats().numDocs : 0);
+        status.put("pendingRefreshes", pendingIds.size());
+        status.put("syncedAt", syncedAt);
+        status.put("searches", count);
+        status.put("avgSearchMicros", count > 0 ? searchNanos.get() / count / 1000.0 : 0);
+        status.put("lastRebuildMillis", lastRebuildMillis);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    // Everything below runs on the index thread only
+
+    private void open() {
+        try {
+            Files.createDirectories(directoryPath);
+            directory = new MMapDirectory(directoryPath);
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(directory, config);
+
+            String committedSyncedAt = committedSyncedAt();
+            if (committedSyncedAt == null) {
+                // Searchers need a commit to open on
+                writer.commit();
+            }
+            searcherManager = new SearcherManager(directory, null);
+
+            if (committedSyncedAt == null) {
+                rebuildAll();
+            } else {
+                catchUp(LocalDateTime.parse(committedSyncedAt));
+            }
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Local search index failed to open, search stays on Elasticsearch/MySQL: ", e);
+        }
+    }
+
+    private void rebuildAll() {
+        if (writer == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            LocalDateTime startedAt = productMapper.findDatabaseTime();
+            writer.deleteAll();
+            long indexed = stream(() -> productMapper.streamAll(null));
+            commit(startedAt);
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            serving = true;
+            logger.info("Local search index rebuilt with {} products in {} ms", indexed, lastRebuildMillis);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Local search index rebuild failed, keeping the previous commit: ", e);
+            rollbackWriter();
+        }
+    }
+
+    private void catchUp(LocalDateTime since) {
+        try {
+            LocalDateTime startedAt = productMapper.findDatabaseTime();
+            long updated = stream(() -> productMapper.streamUpdatedSince(since.minusSeconds(CATCH_UP_SLACK_SECONDS)));
+            commit(startedAt);
+            serving = true;
+            logger.info("Local search index caught up {} products changed since {}", updated, since);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Local search index catch-up failed, rebuilding: ", e);
+            rollbackWriter();
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Apply every row of a streaming cursor, committing periodically so the writer's
+     * buffer stays bounded (searchers still only move forward on the final commit)
+     */
+    private long stream(Supplier<Cursor<Product>> query) {
+        Long count = streamTemplate.execute(status -> {
+            long applied = 0;
+            try (Cursor<Product> cursor = query.get()) {
+                for (Product product : cursor) {
+                    apply(product.getId(), product);
+                    if (++applied % COMMIT_EVERY == 0) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return applied;
+        });
+        return count != null ? count : 0;
+    }
+
+    private void applyPending() {
+        refreshScheduled.set(false);
+        LocalDateTime batchSince = pendingSince;
+        if (writer == null || pendingIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(pendingIds);
+        pendingIds.removeAll(ids);
+        try {
+            for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + REFRESH_CHUNK_SIZE));
+                Map<Long, Product> current = new LinkedHashMap<>();
+                for (Product product : productMapper.findByIdsIncludingInactive(chunk)) {
+                    current.put(product.getId(), product);
+                }
+                for (Long id : chunk) {
+                    apply(id, current.get(id));
+                }
+            }
+            // Everything written before this batch was queued is now in the index
+            commit(batchSince != null ? batchSince : productMapper.findDatabaseTime());
+            logger.debug("Local search index applied {} product changes", ids.size());
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Local search index failed to apply product changes, retrying: ", e);
+            rollbackWriter();
+            pendingIds.addAll(ids);
+            if (refreshScheduled.compareAndSet(false, true)) {
+                executor.schedule(this::applyPending, refreshDelayMillis * 10, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Index an active product, or remove it when it is inactive or gone
+     */
+    private void apply(Long id, Product product) throws IOException {
+        Term idTerm = new Term("id", String.valueOf(id));
+        if (product == null || !Boolean.TRUE.equals(product.getIsActive())) {
+            writer.deleteDocuments(idTerm);
+        } else {
+            writer.updateDocument(idTerm, toDocument(product));
+        }
+    }
+
+    private void commit(LocalDateTime appliedUpTo) throws IOException {
+        writer.setLiveCommitData(Map.of(SYNCED_AT, appliedUpTo.toString()).entrySet());
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+        syncedAt = appliedUpTo;
+    }
+
+    /**
+     * Drop uncommitted changes; rollback closes the writer, so open a new one on the last commit
+     */
+    private void rollbackWriter() {
+        try {
+            writer.rollback();
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.APPEND);
+            writer = new IndexWriter(directory, config);
+        } catch (IOException e) {
+            lastError = e.getMessage();
+            logger.error("Local search index could not reopen its writer: ", e);
+            writer = null;
+            serving = false;
+        }
+    }
+
+    private String committedSyncedAt() throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (SYNCED_AT.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * best_fields over name^2 and description: each field matches any query term (fuzzy
+     * like Elasticsearch's AUTO), and the better scoring field wins
+     */
+    private Query buildQuery(String queryText) {
+        List<String> terms = analyze(queryText);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return new DisjunctionMaxQuery(List.of(
+                new BoostQuery(fieldQuery("name", terms), NAME_BOOST),
+                fieldQuery("description", terms)), 0.0f);
+    }
+
+    private Query fieldQuery(String field, List<String> terms) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String text : terms) {
+            Term term = new Term(field, text);
+            int maxEdits = text.length() < 3 ? 0 : text.length() < 6 ? 1 : 2;
+            builder.add(maxEdits == 0 ? new TermQuery(term)
+                    : new FuzzyQuery(term, maxEdits, 0, FUZZY_MAX_EXPANSIONS, true), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream("name", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken() && terms.size() < MAX_QUERY_TERMS) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(Product product) {
+        Document document = new Document();
+        document.add(new StringField("id", String.valueOf(product.getId()), Field.Store.YES));
+        document.add(new TextField("name", nullToEmpty(product.getName()), Field.Store.YES));
+        document.add(new TextField("description", nullToEmpty(product.getDescription()), Field.Store.NO));
+        storeIfPresent(document, "category", product.getCategory());
+        storeIfPresent(document, "price", product.getPrice());
+        storeIfPresent(document, "imageUrl", product.getImageUrl());
+        storeIfPresent(document, "stockQuantity", product.getStockQuantity());
+        storeIfPresent(document, "rating", product.getRating());
+        storeIfPresent(document, "reviewCount", product.getReviewCount());
+        storeIfPresent(document, "createdAt", product.getCreatedAt());
+        return document;
+    }
+
+    private static ProductSummary toSummary(Document document) {
+        ProductSummary summary = new ProductSummary();
+        summary.setId(Long.valueOf(document.get("id")));
+        summary.setName(document.get("name"));
+        summary.setCategory(document.get("category"));
+        summary.setImageUrl(document.get("imageUrl"));
+        if (document.get("price") != null) {
+            summary.setPrice(new BigDecimal(document.get("price")));
+        }
+        if (document.get("stockQuantity") != null) {
+            summary.setStockQuantity(Integer.valueOf(document.get("stockQuantity")));
+        }
+        if (document.get("rating") != null) {
+            summary.setRating(new BigDecimal(document.get("rating")));
+        }
+        if (document.get("reviewCount") != null) {
+            summary.setReviewCount(Integer.valueOf(document.get("reviewCount")));
+        }
+        if (document.get("createdAt") != null) {
+            summary.setCreatedAt(LocalDateTime.parse(document.get("createdAt")));
+        }
+        return summary;
+    }
+
+    private static void storeIfPresent(Document document, String field, Object value) {
+        if (value != null) {
+            document.add(new StoredField(field, value.toString()));
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,477 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.mapper.ProductMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Blue/green lifecycle of the product search index.
+ *
+ * Readers and incremental writers only ever use the alias ({@code products}). A rebuild creates
+ * a timestamped index ({@code products_yyyyMMddHHmmss}) with refresh disabled and no replicas,
+ * bulk loads it while incremental writes go to both the alias and the building index, and once
+ * verified restores serving settings and moves the alias in one atomic _aliases call. Previous
+ * indices are kept for rollback until the retention policy prunes them; a rollback target is
+ * caught up through the same dual-write before the alias moves back to it.
+ *
+ * Settings, analysis and mappings come from {@code elasticsearch/product-index.json}. It is
+ * installed as an index template at startup and also sent explicitly when an index is created,
+ * and a rebuilt index is only promoted if its live mapping matches it.
+ */
+@Component
+public class ProductIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductIndexManager.class);
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String TEMPLATE_RESOURCE = "elasticsearch/product-index.json";
+
+    @Value("${elasticsearch.url:http://elasticsearch:9200}")
+    private String elasticsearchUrl;
+
+    @Value("${elasticsearch.index.alias:products}")
+    private String alias;
+
+    @Value("${elasticsearch.index.shards:1}")
+    private int shards;
+
+    @Value("${elasticsearch.index.serving-replicas:1}")
+    private int servingReplicas;
+
+    @Value("${elasticsearch.index.serving-refresh-interval:5s}")
+    private String servingRefreshInterval;
+
+    @Value("${elasticsearch.index.retain:2}")
+    private int retain;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ProductMapper productMapper;
+
+    private volatile JsonNode template;
+    private volatile String buildingIndex;
+    private final Set<Long> deletedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    public ProductIndexManager(ElasticsearchHttpClients httpClients, ProductMapper productMapper) {
+        this.restTemplate = httpClients.admin();
+        this.objectMapper = new ObjectMapper();
+        this.productMapper = productMapper;
+    }
+
+    /**
+     * Make sure the alias resolves to something before the first write. A concrete index that
+     * already uses the alias name is left alone; the first swap replaces it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureAlias() {
+        try {
+            applyTemplate();
+            if (!getAliasTargets().isEmpty() || exists(alias)) {
+                List<String> mismatches = verifyMapping(alias);
+                if (!mismatches.isEmpty()) {
+                    logger.warn("Live mapping of {} differs from {}; reindex to apply it: {}", alias, TEMPLATE_RESOURCE, mismatches);
+                }
+                return;
+            }
+            String index = newIndexName();
+            Map<String, Object> body = indexDefinition(false);
+            body.put("aliases", Map.of(alias, Map.of()));
+            put("/" + index, body);
+            logger.info("Created search index {} behind alias {}", index, alias);
+        } catch (Exception e) {
+            logger.warn("Could not verify search alias {}: {}", alias, e.getMessage());
+        }
+    }
+
+    /**
+     * Install (or update) the composable index template for this alias's timestamped indices
+     */
+    public void applyTemplate() {
+        ObjectNode body = template().deepCopy();
+        body.putArray("index_patterns").add(alias + "_*");
+        restTemplate.exchange(elasticsearchUrl + "/_index_template/" + alias + "-template",
+                HttpMethod.PUT, jsonNode(body), String.class);
+    }
+
+    /**
+     * Differences between the mapping in {@code product-index.json} and the live mapping of an
+     * index (or of every index behind an alias). Only parameters spelled out in the file are
+     * compared, so the file must not state defaults ES leaves out of its mapping output.
+     */
+    public List<String> verifyMapping(String indexOrAlias) {
+        JsonNode expected = template().path("template").path("mappings").path("properties");
+        JsonNode live = readTree(restTemplate.getForEntity(elasticsearchUrl + "/" + indexOrAlias + "/_mapping", String.class).getBody());
+
+        List<String> mismatches = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> indices = live.fields();
+        while (indices.hasNext()) {
+            Map.Entry<String, JsonNode> index = indices.next();
+            compare(index.getKey() + ":", expected, index.getValue().path("mappings").path("properties"), mismatches);
+        }
+        return mismatches;
+    }
+
+    private void compare(String path, JsonNode expected, JsonNode actual, List<String> mismatches) {
+        if (expected.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = expected.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                compare(path + "/" + field.getKey(), field.getValue(), actual.path(field.getKey()), mismatches);
+            }
+            return;
+        }
+        boolean same = expected.isNumber() && actual.isNumber()
+                ? expected.doubleValue() == actual.doubleValue()
+                : expected.asText().equals(actual.asText());
+        if (actual.isMissingNode() || !same) {
+            mismatches.add(path + " expected " + expected + " but was " + (actual.isMissingNode() ? "missing" : actual));
+        }
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * Index that should receive writes in addition to the alias, or null outside a rebuild
+     */
+    public String getBuildingIndex() {
+        return buildingIndex;
+    }
+
+    /**
+     * Create a fresh index tuned for bulk loading and start dual-writing to it
+     */
+    public synchronized String startBuild() {
+        String index = newIndexName();
+        put("/" + index, indexDefinition(true));
+        deletedDuringBuild.clear();
+        buildingIndex = index;
+        logger.info("Created build index {}", index);
+        return index;
+    }
+
+    /**
+     * Re-attach to the build index of a resumed job
+     */
+    public synchronized void resumeBuild(String index) {
+        if (!exists(index)) {
+            throw new IllegalStateException("Build index " + index + " no longer exists");
+        }
+        buildingIndex = index;
+    }
+
+    /**
+     * Dual-write to an existing serving-ready index as if it were being built, so it can be
+     * caught up before the alias moves to it (rollback)
+     */
+    public synchronized void attachBuild(String index) {
+        if (buildingIndex != null) {
+            throw new IllegalStateException("Index " + buildingIndex + " is already being built");
+        }
+        if (!exists(index)) {
+            throw new IllegalStateException("Index " + index + " no longer exists");
+        }
+        deletedDuringBuild.clear();
+        buildingIndex = index;
+    }
+
+    /**
+     * Stop dual-writing; returns the product ids deleted while the build was running
+     */
+    public synchronized Set<Long> endBuild() {
+        buildingIndex = null;
+        Set<Long> deleted = Set.copyOf(deletedDuringBuild);
+        deletedDuringBuild.clear();
+        return deleted;
+    }
+
+    /**
+     * Deletes are the one change a catch-up pass over updated_at cannot see, so remember them
+     */
+    public void recordDelete(Long productId) {
+        if (buildingIndex != null) {
+            deletedDuringBuild.add(productId);
+        }
+    }
+
+    public Set<Long> getDeletedDuringBuild() {
+        return Set.copyOf(deletedDuringBuild);
+    }
+
+    /**
+     * Make everything written so far searchable and return the document count
+     */
+    public long refreshAndCount(String index) {
+        post("/" + index + "/_refresh", Map.of());
+        JsonNode count = readTree(restTemplate.getForEntity(elasticsearchUrl + "/" + index + "/_count", String.class).getBody());
+        return count.path("count").asLong();
+    }
+
+    public void applyServingSettings(String index) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("number_of_replicas", servingReplicas);
+        settings.put("refresh_interval", servingRefreshInterval);
+        put("/" + index + "/_settings", Map.of("index", settings));
+    }
+
+    /**
+     * Point the alias at the given index, detaching it from all others in the same request.
+     * A concrete index squatting on the alias name is deleted in that request too.
+     */
+    public synchronized void swapAlias(String index) {
+        List<String> targets = getAliasTargets();
+        List<Map<String, Object>> actions = new ArrayList<>();
+        for (String target : targets) {
+            if (!target.equals(index)) {
+                actions.add(Map.of("remove", Map.of("index", target, "alias", alias)));
+            }
+        }
+        if (targets.isEmpty() && exists(alias)) {
+            actions.add(Map.of("remove_index", Map.of("index", alias)));
+        }
+        actions.add(Map.of("add", Map.of("index", index, "alias", alias)));
+
+        post("/_aliases", Map.of("actions", actions));
+        logger.info("Alias {} now points to {} (was {})", alias, index, targets);
+    }
+
+    /**
+     * Index the alias currently serves from (the newest, if it resolves to several)
+     */
+    public String getServingIndex() {
+        List<String> targets = getAliasTargets();
+        if (targets.isEmpty()) {
+            throw new IllegalStateException("Alias " + alias + " does not point to any index");
+        }
+        return targets.stream().max(Comparator.naturalOrder()).get();
+    }
+
+    /**
+     * The newest index older than the serving one, which a rollback moves the alias back to
+     */
+    public String getRollbackTarget() {
+        String current = getServingIndex();
+        return listIndices().stream()
+                .filter(name -> name.compareTo(current) < 0)
+                .max(Comparator.naturalOrder())
+                .orElseThrow(() -> new BadRequestException("No older index to roll back to"));
+    }
+
+    /**
+     * When a timestamped index was created (database clock), from its name; null for names not made here.
+     * Creation is before the index went live, so it bounds the changes the index predates.
+     */
+    public LocalDateTime getCreatedAt(String index) {
+        String prefix = alias + "_";
+        if (!index.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(index.substring(prefix.length()), INDEX_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Delete indices beyond the retention policy: the alias target, any build in progress and
+     * the {@code retain} newest older indices survive. An index newer than the alias target is
+     * an abandoned build only while it still has bulk-load settings; one that served and was
+     * rolled back from is kept.
+     *
+     * @return deleted index names
+     */
+    public synchronized List<String> prune() {
+        List<String> targets = getAliasTargets();
+        String current = targets.stream().max(Comparator.naturalOrder()).orElse(null);
+        String building = buildingIndex;
+
+        List<String> older = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (String index : listIndices()) {
+            if (targets.contains(index) || index.equals(building)) {
+                continue;
+            }
+            if (current != null && index.compareTo(current) < 0) {
+                older.add(index);
+            } else if (isBulkLoading(index)) {
+                // Newer than the serving index, never promoted and not building: an abandoned build
+                deleted.add(index);
+            }
+        }
+        older.sort(Comparator.reverseOrder());
+        deleted.addAll(older.subList(Math.min(retain, older.size()), older.size()));
+
+        for (String index : deleted) {
+            restTemplate.delete(elasticsearchUrl + "/" + index);
+        }
+        if (!deleted.isEmpty()) {
+            logger.info("Pruned search indices {}", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Concrete indices the alias currently resolves to
+     */
+    public List<String> getAliasTargets() {
+        try {
+            JsonNode root = readTree(restTemplate.getForEntity(elasticsearchUrl + "/_alias/" + alias, String.class).getBody());
+            List<String> targets = new ArrayList<>();
+            Iterator<String> names = root.fieldNames();
+            names.forEachRemaining(targets::add);
+            return targets;
+        } catch (HttpClientErrorException.NotFound e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Timestamped indices belonging to this alias, oldest first
+     */
+    public List<String> listIndices() {
+        JsonNode rows = readTree(restTemplate.getForEntity(
+                elasticsearchUrl + "/_cat/indices/" + alias + "_*?h=index&format=json", String.class).getBody());
+        List<String> indices = new ArrayList<>();
+        for (JsonNode row : rows) {
+            indices.add(row.path("index").asText());
+        }
+        indices.sort(Comparator.naturalOrder());
+        return indices;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("alias", alias);
+        status.put("buildingIndex", buildingIndex);
+        status.put("deletesDuringBuild", deletedDuringBuild.size());
+        status.put("retain", retain);
+        try {
+            status.put("aliasTargets", getAliasTargets());
+            status.put("indices", listIndices());
+            status.put("mappingMismatches", verifyMapping(alias));
+        } catch (Exception e) {
+            status.put("error", e.getMessage());
+        }
+        return status;
+    }
+
+    /**
+     * Whether the index still has the refresh-disabled settings of a build that never served
+     */
+    private boolean isBulkLoading(String index) {
+        JsonNode settings = readTree(restTemplate.getForEntity(
+                elasticsearchUrl + "/" + index + "/_settings/index.refresh_interval", String.class).getBody());
+        return "-1".equals(settings.path(index).path("settings").path("index").path("refresh_interval").asText());
+    }
+
+    public boolean exists(String index) {
+        try {
+            ResponseEntity<Void> response = restTemplate.exchange(elasticsearchUrl + "/" + index, HttpMethod.HEAD, null, Void.class);
+            return response.getStatusCode() == HttpStatus.OK;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        }
+    }
+
+    /**
+     * Named after the database clock, so getCreatedAt compares with updated_at on one clock
+     */
+    private String newIndexName() {
+        return alias + "_" + productMapper.findDatabaseTime().format(INDEX_SUFFIX);
+    }
+
+    /**
+     * Settings, analysis and mappings for a new index, from the template file. Bulk-load indices
+     * skip refreshes and replicas; both are restored before the index starts serving.
+     */
+    private Map<String, Object> indexDefinition(boolean bulkLoad) {
+        JsonNode body = template().path("template");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> settings = objectMapper.convertValue(body.path("settings"), Map.class);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> index = (Map<String, Object>) settings.computeIfAbsent("index", key -> new HashMap<>());
+        index.put("number_of_shards", shards);
+        index.put("number_of_replicas", bulkLoad ? 0 : servingReplicas);
+        index.put("refresh_interval", bulkLoad ? "-1" : servingRefreshInterval);
+
+        Map<String, Object> definition = new HashMap<>();
+        definition.put("settings", settings);
+        definition.put("mappings", objectMapper.convertValue(body.path("mappings"), Map.class));
+        return definition;
+    }
+
+    private JsonNode template() {
+        JsonNode loaded = template;
+        if (loaded == null) {
+            try (InputStream in = new ClassPathResource(TEMPLATE_RESOURCE).getInputStream()) {
+                loaded = objectMapper.readTree(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read " + TEMPLATE_RESOURCE, e);
+            }
+            template = loaded;
+        }
+        return loaded;
+    }
+
+    private void put(String path, Map<String, Object> body) {
+        restTemplate.exchange(elasticsearchUrl + path, HttpMethod.PUT, json(body), String.class);
+    }
+
+    private void post(String path, Map<String, Object> body) {
+        restTemplate.exchange(elasticsearchUrl + path, HttpMethod.POST, json(body), String.class);
+    }
+
+    private HttpEntity<String> jsonNode(JsonNode body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body.toString(), headers);
+    }
+
+    private HttpEntity<Map<String, Object>> json(Map<String, Object> body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body == null ? "{}" : body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
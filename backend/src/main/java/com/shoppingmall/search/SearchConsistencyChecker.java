@@ -0,0 +1,436 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.IdRangeChecksum;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.service.ProductElasticsearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Finds and repairs products whose search document has drifted from MySQL.
+ *
+ * The id space is cut into fixed ranges and both sides compute the same checksum per range
+ * (row count and id-weighted sums of stock, price, updated_at and active flags, see
+ * {@link IdRangeChecksum}): MySQL with one grouped query, Elasticsearch with one range
+ * aggregation of scripted sums. Ranges that disagree are split and compared
+ * again, Merkle-style, until they are small enough to compare document by document. Only the
+ * documents found to differ are re-sent through the bulk indexer, so a healthy index costs a
+ * couple of aggregation requests. Documents beyond the highest product id can only be
+ * leftovers and are checked as one open range.
+ *
+ * Rows written in the last few seconds may not be searchable yet and get re-sent needlessly;
+ * re-sending the current row is always safe.
+ *
+ * {@link #reconcile(String)} runs the same comparison against one concrete index, for bringing an
+ * index that stopped receiving writes back up to date (see ReindexJobService#startRollback).
+ */
+@Component
+public class SearchConsistencyChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchConsistencyChecker.class);
+    private static final int MAX_RANGES_PER_REQUEST = 1000;
+    private static final int MAX_DOCUMENTS_PER_REQUEST = 5000;
+    private static final int REPAIR_CHUNK_SIZE = 500;
+    // Checksum terms are weighted by id % WEIGHT_MODULUS + 1; no range is wider, so every id in it gets its own weight
+    private static final int WEIGHT_MODULUS = 1024;
+    private static final String WEIGHT = "(doc['id'].value % params.modulus + 1)";
+    private static final List<String> SYNC_FIELDS = List.of("id", "price", "stockQuantity", "updatedAt", "isActive");
+
+    @Value("${elasticsearch.url:http://elasticsearch:9200}")
+    private String elasticsearchUrl;
+
+    @Value("${search.consistency.enabled:true}")
+    private boolean enabled;
+
+    private final ProductMapper productMapper;
+    private final ProductElasticsearchService elasticsearchService;
+    private final ProductIndexManager indexManager;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int rangeSize;
+    private final int leafSize;
+    private final int fanOut;
+    private final int maxRepairs;
+
+    private final ReentrantLock running = new ReentrantLock();
+    private volatile Map<String, Object> lastReport;
+
+    public SearchConsistencyChecker(ProductMapper productMapper, ProductElasticsearchService elasticsearchService,
+                                    ProductIndexManager indexManager, ElasticsearchHttpClients httpClients,
+                                    @Qualifier("searchConsistencyExecutor") ExecutorService executor,
+                                    @Value("${search.consistency.range-size:1024}") int rangeSize,
+                                    @Value("${search.consistency.leaf-size:64}") int leafSize,
+                                    @Value("${search.consistency.fan-out:16}") int fanOut,
+                                    @Value("${search.consistency.max-repairs:10000}") int maxRepairs) {
+        this.productMapper = productMapper;
+        this.elasticsearchService = elasticsearchService;
+        this.indexManager = indexManager;
+        this.restTemplate = httpClients.admin();
+        this.objectMapper = new ObjectMapper();
+        this.executor = executor;
+        // Elasticsearch sums the weighted epoch seconds as doubles; ranges this small stay exact
+        this.rangeSize = Math.max(1, Math.min(rangeSize, WEIGHT_MODULUS));
+        this.leafSize = Math.max(1, Math.min(leafSize, this.rangeSize));
+        this.fanOut = Math.max(2, fanOut);
+        this.maxRepairs = Math.max(0, maxRepairs);
+    }
+
+    /**
+     * Hands the check to its own thread, so the scheduler thread is back in microseconds
+     */
+    @Scheduled(cron = "${search.consistency.cron:0 */30 * * * *}")
+    public void scheduledCheck() {
+        if (!enabled || running.isLocked()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    check();
+                } catch (BadRequestException e) {
+                    logger.debug("Skipping scheduled consistency check: {}", e.getMessage());
+                } catch (Exception e) {
+                    logger.error("Search consistency check failed: ", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Consistency check executor is shut down");
+        }
+    }
+
+    /**
+     * Run a check now and repair what it finds. Only one check runs at a time.
+     */
+    public Map<String, Object> check() {
+        return guarded(null);
+    }
+
+    /**
+     * Compare one concrete index with MySQL and repair all of it, writing to that index only.
+     * Runs even while an index is being built, and with no repair cap. Waits for a check that
+     * is already running instead of failing, since a rebuild or rollback depends on it.
+     */
+    public Map<String, Object> reconcile(String index) {
+        return guarded(index);
+    }
+
+    private Map<String, Object> guarded(String index) {
+        if (index == null) {
+            if (!running.tryLock()) {
+                throw new BadRequestException("A consistency check is already running");
+            }
+        } else {
+            try {
+                running.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a running consistency check", e);
+            }
+        }
+        long startedAt = System.currentTimeMillis();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.ofEpochMilli(startedAt).toString());
+        report.put("index", index != null ? index : indexManager.getAlias());
+        try {
+            if (index == null && indexManager.getBuildingIndex() != null) {
+                report.put("status", "skipped");
+                report.put("reason", "A reindex is running");
+            } else if (index == null && !elasticsearchService.isAvailable()) {
+                report.put("status", "skipped");
+                report.put("reason", "Elasticsearch is unavailable");
+            } else {
+                run(report, index);
+            }
+        } catch (RuntimeException e) {
+            report.put("status", "failed");
+            report.put("error", e.getMessage());
+            throw e;
+        } finally {
+            report.put("tookMillis", System.currentTimeMillis() - startedAt);
+            lastReport = report;
+            running.unlock();
+        }
+        return report;
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    public boolean isRunning() {
+        return running.isLocked();
+    }
+
+    /**
+     * @param index concrete index to check and repair, or null for the alias
+     */
+    private void run(Map<String, Object> report, String index) {
+        Long maxId = productMapper.findMaxId();
+        long end = (maxId != null ? maxId : 0) + 1;
+
+        List<IdRangeChecksum> ranges = new ArrayList<>();
+        for (long from = 0; from < end; from += rangeSize) {
+            ranges.add(new IdRangeChecksum(from, Math.min(from + rangeSize, end)));
+        }
+        ranges.add(new IdRangeChecksum(end, Long.MAX_VALUE));
+
+        // Narrow down level by level; every level is one request per side per 1000 ranges
+        int levels = 0;
+        long rangesCompared = 0;
+        List<IdRangeChecksum> leaves = new ArrayList<>();
+        while (!ranges.isEmpty()) {
+            levels++;
+            rangesCompared += ranges.size();
+            List<IdRangeChecksum> next = new ArrayList<>();
+            for (IdRangeChecksum range : findMismatches(ranges, index)) {
+                long width = range.getToId() - range.getFromId();
+                if (range.getToId() == Long.MAX_VALUE || width <= leafSize) {
+                    leaves.add(range);
+                    continue;
+                }
+                long step = Math.max(leafSize, (width + fanOut - 1) / fanOut);
+                for (long from = range.getFromId(); from < range.getToId(); from += step) {
+                    next.add(new IdRangeChecksum(from, Math.min(from + step, range.getToId())));
+                }
+            }
+            ranges = next;
+        }
+
+        Set<Long> reindex = new LinkedHashSet<>();
+        Set<Long> delete = new LinkedHashSet<>();
+        long[] counts = new long[4];
+        compareDocuments(leaves, reindex, delete, counts, index);
+
+        report.put("levels", levels);
+        report.put("rangesCompared", rangesCompared);
+        report.put("mismatchedLeafRanges", leaves.size());
+        report.put("documentsCompared", counts[0]);
+        report.put("missingFromIndex", counts[1]);
+        report.put("staleInIndex", counts[2]);
+        report.put("extraInIndex", counts[3]);
+
+        if (reindex.isEmpty() && delete.isEmpty()) {
+            report.put("status", "consistent");
+            return;
+        }
+        BulkReport repair = repair(reindex, delete, index);
+        report.put("status", repair.getFailed() == 0 ? "repaired" : "repair-failed");
+        report.put("repair", repair.toMap());
+        logger.warn("Search consistency check: re-sent {} and deleted {} documents ({} failed)",
+                reindex.size(), delete.size(), repair.getFailed());
+    }
+
+    /**
+     * Ranges whose MySQL and Elasticsearch checksums differ
+     */
+    private List<IdRangeChecksum> findMismatches(List<IdRangeChecksum> ranges, String index) {
+        List<IdRangeChecksum> mismatched = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i += MAX_RANGES_PER_REQUEST) {
+            List<IdRangeChecksum> chunk = ranges.subList(i, Math.min(i + MAX_RANGES_PER_REQUEST, ranges.size()));
+            Map<Long, IdRangeChecksum> database = new HashMap<>();
+            for (IdRangeChecksum checksum : productMapper.findIdRangeChecksums(chunk, WEIGHT_MODULUS)) {
+                database.put(checksum.getFromId(), checksum);
+            }
+            Map<Long, IdRangeChecksum> indexed = indexChecksums(chunk, index);
+
+            for (IdRangeChecksum range : chunk) {
+                IdRangeChecksum expected = database.getOrDefault(range.getFromId(), range);
+                if (!expected.matches(indexed.get(range.getFromId()))) {
+                    mismatched.add(range);
+                }
+            }
+        }
+        return mismatched;
+    }
+
+    private Map<Long, IdRangeChecksum> indexChecksums(List<IdRangeChecksum> ranges, String index) {
+        List<Map<String, Object>> rangeSpecs = new ArrayList<>(ranges.size());
+        for (IdRangeChecksum range : ranges) {
+            rangeSpecs.add(Map.of("key", String.valueOf(range.getFromId()), "from", range.getFromId(), "to", range.getToId()));
+        }
+        Map<String, Object> aggs = Map.of(
+                "stock", weightedSum("doc['stockQuantity'].size() == 0 ? 0 : doc['stockQuantity'].value"),
+                "price", weightedSum("doc['price'].size() == 0 ? 0 : Math.round(doc['price'].value * 100)"),
+                "updated", weightedSum("doc['updatedAt'].size() == 0 ? 0 : doc['updatedAt'].value.toInstant().getEpochSecond()"),
+                "active", weightedSum("doc['isActive'].size() == 0 || !doc['isActive'].value ? 0 : 1"));
+        Map<String, Object> body = Map.of("size", 0, "track_total_hits", false,
+                "aggs", Map.of("ranges", Map.of("range", Map.of("field", "id", "ranges", rangeSpecs), "aggs", aggs)));
+
+        Map<Long, IdRangeChecksum> checksums = new HashMap<>();
+        for (JsonNode bucket : search(body, index).path("aggregations").path("ranges").path("buckets")) {
+            long from = Long.parseLong(bucket.path("key").asText());
+            IdRangeChecksum checksum = new IdRangeChecksum(from, 0);
+            checksum.setCount(bucket.path("doc_count").asLong());
+            checksum.setStockSum(Math.round(bucket.path("stock").path("value").asDouble()));
+            checksum.setPriceSum(BigDecimal.valueOf(Math.round(bucket.path("price").path("value").asDouble()), 2));
+            checksum.setUpdatedSum(Math.round(bucket.path("updated").path("value").asDouble()));
+            checksum.setActiveSum(Math.round(bucket.path("active").path("value").asDouble()));
+            checksums.put(from, checksum);
+        }
+        return checksums;
+    }
+
+    /**
+     * Sum aggregation of value * weight, with the same weight as ProductMapper.findIdRangeChecksums
+     */
+    private static Map<String, Object> weightedSum(String value) {
+        return Map.of("sum", Map.of("script", Map.of("source", WEIGHT + " * (" + value + ")",
+                "params", Map.of("modulus", WEIGHT_MODULUS))));
+    }
+
+    /**
+     * Compare the leaf ranges row by row. counts: compared, missing, stale, extra
+     */
+    private void compareDocuments(List<IdRangeChecksum> leaves, Set<Long> reindex, Set<Long> delete, long[] counts,
+                                  String index) {
+        List<IdRangeChecksum> batch = new ArrayList<>();
+        long batchWidth = 0;
+        for (IdRangeChecksum leaf : leaves) {
+            long width = leaf.getToId() == Long.MAX_VALUE ? MAX_DOCUMENTS_PER_REQUEST : leaf.getToId() - leaf.getFromId();
+            if (!batch.isEmpty() && batchWidth + width > MAX_DOCUMENTS_PER_REQUEST) {
+                compareBatch(batch, batchWidth, reindex, delete, counts, index);
+                batch = new ArrayList<>();
+                batchWidth = 0;
+            }
+            batch.add(leaf);
+            batchWidth += width;
+        }
+        if (!batch.isEmpty()) {
+            compareBatch(batch, batchWidth, reindex, delete, counts, index);
+        }
+    }
+
+    private void compareBatch(List<IdRangeChecksum> batch, long width, Set<Long> reindex, Set<Long> delete, long[] counts,
+                              String index) {
+        Map<Long, Product> rows = new LinkedHashMap<>();
+        for (Product product : productMapper.findSyncFieldsInIdRanges(batch)) {
+            rows.put(product.getId(), product);
+        }
+
+        List<Object> idRanges = new ArrayList<>(batch.size());
+        for (IdRangeChecksum range : batch) {
+            idRanges.add(Map.of("range", Map.of("id", Map.of("gte", range.getFromId(), "lt", range.getToId()))));
+        }
+        Map<String, Object> body = Map.of("size", Math.min(width, MAX_DOCUMENTS_PER_REQUEST), "track_total_hits", false,
+                "_source", SYNC_FIELDS, "sort", List.of(Map.of("id", "asc")),
+                "query", Map.of("bool", Map.of("should", idRanges, "minimum_should_match", 1)));
+        Map<Long, JsonNode> documents = new HashMap<>();
+        for (JsonNode hit : search(body, index).path("hits").path("hits")) {
+            documents.put(Long.valueOf(hit.path("_id").asText()), hit.path("_source"));
+        }
+
+        for (Product row : rows.values()) {
+            counts[0]++;
+            JsonNode document = documents.remove(row.getId());
+            if (document == null) {
+                counts[1]++;
+                reindex.add(row.getId());
+            } else if (!matches(row, document)) {
+                counts[2]++;
+                reindex.add(row.getId());
+            }
+        }
+        for (Long id : documents.keySet()) {
+            counts[0]++;
+            counts[3]++;
+            delete.add(id);
+        }
+    }
+
+    private boolean matches(Product row, JsonNode document) {
+        JsonNode price = document.path("price");
+        JsonNode updatedAt = document.path("updatedAt");
+        return row.getPrice() != null && price.isNumber() && row.getPrice().compareTo(price.decimalValue()) == 0
+                && Objects.equals(row.getStockQuantity(), document.path("stockQuantity").isNull()
+                        ? null : document.path("stockQuantity").asInt())
+                && Boolean.TRUE.equals(row.getIsActive()) == document.path("isActive").asBoolean(false)
+                && Objects.equals(row.getUpdatedAt(), updatedAt.isTextual() ? LocalDateTime.parse(updatedAt.asText()) : null);
+    }
+
+    /**
+     * Re-send the current rows (or deletes, for rows that are gone) through the bulk indexer:
+     * through the alias (and any build index) normally, to the given index only when reconciling
+     */
+    private BulkReport repair(Set<Long> reindex, Set<Long> delete, String index) {
+        List<Long> ids = new ArrayList<>(reindex);
+        int maxRepairs = index != null ? Integer.MAX_VALUE : this.maxRepairs;
+        if (ids.size() + delete.size() > maxRepairs) {
+            logger.warn("Search consistency check: {} divergent documents, repairing the first {}",
+                    ids.size() + delete.size(), maxRepairs);
+        }
+
+        List<BulkOperation> operations = new ArrayList<>();
+        int budget = maxRepairs;
+        for (int i = 0; i < ids.size() && budget > 0; i += REPAIR_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(i, Math.min(i + Math.min(REPAIR_CHUNK_SIZE, budget), ids.size()));
+            budget -= chunk.size();
+            Set<Long> gone = new LinkedHashSet<>(chunk);
+            for (Product product : productMapper.findByIdsIncludingInactive(chunk)) {
+                gone.remove(product.getId());
+                if (index != null) {
+                    operations.add(elasticsearchService.indexOperation(index, product));
+                } else {
+                    operations.addAll(elasticsearchService.indexOperations(product));
+                }
+            }
+            for (Long id : gone) {
+                operations.addAll(deleteOperations(id, index));
+            }
+        }
+        for (Long id : delete) {
+            if (budget-- <= 0) {
+                break;
+            }
+            operations.addAll(deleteOperations(id, index));
+        }
+        return elasticsearchService.getBulkIndexer().execute(operations);
+    }
+
+    private List<BulkOperation> deleteOperations(Long id, String index) {
+        return index != null ? List.of(BulkOperation.delete(index, id)) : elasticsearchService.deleteOperations(id);
+    }
+
+    private JsonNode search(Map<String, Object> body, String index) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String target = index != null ? index : indexManager.getAlias();
+        String response = restTemplate.exchange(elasticsearchUrl + "/" + target + "/_search",
+                HttpMethod.POST, new HttpEntity<>(body, headers), String.class).getBody();
+        try {
+            return objectMapper.readTree(response == null ? "{}" : response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
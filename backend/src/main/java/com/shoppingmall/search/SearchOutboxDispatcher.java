@@ -0,0 +1,291 @@
+package com.shoppingmall.search;
+
+import com.shoppingmall.cache.SearchResultCache;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.mapper.SearchOutboxMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.SearchOutboxEvent;
+import com.shoppingmall.service.ProductElasticsearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the search_outbox table into Elasticsearch.
+ *
+ * Events only carry a product id. Each batch is coalesced by id and the current row is re-read,
+ * so ten updates to one product become a single index action with the latest state; a row that
+ * no longer exists becomes a delete. Products whose events are all stock or rating changes get
+ * a partial update of just those fields instead of the full document, and the full document
+ * only if the index turns out not to have it. Events for products that fail are rescheduled
+ * with exponential backoff. Nothing is attempted while the circuit breaker is open. Events still
+ * failing after search.outbox.max-attempts move to search_outbox_dead, so the outbox (and the
+ * pending count a reindex verifies against) stays bounded; the consistency checker repairs
+ * those products, and dead letters are purged after their retention.
+ *
+ * Cached search results were dropped when the write committed, but Elasticsearch only shows the
+ * new document after its next refresh; results re-cached in between would be stale. Synced ids
+ * are therefore invalidated again once the refresh interval has passed.
+ */
+@Component
+public class SearchOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchOutboxDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final SearchOutboxMapper searchOutboxMapper;
+    private final ProductMapper productMapper;
+    private final ProductElasticsearchService elasticsearchService;
+    private final SearchResultCache searchResultCache;
+
+    @Value("${search.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${search.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${search.outbox.retry-base-delay-ms:1000}")
+    private long retryBaseDelayMillis;
+
+    @Value("${search.outbox.retry-max-delay-ms:300000}")
+    private long retryMaxDelayMillis;
+
+    @Value("${search.outbox.visibility-delay-ms:6000}")
+    private long visibilityDelayMillis;
+
+    @Value("${search.outbox.max-attempts:20}")
+    private int maxAttempts;
+
+    @Value("${search.outbox.dead-letter-retention-days:7}")
+    private int deadLetterRetentionDays;
+
+    private record PendingInvalidation(long dueAt, Set<Long> productIds) {
+    }
+
+    private final ConcurrentLinkedQueue<PendingInvalidation> pendingInvalidations = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong dispatchedEvents = new AtomicLong();
+    private final AtomicLong indexedProducts = new AtomicLong();
+    private final AtomicLong partiallyUpdatedProducts = new AtomicLong();
+    private final AtomicLong partialFallbacks = new AtomicLong();
+    private final AtomicLong deletedProducts = new AtomicLong();
+    private final AtomicLong failedProducts = new AtomicLong();
+    private final AtomicLong deadLetteredEvents = new AtomicLong();
+    private volatile long lastRunAt;
+    private volatile String lastError;
+
+    @Autowired
+    public SearchOutboxDispatcher(SearchOutboxMapper searchOutboxMapper, ProductMapper productMapper,
+                                  ProductElasticsearchService elasticsearchService,
+                                  SearchResultCache searchResultCache) {
+        this.searchOutboxMapper = searchOutboxMapper;
+        this.productMapper = productMapper;
+        this.elasticsearchService = elasticsearchService;
+        this.searchResultCache = searchResultCache;
+    }
+
+    @Scheduled(fixedDelayString = "${search.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        invalidateVisibleResults();
+        if (!enabled) {
+            return;
+        }
+        lastRunAt = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (!elasticsearchService.isAvailable()) {
+                    return;
+                }
+                if (dispatchBatch() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Search outbox dispatch failed: ", e);
+        }
+    }
+
+    /**
+     * @return number of outbox events read
+     */
+    private int dispatchBatch() {
+        List<SearchOutboxEvent> events = searchOutboxMapper.findDue(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        long maxId = 0;
+        Set<Long> productIds = new LinkedHashSet<>();
+        Set<Long> fullSync = new HashSet<>();
+        for (SearchOutboxEvent event : events) {
+            productIds.add(event.getProductId());
+            if (!Boolean.TRUE.equals(event.getPartial())) {
+                fullSync.add(event.getProductId());
+            }
+            maxId = Math.max(maxId, event.getId());
+        }
+
+        // Read after the events: every event up to maxId committed before this read
+        Map<Long, Product> current = new LinkedHashMap<>();
+        for (Product product : productMapper.findByIdsIncludingInactive(new ArrayList<>(productIds))) {
+            current.put(product.getId(), product);
+        }
+
+        List<BulkOperation> operations = new ArrayList<>(productIds.size() * 2);
+        for (Long productId : productIds) {
+            Product product = current.get(productId);
+            if (product == null) {
+                fullSync.add(productId);
+                operations.addAll(elasticsearchService.deleteOperations(productId));
+            } else if (fullSync.contains(productId)) {
+                operations.addAll(elasticsearchService.indexOperations(product));
+            } else {
+                operations.addAll(elasticsearchService.partialUpdateOperations(product));
+            }
+        }
+
+        BulkReport report = elasticsearchService.getBulkIndexer().execute(operations);
+
+        Set<Long> failed = new LinkedHashSet<>();
+        for (String id : report.getFailedIds()) {
+            failed.add(Long.valueOf(id));
+        }
+        List<Map<String, Object>> errors = new ArrayList<>(report.getErrors());
+
+        // Partial updates that found no document: send the whole document instead
+        if (!report.getMissingIds().isEmpty()) {
+            List<BulkOperation> fallback = new ArrayList<>();
+            for (String id : report.getMissingIds()) {
+                Long productId = Long.valueOf(id);
+                fullSync.add(productId);
+                if (!failed.contains(productId)) {
+                    fallback.addAll(elasticsearchService.indexOperations(current.get(productId)));
+                }
+            }
+            partialFallbacks.addAndGet(report.getMissingIds().size());
+            BulkReport fallbackReport = elasticsearchService.getBulkIndexer().execute(fallback);
+            for (String id : fallbackReport.getFailedIds()) {
+                failed.add(Long.valueOf(id));
+            }
+            errors.addAll(fallbackReport.getErrors());
+        }
+
+        Set<Long> succeeded = new LinkedHashSet<>(productIds);
+        succeeded.removeAll(failed);
+        Set<Long> fullySynced = new LinkedHashSet<>();
+        Set<Long> partiallySynced = new LinkedHashSet<>();
+        for (Long productId : succeeded) {
+            (fullSync.contains(productId) ? fullySynced : partiallySynced).add(productId);
+        }
+
+        if (!fullySynced.isEmpty()) {
+            searchOutboxMapper.deleteUpTo(fullySynced, maxId, false);
+        }
+        if (!partiallySynced.isEmpty()) {
+            // A full-document event waiting on retry backoff is not covered by a partial update
+            searchOutboxMapper.deleteUpTo(partiallySynced, maxId, true);
+        }
+        if (!succeeded.isEmpty()) {
+            pendingInvalidations.add(new PendingInvalidation(System.currentTimeMillis() + visibilityDelayMillis, succeeded));
+        }
+        if (!failed.isEmpty()) {
+            String error = errors.isEmpty() ? "bulk failure" : String.valueOf(errors.get(0).get("reason"));
+            lastError = error;
+            searchOutboxMapper.markFailed(failed, maxId,
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error,
+                    retryBaseDelayMillis, retryMaxDelayMillis);
+            logger.warn("Search outbox: {} of {} products failed to sync, rescheduled", failed.size(), productIds.size());
+        }
+
+        dispatchedEvents.addAndGet(events.size());
+        failedProducts.addAndGet(failed.size());
+        partiallyUpdatedProducts.addAndGet(partiallySynced.size());
+        for (Long productId : fullySynced) {
+            if (current.containsKey(productId)) {
+                indexedProducts.incrementAndGet();
+            } else {
+                deletedProducts.incrementAndGet();
+            }
+        }
+        return events.size();
+    }
+
+    /**
+     * Move events that ran out of attempts to the dead-letter table and purge expired dead letters
+     */
+    @Scheduled(fixedDelayString = "${search.outbox.dead-letter-interval-ms:60000}")
+    public void retireExhausted() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int moved = searchOutboxMapper.copyExhaustedToDead(maxAttempts);
+            searchOutboxMapper.deleteDeadLettered();
+            if (moved > 0) {
+                deadLetteredEvents.addAndGet(moved);
+                logger.warn("Search outbox: {} events failed {} times, moved to search_outbox_dead", moved, maxAttempts);
+            }
+            searchOutboxMapper.purgeDeadBefore(deadLetterRetentionDays);
+        } catch (Exception e) {
+            logger.error("Search outbox dead-lettering failed: ", e);
+        }
+    }
+
+    /**
+     * Drop cached search results for products whose synced documents are now searchable
+     */
+    private void invalidateVisibleResults() {
+        long now = System.currentTimeMillis();
+        PendingInvalidation pending;
+        while ((pending = pendingInvalidations.peek()) != null && pending.dueAt() <= now) {
+            pendingInvalidations.poll();
+            pending.productIds().forEach(searchResultCache::invalidate);
+        }
+    }
+
+    /**
+     * Backlog size and lag: age of the oldest event not yet synced to Elasticsearch
+     */
+    public Map<String, Object> getStats() {
+        LocalDateTime oldest = searchOutboxMapper.findOldestCreatedAt();
+        Integer maxAttempts = searchOutboxMapper.findMaxAttempts();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", searchOutboxMapper.countPending());
+        stats.put("lagMillis", oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()) : 0);
+        stats.put("oldestPendingAt", oldest);
+        stats.put("maxAttempts", maxAttempts != null ? maxAttempts : 0);
+        stats.put("dispatchedEvents", dispatchedEvents.get());
+        stats.put("indexedProducts", indexedProducts.get());
+        stats.put("partiallyUpdatedProducts", partiallyUpdatedProducts.get());
+        stats.put("partialFallbacks", partialFallbacks.get());
+        stats.put("deletedProducts", deletedProducts.get());
+        stats.put("failedProducts", failedProducts.get());
+        stats.put("deadLetteredEvents", deadLetteredEvents.get());
+        stats.put("deadLetters", searchOutboxMapper.countDead());
+        stats.put("lastRunAt", lastRunAt > 0 ? Instant.ofEpochMilli(lastRunAt).toString() : null);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
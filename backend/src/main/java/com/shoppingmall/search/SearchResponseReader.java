@@ -0,0 +1,258 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.shoppingmall.model.FacetBucket;
+import com.shoppingmall.model.ProductSummary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes an Elasticsearch _search response straight from the HTTP body.
+ *
+ * The body is read token by token and hit sources are copied into ProductSummary objects as the
+ * tokens go by; no response String or JsonNode tree is built, and fields the summary doesn't use
+ * (shards, scores, anything extra in _source) are skipped without being materialized.
+ * Hits fetched without _source come back as summaries carrying only the id, for the caller to
+ * fill in from its own store. Each hit's sort values are kept for search_after paging.
+ * Bucket aggregations are collected by their top-level name wherever their buckets sit, so a
+ * filter aggregation wrapping a terms or range aggregation reads the same as a bare one.
+ */
+public class SearchResponseReader {
+
+    /**
+     * Response parts the reader uses; requests can pass this to cut the rest off server-side
+     */
+    public static final String FILTER_PATH = "filter_path=pit_id,hits.total,hits.hits._id,hits.hits._source,"
+            + "hits.hits.sort,aggregations.*.*.buckets.key,aggregations.*.*.buckets.doc_count";
+
+    /**
+     * Hits in response order with their sort values (empty for unsorted hits), the total hit
+     * count, bucket aggregations by name and the point-in-time id to use for the next page
+     */
+    public record Result(List<ProductSummary> products, List<Object[]> sortValues, long total, boolean totalExact,
+                         Map<String, List<FacetBucket>> buckets, String pointInTimeId) {
+
+        public List<FacetBucket> buckets(String aggregation) {
+            return buckets.getOrDefault(aggregation, List.of());
+        }
+    }
+
+    private static final Object[] NO_SORT_VALUES = new Object[0];
+
+    private final JsonFactory jsonFactory;
+
+    public SearchResponseReader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Read a whole response; the stream is left open for the caller to close
+     */
+    public Result read(InputStream body) throws IOException {
+        List<ProductSummary> products = new ArrayList<>();
+        List<Object[]> sortValues = new ArrayList<>();
+        long[] total = {0, 1};
+        Map<String, List<FacetBucket>> buckets = new LinkedHashMap<>();
+        String pointInTimeId = null;
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("hits".equals(field)) {
+                    readHits(parser, products, sortValues, total);
+                } else if ("pit_id".equals(field)) {
+                    pointInTimeId = parser.getText();
+                } else if ("aggregations".equals(field)) {
+                    readAggregations(parser, buckets);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Result(products, sortValues, total[0], total[1] == 1, buckets, pointInTimeId);
+    }
+
+    private void readHits(JsonParser parser, List<ProductSummary> products, List<Object[]> sortValues,
+                          long[] total) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("total".equals(field) && token == JsonToken.START_OBJECT) {
+                readTotal(parser, total);
+            } else if ("total".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                // rest_total_hits_as_int form
+                total[0] = parser.getLongValue();
+            } else if ("hits".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Object[][] sort = {NO_SORT_VALUES};
+                    ProductSummary product = readHit(parser, sort);
+                    if (product != null) {
+                        products.add(product);
+                        sortValues.add(sort[0]);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readTotal(JsonParser parser, long[] total) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("value".equals(field)) {
+                total[0] = parser.getLongValue();
+            } else if ("relation".equals(field)) {
+                total[1] = "eq".equals(parser.getText()) ? 1 : 0;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * One element of hits.hits; null if it carries neither _source nor _id
+     */
+    private ProductSummary readHit(JsonParser parser, Object[][] sort) throws IOException {
+        ProductSummary product = null;
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("_source".equals(field) && token == JsonToken.START_OBJECT) {
+                product = readSource(parser);
+            } else if ("_id".equals(field) && token == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else if ("sort".equals(field) && token == JsonToken.START_ARRAY) {
+                sort[0] = readSortValues(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (id != null) {
+            if (product == null) {
+                product = new ProductSummary();
+            }
+            if (product.getId() == null) {
+                product.setId(Long.valueOf(id));
+            }
+        }
+        return product;
+    }
+
+    private Object[] readSortValues(JsonParser parser) throws IOException {
+        List<Object> values = new ArrayList<>(2);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isNumeric()) {
+                values.add(parser.getNumberValue());
+            } else if (token == JsonToken.VALUE_NULL) {
+                values.add(null);
+            } else if (token.isScalarValue()) {
+                values.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return values.toArray();
+    }
+
+    private ProductSummary readSource(JsonParser parser) throws IOException {
+        ProductSummary product = new ProductSummary();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "id" -> product.setId(parser.getValueAsLong());
+                case "name" -> product.setName(parser.getText());
+                case "price" -> product.setPrice(decimal(parser, token));
+                case "category" -> product.setCategory(parser.getText());
+                case "imageUrl" -> product.setImageUrl(parser.getText());
+                case "stockQuantity" -> product.setStockQuantity(parser.getValueAsInt());
+                case "rating" -> product.setRating(decimal(parser, token));
+                case "reviewCount" -> product.setReviewCount(parser.getValueAsInt());
+                case "createdAt" -> product.setCreatedAt(LocalDateTime.parse(parser.getText()));
+                default -> parser.skipChildren();
+            }
+        }
+        return product;
+    }
+
+    private void readAggregations(JsonParser parser, Map<String, List<FacetBucket>> buckets) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                List<FacetBucket> found = new ArrayList<>();
+                findBuckets(parser, found);
+                buckets.put(name, found);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Walk an aggregation object, collecting the first buckets array found at any depth
+     */
+    private void findBuckets(JsonParser parser, List<FacetBucket> found) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("buckets".equals(field) && token == JsonToken.START_ARRAY && found.isEmpty()) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    found.add(readBucket(parser));
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                findBuckets(parser, found);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private FacetBucket readBucket(JsonParser parser) throws IOException {
+        String key = null;
+        long count = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("key".equals(field)) {
+                key = parser.getText();
+            } else if ("doc_count".equals(field)) {
+                count = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new FacetBucket(key, count);
+    }
+
+    private static BigDecimal decimal(JsonParser parser, JsonToken token) throws IOException {
+        return token == JsonToken.VALUE_STRING ? new BigDecimal(parser.getText()) : parser.getDecimalValue();
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+}
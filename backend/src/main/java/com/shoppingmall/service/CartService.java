@@ -1,7 +1,6 @@
 package com.shoppingmall.service;
 
 import com.shoppingmall.mapper.CartMapper;
-import com.shoppingmall.mapper.ProductMapper;
 import com.shoppingmall.model.Cart;
 import com.shoppingmall.model.CartItem;
 import com.shoppingmall.model.Product;
@@ -18,12 +17,12 @@ import java.util.Optional;
 public class CartService {
 
     private final CartMapper cartMapper;
-    private final ProductMapper productMapper;
+    private final ProductService productService;
 
     @Autowired
-    public CartService(CartMapper cartMapper, ProductMapper productMapper) {
+    public CartService(CartMapper cartMapper, ProductService productService) {
         this.cartMapper = cartMapper;
-        this.productMapper = productMapper;
+        this.productService = productService;
     }
 
     /**
@@ -59,7 +58,7 @@ public class CartService {
         }
 
         // Check if product exists and is available
-        Optional<Product> productOpt = productMapper.findById(productId);
+        Optional<Product> productOpt = productService.getProductById(productId);
         if (!productOpt.isPresent()) {
             throw new RuntimeException("Product not found");
         }
@@ -136,7 +135,7 @@ public class CartService {
         }
 
         // Check product availability
-        Optional<Product> productOpt = productMapper.findById(cartItem.getProductId());
+        Optional<Product> productOpt = productService.getProductById(cartItem.getProductId());
         if (!productOpt.isPresent()) {
             throw new RuntimeException("Product not found");
         }
@@ -1,52 +1,81 @@
 package com.shoppingmall.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.model.FacetBucket;
 import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductSearchRequest;
+import com.shoppingmall.model.ProductSearchResult;
+import com.shoppingmall.model.ProductSummary;
+import com.shoppingmall.search.BulkOperation;
+import com.shoppingmall.search.BulkReport;
+import com.shoppingmall.search.ElasticsearchBulkIndexer;
+import com.shoppingmall.search.ElasticsearchBusyException;
+import com.shoppingmall.search.ElasticsearchCircuitBreaker;
+import com.shoppingmall.search.ElasticsearchHttpClients;
+import com.shoppingmall.search.ElasticsearchUnavailableException;
+import com.shoppingmall.search.ProductIndexManager;
+import com.shoppingmall.search.SearchResponseReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 @Service
 public class ProductElasticsearchService {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductElasticsearchService.class);
+    private static final List<String> SUMMARY_FIELDS = List.of(
+            "id", "name", "price", "category", "imageUrl", "stockQuantity", "rating", "reviewCount", "createdAt");
+    private static final int CATEGORY_FACET_SIZE = 50;
     
     @Value("${elasticsearch.url:http://elasticsearch:9200}")
     private String elasticsearchUrl;
     
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    @Value("${search.pagination.point-in-time-keep-alive:2m}")
+    private String pointInTimeKeepAlive;
     
-    public ProductElasticsearchService() {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+    private final RestTemplate searchClient;
+    private final RestTemplate adminClient;
+    private final SearchResponseReader responseReader;
+    private final ElasticsearchCircuitBreaker circuitBreaker;
+    private final ElasticsearchBulkIndexer bulkIndexer;
+    private final ProductIndexManager indexManager;
+    
+    public ProductElasticsearchService(ElasticsearchCircuitBreaker circuitBreaker,
+                                       ElasticsearchBulkIndexer bulkIndexer,
+                                       ProductIndexManager indexManager,
+                                       ElasticsearchHttpClients httpClients) {
+        this.searchClient = httpClients.search();
+        this.adminClient = httpClients.admin();
+        this.responseReader = new SearchResponseReader(new ObjectMapper().getFactory());
+        this.circuitBreaker = circuitBreaker;
+        this.bulkIndexer = bulkIndexer;
+        this.indexManager = indexManager;
     }
     
     /**
-     * Search products using Elasticsearch with multi-match query
+     * Search products using Elasticsearch with multi-match query.
+     * With idsOnly the documents' _source is not fetched and each summary carries only the id,
+     * in ranking order, for the caller to hydrate.
      */
-    public List<Product> searchProducts(String query, int size) {
+    public List<ProductSummary> searchProducts(String query, int size, boolean idsOnly) {
         try {
-            Map<String, Object> searchQuery = createSearchQuery(query, size);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(searchQuery, headers);
-            
-            String url = elasticsearchUrl + "/products/_search";
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return parseSearchResponse(response.getBody());
-            }
+            SearchResponseReader.Result result = search(createSearchQuery(query, size, idsOnly));
+            circuitBreaker.recordSuccess();
+            return result.products();
             
         } catch (Exception e) {
+            recordFailure(e);
             logger.error("Elasticsearch search failed: ", e);
         }
         
@@ -54,74 +83,258 @@ public class ProductElasticsearchService {
     }
     
     /**
-     * Index a product to Elasticsearch (called when product is created/updated)
+     * Faceted search: full-text query, filters, sorting and paging plus category and price-range
+     * facets in one request. Filters that don't drive a facet go in the bool filter context
+     * (unscored, cached). Category and price filters go in post_filter instead, and each facet
+     * aggregation applies only the other one, so a facet keeps showing the alternatives to what
+     * is already selected. Throws on failure so the caller can fall back to MySQL.
+     * idsOnly works as in {@link #searchProducts(String, int, boolean)}; facets are unaffected.
      */
-    public void indexProduct(Product product) {
+    public ProductSearchResult advancedSearch(ProductSearchRequest request, int from, int size, List<BigDecimal> priceBreaks,
+                                              boolean idsOnly) {
+        Map<String, Object> searchQuery = createAdvancedSearchQuery(request, from, size, priceBreaks, idsOnly);
+        
+        SearchResponseReader.Result result;
         try {
-            Map<String, Object> document = createProductDocument(product);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(document, headers);
-            
-            String url = elasticsearchUrl + "/products/_doc/" + product.getId();
-            restTemplate.exchange(url, HttpMethod.PUT, request, String.class);
-            
-            logger.debug("Indexed product {} to Elasticsearch", product.getId());
-            
-        } catch (Exception e) {
-            logger.error("Failed to index product {} to Elasticsearch: ", product.getId(), e);
+            result = search(searchQuery);
+            circuitBreaker.recordSuccess();
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            throw e;
+        }
+        
+        long[] priceCounts = new long[priceBreaks.size() + 1];
+        for (FacetBucket bucket : result.buckets("prices")) {
+            priceCounts[Integer.parseInt(bucket.getKey())] = bucket.getCount();
         }
+        return new ProductSearchResult(result.products(), result.total(), result.totalExact(),
+                from, size, result.buckets("categories"), priceFacets(priceBreaks, priceCounts), "elasticsearch");
     }
     
     /**
-     * Remove a product from Elasticsearch (called when product is deleted)
+     * One page of a search ordered by score, then id, continuing after the hit whose sort
+     * values are given (none for the first page). With a point in time the search sees the
+     * index as it was when that was opened; the response carries the id to use next.
+     * Page cost stays flat however deep the page is. Throws on failure.
      */
-    public void deleteProduct(Long productId) {
+    public SearchResponseReader.Result searchProductsAfter(String query, int size, boolean idsOnly,
+                                                           Object[] searchAfter, String pointInTimeId) {
+        Map<String, Object> searchQuery = createSearchQuery(query, size, idsOnly);
+        searchQuery.put("sort", List.of(Map.of("_score", "desc"), Map.of("id", "asc")));
+        searchQuery.put("track_total_hits", false);
+        if (searchAfter != null) {
+            searchQuery.put("search_after", searchAfter);
+        }
+        if (pointInTimeId != null) {
+            searchQuery.put("pit", Map.of("id", pointInTimeId, "keep_alive", pointInTimeKeepAlive));
+        }
+        
         try {
-            String url = elasticsearchUrl + "/products/_doc/" + productId;
-            restTemplate.delete(url);
-            
-            logger.debug("Deleted product {} from Elasticsearch", productId);
-            
+            SearchResponseReader.Result result = search(searchQuery, pointInTimeId == null);
+            circuitBreaker.recordSuccess();
+            return result;
+        } catch (HttpClientErrorException.NotFound e) {
+            recordFailure(e);
+            if (pointInTimeId != null) {
+                throw new BadRequestException("Search results expired; start the search again");
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Open a point in time on the alias for paging through one consistent view of the index
+     */
+    public String openPointInTime() {
+        String url = elasticsearchUrl + "/" + indexManager.getAlias() + "/_pit?keep_alive=" + pointInTimeKeepAlive;
+        acquire();
+        try {
+            ResponseEntity<Map<String, Object>> response = searchClient.exchange(url, HttpMethod.POST, null,
+                    new ParameterizedTypeReference<Map<String, Object>>() { });
+            circuitBreaker.recordSuccess();
+            return (String) response.getBody().get("id");
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Release a point in time early; unreleased ones expire after their keep-alive
+     */
+    public void closePointInTime(String pointInTimeId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            searchClient.exchange(elasticsearchUrl + "/_pit", HttpMethod.DELETE,
+                    new HttpEntity<>(Map.of("id", pointInTimeId), headers), String.class);
         } catch (Exception e) {
-            logger.error("Failed to delete product {} from Elasticsearch: ", productId, e);
+            logger.debug("Failed to close point in time: {}", e.getMessage());
         }
     }
     
+    private SearchResponseReader.Result search(Map<String, Object> searchQuery) {
+        return search(searchQuery, true);
+    }
+    
     /**
-     * Check if Elasticsearch is available
+     * Run a _search and decode the response while it streams in. The response is trimmed
+     * server-side to what the reader uses. A search pinned to a point in time names no index.
+     */
+    private SearchResponseReader.Result search(Map<String, Object> searchQuery, boolean onAlias) {
+        acquire();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(searchQuery, headers);
+        
+        String url = elasticsearchUrl + (onAlias ? "/" + indexManager.getAlias() : "") + "/_search?"
+                + SearchResponseReader.FILTER_PATH;
+        ResponseExtractor<SearchResponseReader.Result> extractor = response -> responseReader.read(response.getBody());
+        return searchClient.execute(url, HttpMethod.POST, searchClient.httpEntityCallback(request), extractor);
+    }
+    
+    /**
+     * Check if Elasticsearch is available.
+     * Reads the circuit breaker state instead of calling the cluster, and takes nothing: in the
+     * half-open state the trial slot goes to whichever call reaches the cluster first.
      */
     public boolean isAvailable() {
+        return !circuitBreaker.isOpen();
+    }
+    
+    /**
+     * Background health probe feeding the circuit breaker, so an open circuit can close
+     * without waiting for user traffic to risk a trial call
+     */
+    @Scheduled(fixedDelayString = "${elasticsearch.circuit-breaker.probe-interval-ms:5000}",
+               initialDelayString = "${elasticsearch.circuit-breaker.probe-interval-ms:5000}")
+    public void probeHealth() {
         try {
-            String url = elasticsearchUrl + "/_cluster/health";
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            return response.getStatusCode() == HttpStatus.OK;
+            String url = elasticsearchUrl + "/_cluster/health?filter_path=status";
+            ResponseEntity<Map<String, Object>> response = adminClient.exchange(url, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<Map<String, Object>>() { });
+            // Cluster health answers 200 even when red (some primaries unassigned)
+            Object status = response.getBody() != null ? response.getBody().get("status") : null;
+            if ("green".equals(status) || "yellow".equals(status)) {
+                circuitBreaker.recordProbeSuccess();
+            } else {
+                circuitBreaker.recordProbeFailure(new IllegalStateException("Cluster health is " + status));
+            }
+        } catch (ElasticsearchBusyException e) {
+            // Not sent; no outcome
         } catch (Exception e) {
-            return false;
+            circuitBreaker.recordProbeFailure(e);
         }
     }
     
+    public ElasticsearchCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
     /**
-     * Bulk index all products (for admin/initial setup)
+     * Bulk index products (for admin/initial setup) through the _bulk API
      */
-    public int bulkIndexProducts(List<Product> products) {
-        int indexedCount = 0;
-        
+    public BulkReport bulkIndexProducts(List<Product> products) {
+        List<BulkOperation> operations = new ArrayList<>(products.size());
         for (Product product : products) {
-            try {
-                indexProduct(product);
-                indexedCount++;
-            } catch (Exception e) {
-                logger.error("Failed to index product {}: ", product.getId(), e);
-            }
+            operations.addAll(indexOperations(product));
         }
         
-        logger.info("Bulk indexed {} out of {} products", indexedCount, products.size());
-        return indexedCount;
+        BulkReport report = bulkIndexer.execute(operations);
+        logger.info("Bulk indexed {} out of {} products ({} failed, {} retried) in {} ms",
+                report.getSucceeded(), products.size(), report.getFailed(), report.getRetried(), report.getTookMillis());
+        return report;
     }
     
-    private Map<String, Object> createSearchQuery(String query, int size) {
+    /**
+     * Bulk actions that (re)index the full product document through the alias, plus the
+     * index being rebuilt if a reindex is running
+     */
+    public List<BulkOperation> indexOperations(Product product) {
+        String building = indexManager.getBuildingIndex();
+        if (building == null) {
+            return List.of(indexOperation(indexManager.getAlias(), product));
+        }
+        return List.of(indexOperation(indexManager.getAlias(), product), indexOperation(building, product));
+    }
+    
+    /**
+     * Bulk actions that patch only the fields stock and rating changes touch, mirroring
+     * {@link #indexOperations(Product)}. Unchanged values are a no-op in Elasticsearch.
+     */
+    public List<BulkOperation> partialUpdateOperations(Product product) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("stockQuantity", product.getStockQuantity());
+        document.put("rating", product.getRating());
+        document.put("reviewCount", product.getReviewCount());
+        document.put("updatedAt", product.getUpdatedAt() != null ? product.getUpdatedAt().toString() : null);
+        
+        String building = indexManager.getBuildingIndex();
+        if (building == null) {
+            return List.of(BulkOperation.update(indexManager.getAlias(), product.getId(), document));
+        }
+        return List.of(BulkOperation.update(indexManager.getAlias(), product.getId(), document),
+                BulkOperation.update(building, product.getId(), document));
+    }
+    
+    /**
+     * Bulk action that (re)indexes the full product document into one concrete index
+     */
+    public BulkOperation indexOperation(String index, Product product) {
+        return BulkOperation.index(index, product.getId(), createProductDocument(product));
+    }
+    
+    /**
+     * Bulk actions that remove the product document, mirroring {@link #indexOperations(Product)}
+     */
+    public List<BulkOperation> deleteOperations(Long productId) {
+        String building = indexManager.getBuildingIndex();
+        if (building == null) {
+            return List.of(BulkOperation.delete(indexManager.getAlias(), productId));
+        }
+        indexManager.recordDelete(productId);
+        return List.of(BulkOperation.delete(indexManager.getAlias(), productId), BulkOperation.delete(building, productId));
+    }
+    
+    public ProductIndexManager getIndexManager() {
+        return indexManager;
+    }
+    
+    public ElasticsearchBulkIndexer getBulkIndexer() {
+        return bulkIndexer;
+    }
+    
+    /**
+     * Take the circuit breaker's permission (the trial slot, when half-open) right before a call
+     */
+    private void acquire() {
+        if (!circuitBreaker.allowRequest()) {
+            throw new ElasticsearchUnavailableException("Elasticsearch circuit is open");
+        }
+    }
+    
+    /**
+     * Client errors (bad request, missing document) say nothing about cluster health, and
+     * neither does a request refused locally because too many were already in flight or the
+     * circuit was open. 429 is the cluster shedding load and counts as a failure.
+     */
+    private void recordFailure(Exception e) {
+        if (e instanceof ElasticsearchUnavailableException) {
+            return;
+        }
+        if (e instanceof ElasticsearchBusyException) {
+            circuitBreaker.recordSkipped();
+        } else if (e instanceof HttpClientErrorException && !(e instanceof HttpClientErrorException.TooManyRequests)) {
+            circuitBreaker.recordSuccess();
+        } else {
+            circuitBreaker.recordFailure(e);
+        }
+    }
+    
+    private Map<String, Object> createSearchQuery(String query, int size, boolean idsOnly) {
         Map<String, Object> searchQuery = new HashMap<>();
         
         // Multi-match query with field boosting
@@ -131,16 +344,138 @@ public class ProductElasticsearchService {
         multiMatch.put("type", "best_fields");
         multiMatch.put("fuzziness", "AUTO");
         
+        // The index mirrors the whole table, so deactivated products must be filtered out
+        Map<String, Object> boolQuery = new HashMap<>();
+        boolQuery.put("must", Map.of("multi_match", multiMatch));
+        boolQuery.put("filter", Map.of("term", Map.of("isActive", true)));
+        
         Map<String, Object> queryMap = new HashMap<>();
-        queryMap.put("multi_match", multiMatch);
+        queryMap.put("bool", boolQuery);
         
         searchQuery.put("query", queryMap);
         searchQuery.put("size", size);
         searchQuery.put("sort", Arrays.asList("_score"));
+        searchQuery.put("_source", idsOnly ? false : SUMMARY_FIELDS);
         
         return searchQuery;
     }
     
+    private Map<String, Object> createAdvancedSearchQuery(ProductSearchRequest request, int from, int size,
+                                                          List<BigDecimal> priceBreaks, boolean idsOnly) {
+        ProductSearchRequest.Filters filters = request.getFilters();
+        
+        List<Object> filterContext = new ArrayList<>();
+        filterContext.add(Map.of("term", Map.of("isActive", true)));
+        if (filters.getMinRating() != null) {
+            filterContext.add(Map.of("range", Map.of("rating", Map.of("gte", filters.getMinRating()))));
+        }
+        if (Boolean.TRUE.equals(filters.getInStock())) {
+            filterContext.add(Map.of("range", Map.of("stockQuantity", Map.of("gt", 0))));
+        }
+        
+        Map<String, Object> boolQuery = new HashMap<>();
+        if (request.hasQuery()) {
+            Map<String, Object> multiMatch = new HashMap<>();
+            multiMatch.put("query", request.getQuery().trim());
+            multiMatch.put("fields", Arrays.asList("name^2", "description"));
+            multiMatch.put("type", "best_fields");
+            multiMatch.put("fuzziness", "AUTO");
+            boolQuery.put("must", Map.of("multi_match", multiMatch));
+        }
+        boolQuery.put("filter", filterContext);
+        
+        // Facet-driving filters: applied to hits via post_filter, to the other facet via a filter agg
+        Map<String, Object> categoryFilter = filters.getCategory().isEmpty()
+                ? null
+                : Map.of("terms", Map.of("category", filters.getCategory()));
+        Map<String, Object> priceFilter = null;
+        if (filters.hasPriceRange()) {
+            Map<String, Object> range = new HashMap<>();
+            if (filters.getMinPrice() != null) {
+                range.put("gte", filters.getMinPrice());
+            }
+            if (filters.getMaxPrice() != null) {
+                range.put("lte", filters.getMaxPrice());
+            }
+            priceFilter = Map.of("range", Map.of("price", range));
+        }
+        
+        Map<String, Object> searchQuery = new HashMap<>();
+        searchQuery.put("query", Map.of("bool", boolQuery));
+        List<Object> postFilters = new ArrayList<>();
+        if (categoryFilter != null) {
+            postFilters.add(categoryFilter);
+        }
+        if (priceFilter != null) {
+            postFilters.add(priceFilter);
+        }
+        if (!postFilters.isEmpty()) {
+            searchQuery.put("post_filter", Map.of("bool", Map.of("filter", postFilters)));
+        }
+        
+        List<Map<String, Object>> ranges = new ArrayList<>();
+        for (int i = 0; i <= priceBreaks.size(); i++) {
+            Map<String, Object> range = new HashMap<>();
+            range.put("key", String.valueOf(i));
+            if (i > 0) {
+                range.put("from", priceBreaks.get(i - 1));
+            }
+            if (i < priceBreaks.size()) {
+                range.put("to", priceBreaks.get(i));
+            }
+            ranges.add(range);
+        }
+        Map<String, Object> matchAll = Map.of("match_all", Map.of());
+        Map<String, Object> aggs = new HashMap<>();
+        aggs.put("categories", Map.of(
+                "filter", priceFilter != null ? priceFilter : matchAll,
+                "aggs", Map.of("values", Map.of("terms", Map.of("field", "category", "size", CATEGORY_FACET_SIZE)))));
+        aggs.put("prices", Map.of(
+                "filter", categoryFilter != null ? categoryFilter : matchAll,
+                "aggs", Map.of("ranges", Map.of("range", Map.of("field", "price", "ranges", ranges)))));
+        searchQuery.put("aggs", aggs);
+        
+        searchQuery.put("sort", createSort(request.getSort()));
+        searchQuery.put("from", from);
+        searchQuery.put("size", size);
+        searchQuery.put("_source", idsOnly ? false : SUMMARY_FIELDS);
+        return searchQuery;
+    }
+    
+    /**
+     * Sort clauses; id breaks ties so pages are stable
+     */
+    private List<Object> createSort(ProductSearchRequest.SortBy sortBy) {
+        Map<String, Object> idAsc = Map.of("id", "asc");
+        switch (sortBy) {
+            case PRICE_ASC:
+                return List.of(Map.of("price", "asc"), idAsc);
+            case PRICE_DESC:
+                return List.of(Map.of("price", "desc"), idAsc);
+            case RATING_DESC:
+                return List.of(Map.of("rating", "desc"), "_score", idAsc);
+            case NEWEST:
+                return List.of(Map.of("createdAt", "desc"), idAsc);
+            default:
+                return List.of("_score", Map.of("createdAt", "desc"), idAsc);
+        }
+    }
+    
+    /**
+     * Price range buckets for the given breakpoints: below the first, between each pair, at or
+     * above the last
+     */
+    public static List<FacetBucket> priceFacets(List<BigDecimal> priceBreaks, long[] counts) {
+        List<FacetBucket> buckets = new ArrayList<>(priceBreaks.size() + 1);
+        for (int i = 0; i <= priceBreaks.size(); i++) {
+            BigDecimal lower = i > 0 ? priceBreaks.get(i - 1) : null;
+            BigDecimal upper = i < priceBreaks.size() ? priceBreaks.get(i) : null;
+            String key = (lower != null ? lower.toPlainString() : "*") + "-" + (upper != null ? upper.toPlainString() : "*");
+            buckets.add(new FacetBucket(key, lower, upper, counts[i]));
+        }
+        return buckets;
+    }
+    
     private Map<String, Object> createProductDocument(Product product) {
         Map<String, Object> document = new HashMap<>();
         document.put("id", product.getId());
@@ -158,36 +493,4 @@ public class ProductElasticsearchService {
         
         return document;
     }
-    
-    private List<Product> parseSearchResponse(String responseBody) {
-        List<Product> products = new ArrayList<>();
-        
-        try {
-            JsonNode root = objectMapper.readTree(responseBody);
-            JsonNode hits = root.path("hits").path("hits");
-            
-            for (JsonNode hit : hits) {
-                JsonNode source = hit.path("_source");
-                
-                Product product = new Product();
-                product.setId(source.path("id").asLong());
-                product.setName(source.path("name").asText());
-                product.setDescription(source.path("description").asText());
-                product.setPrice(source.path("price").decimalValue());
-                product.setCategory(source.path("category").asText());
-                product.setImageUrl(source.path("imageUrl").asText());
-                product.setStockQuantity(source.path("stockQuantity").asInt());
-                product.setRating(source.path("rating").decimalValue());
-                product.setReviewCount(source.path("reviewCount").asInt());
-                product.setIsActive(source.path("isActive").asBoolean());
-                
-                products.add(product);
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error parsing Elasticsearch response: ", e);
-        }
-        
-        return products;
-    }
 }
\ No newline at end of file
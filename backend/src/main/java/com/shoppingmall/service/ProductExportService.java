@@ -0,0 +1,141 @@
+package com.shoppingmall.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.Product;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the full catalog (including inactive products) as NDJSON or CSV.
+ *
+ * Rows come from a MyBatis cursor and are written straight to the output stream, so memory
+ * use is constant regardless of table size. Rows are ordered by id; an interrupted export
+ * can be resumed by passing the last id received as afterId.
+ */
+@Service
+public class ProductExportService {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductExportService.class);
+    private static final int FLUSH_EVERY_ROWS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ProductExportService(ProductMapper productMapper, ObjectMapper objectMapper) {
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    public static String contentTypeOf(String format) {
+        return FORMAT_CSV.equals(format) ? "text/csv; charset=UTF-8" : "application/x-ndjson";
+    }
+
+    /**
+     * Write every product with id greater than afterId (or all when null) to the output stream
+     *
+     * @return number of products written
+     */
+    @Transactional(readOnly = true)
+    public long exportProducts(String format, Long afterId, OutputStream outputStream) throws IOException {
+        if (!FORMAT_NDJSON.equals(format) && !FORMAT_CSV.equals(format)) {
+            throw new BadRequestException("Unsupported export format: " + format);
+        }
+
+        long start = System.currentTimeMillis();
+        long count;
+        OutputStream out = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        try (Cursor<Product> cursor = productMapper.streamAll(afterId)) {
+            count = FORMAT_CSV.equals(format) ? writeCsv(cursor, out) : writeNdjson(cursor, out);
+        }
+        out.flush();
+
+        logger.info("Exported {} products as {} (afterId={}) in {} ms",
+                count, format, afterId, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    private long writeNdjson(Cursor<Product> cursor, OutputStream out) throws IOException {
+        long count = 0;
+        SequenceWriter writer = objectMapper.writerFor(Product.class)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+        for (Product product : cursor) {
+            writer.write(product);
+            if (++count % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        if (count > 0) {
+            out.write('\n');
+        }
+        return count;
+    }
+
+    private long writeCsv(Cursor<Product> cursor, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("id,name,description,price,category,image_url,stock_quantity,rating,review_count,is_active,created_at,updated_at\n");
+        for (Product product : cursor) {
+            writer.write(String.valueOf(product.getId()));
+            writer.write(',');
+            writer.write(csv(product.getName()));
+            writer.write(',');
+            writer.write(csv(product.getDescription()));
+            writer.write(',');
+            writer.write(csv(product.getPrice()));
+            writer.write(',');
+            writer.write(csv(product.getCategory()));
+            writer.write(',');
+            writer.write(csv(product.getImageUrl()));
+            writer.write(',');
+            writer.write(csv(product.getStockQuantity()));
+            writer.write(',');
+            writer.write(csv(product.getRating()));
+            writer.write(',');
+            writer.write(csv(product.getReviewCount()));
+            writer.write(',');
+            writer.write(csv(product.getIsActive()));
+            writer.write(',');
+            writer.write(csv(product.getCreatedAt()));
+            writer.write(',');
+            writer.write(csv(product.getUpdatedAt()));
+            writer.write('\n');
+            if (++count % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,82 +1,334 @@
 package com.shoppingmall.service;
 
+import com.shoppingmall.cache.CategoryCache;
+import com.shoppingmall.cache.ProductCache;
+import com.shoppingmall.cache.ProductCountCache;
+import com.shoppingmall.cache.SearchResultCache;
+import com.shoppingmall.catalog.CatalogEngine;
+import com.shoppingmall.catalog.SuggestionIndex;
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.exception.ServiceUnavailableException;
 import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.mapper.SearchOutboxMapper;
+import com.shoppingmall.model.FacetBucket;
 import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductBatch;
+import com.shoppingmall.model.ProductPage;
+import com.shoppingmall.model.ProductSearchRequest;
+import com.shoppingmall.model.ProductSearchResult;
+import com.shoppingmall.model.ProductSlice;
+import com.shoppingmall.model.ProductSummary;
+import com.shoppingmall.search.LocalSearchIndex;
+import com.shoppingmall.search.SearchResponseReader;
+import com.shoppingmall.util.ProductCursor;
+import com.shoppingmall.util.SearchCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @Service
 @Transactional
 public class ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_WINDOW = 10000;
+    private static final int CATEGORY_FACET_SIZE = 50;
+
+    /**
+     * What a product write touched, which decides how much in-memory state it invalidates
+     */
+    private enum ProductChange {
+        /** Name, category, price, status or anything else a listing filters or sorts on */
+        LISTING,
+        /** Rating and review count */
+        RATING,
+        /** Stock quantity only */
+        STOCK
+    }
     
     private final ProductMapper productMapper;
+    private final SearchOutboxMapper searchOutboxMapper;
+    private final ProductCache productCache;
+    private final CatalogEngine catalogEngine;
+    private final SuggestionIndex suggestionIndex;
+    private final LocalSearchIndex localSearchIndex;
+    private final SearchResultCache searchResultCache;
+    private final ProductCountCache productCountCache;
+    private final CategoryCache categoryCache;
+    private final ExecutorService productQueryExecutor;
     
     @Autowired(required = false)
     private ProductElasticsearchService elasticsearchService;
 
+    @Value("${product.count.approximate-cap:10000}")
+    private int approximateCountCap;
+
+    @Value("${product.batch.max-size:200}")
+    private int batchMaxSize;
+
+    @Value("${product.batch.chunk-size:100}")
+    private int batchChunkSize;
+
+    /** elasticsearch (embedded index only as fallback) or local (embedded index first) */
+    @Value("${search.engine:elasticsearch}")
+    private String searchEngine;
+
+    /** like (leading-wildcard LIKE) or fulltext (MATCH ... AGAINST on the ngram FULLTEXT indexes) */
+    @Value("${search.mysql.mode:like}")
+    private String mysqlSearchMode;
+
+    /** Stock and rating changes wait this long in the outbox so bursts reach the index once */
+    @Value("${search.outbox.enabled:true}")
+    private boolean searchOutboxEnabled;
+
+    @Value("${search.outbox.partial-update-delay-ms:2000}")
+    private long partialUpdateDelayMillis;
+
+    @Value("${search.facets.price-breaks:25,50,100,200}")
+    private List<BigDecimal> priceBreaks;
+
+    /** Pin paged Elasticsearch searches to a point in time so pages don't shift under writes */
+    @Value("${search.pagination.point-in-time:false}")
+    private boolean searchPointInTime;
+
+    /** Take only ids and ranking from Elasticsearch and load the products themselves locally */
+    @Value("${search.hydrate:false}")
+    private boolean hydrateSearchResults;
+
     @Autowired
-    public ProductService(ProductMapper productMapper) {
+    public ProductService(ProductMapper productMapper, SearchOutboxMapper searchOutboxMapper,
+                          ProductCache productCache, CatalogEngine catalogEngine,
+                          ProductCountCache productCountCache, CategoryCache categoryCache,
+                          SuggestionIndex suggestionIndex, LocalSearchIndex localSearchIndex,
+                          SearchResultCache searchResultCache,
+                          @Qualifier("productQueryExecutor") ExecutorService productQueryExecutor) {
         this.productMapper = productMapper;
+        this.searchOutboxMapper = searchOutboxMapper;
+        this.productCache = productCache;
+        this.catalogEngine = catalogEngine;
+        this.productCountCache = productCountCache;
+        this.categoryCache = categoryCache;
+        this.suggestionIndex = suggestionIndex;
+        this.localSearchIndex = localSearchIndex;
+        this.searchResultCache = searchResultCache;
+        this.productQueryExecutor = productQueryExecutor;
     }
 
     /**
-     * Get all products with filtering, sorting, and pagination
+     * Get one page of products together with the total number of matches.
+     * Served by the in-memory catalog engine in a single pass when it is enabled and loaded.
+     * Otherwise the total comes from the count cache; on a miss the count query runs
+     * concurrently with the page query. With approximateCount the count stops at a cap
+     * and the page reports the total as inexact.
      */
     @Transactional(readOnly = true)
-    public List<Product> getAllProducts(String category, BigDecimal minPrice, BigDecimal maxPrice, 
-                                       String sortBy, String sortOrder, Integer page, Integer size) {
-        
-        // Calculate offset for pagination
+    public ProductPage getProductPage(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                      String sortBy, String sortOrder, Integer page, Integer size,
+                                      boolean approximateCount) {
+        sortBy = normalizeSortBy(sortBy);
+        sortOrder = normalizeSortOrder(sortOrder);
+
+        if (catalogEngine.isServing() && page != null && size != null && page > 0 && size > 0) {
+            Optional<ProductPage> inMemory = catalogEngine.query(category, minPrice, maxPrice,
+                    sortBy, sortOrder, (page - 1) * size, size);
+            if (inMemory.isPresent()) {
+                return inMemory.get();
+            }
+        }
+
+        Integer cap = approximateCount ? approximateCountCap : null;
+        String countKey = ProductCountCache.key(category, minPrice, maxPrice, cap);
+        Integer cachedTotal = productCountCache.get(countKey);
+
+        CompletableFuture<Integer> totalFuture;
+        if (cachedTotal != null) {
+            totalFuture = CompletableFuture.completedFuture(cachedTotal);
+        } else {
+            long generation = productCountCache.generation();
+            totalFuture = CompletableFuture.supplyAsync(() -> {
+                // Ask for one row past the cap so an overflow can be told apart from an exact hit
+                int count = cap != null
+                        ? productMapper.countProductsUpTo(category, minPrice, maxPrice, cap + 1)
+                        : productMapper.countProducts(category, minPrice, maxPrice);
+                productCountCache.put(countKey, generation, count);
+                return count;
+            }, productQueryExecutor);
+        }
+
         Integer offset = null;
         Integer limit = null;
-        
         if (page != null && size != null && page > 0 && size > 0) {
             offset = (page - 1) * size;
             limit = size;
         }
+        List<ProductSummary> products = productMapper.findAllSummaries(category, minPrice, maxPrice,
+                sortBy, sortOrder, limit, offset);
+
+        int total;
+        try {
+            total = totalFuture.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
 
-        // Validate sort parameters
-        if (sortBy == null || sortBy.trim().isEmpty()) {
-            sortBy = "created_at";
+        if (cap != null && total > cap) {
+            return new ProductPage(products, cap, false);
         }
-        if (sortOrder == null || (!sortOrder.equalsIgnoreCase("asc") && !sortOrder.equalsIgnoreCase("desc"))) {
-            sortOrder = "desc";
+        return new ProductPage(products, total);
+    }
+
+    /**
+     * Get one page of products using keyset (seek) pagination.
+     * A null or empty cursor starts from the first row; each page is a bounded index range scan.
+     */
+    @Transactional(readOnly = true)
+    public ProductSlice getProductsAfter(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                        String sortBy, String sortOrder, String cursorToken, Integer size) {
+        String sort = ProductCursor.sortOf(normalizeSortBy(sortBy), normalizeSortOrder(sortOrder));
+
+        ProductCursor cursor = null;
+        if (cursorToken != null && !cursorToken.isEmpty()) {
+            cursor = ProductCursor.decode(cursorToken);
+            if (!cursor.getSort().equals(sort)) {
+                throw new BadRequestException("Cursor does not match the requested sort order");
+            }
+        }
+
+        int limit = size == null || size <= 0 ? 20 : Math.min(size, MAX_CURSOR_PAGE_SIZE);
+
+        // Fetch one extra row to learn whether another page exists
+        List<ProductSummary> products = productMapper.findSummariesAfter(category, minPrice, maxPrice, sort, cursor, limit + 1);
+        if (products.size() <= limit) {
+            return new ProductSlice(products, null);
         }
 
-        return productMapper.findAll(category, minPrice, maxPrice, sortBy, sortOrder, limit, offset);
+        List<ProductSummary> page = products.subList(0, limit);
+        String nextCursor = ProductCursor.after(sort, page.get(limit - 1)).encode();
+        return new ProductSlice(new ArrayList<>(page), nextCursor);
     }
 
     /**
-     * Get product by ID
+     * Get product by ID (served from the product cache when possible)
      */
     @Transactional(readOnly = true)
     public Optional<Product> getProductById(Long id) {
-        return productMapper.findById(id);
+        return productCache.get(id, productMapper::findById);
+    }
+
+    /**
+     * Get many products by id in one round trip.
+     * Ids are deduplicated (first occurrence wins), served from the product cache where
+     * possible, and the rest is loaded with IN queries of at most batchChunkSize ids.
+     * Products come back in request order; unknown or inactive ids are reported as missing.
+     */
+    @Transactional(readOnly = true)
+    public ProductBatch getProductsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ProductBatch(List.of(), List.of());
+        }
+
+        Set<Long> uniqueIds = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id != null) {
+                uniqueIds.add(id);
+            }
+        }
+        if (uniqueIds.size() > batchMaxSize) {
+            throw new BadRequestException("At most " + batchMaxSize + " product ids can be requested at once");
+        }
+
+        Map<Long, Product> found = loadProducts(uniqueIds);
+
+        List<Product> products = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new ProductBatch(products, missingIds);
+    }
+
+    /**
+     * Active products by id from the product cache, the rest loaded with IN queries of at most
+     * batchChunkSize ids
+     */
+    private Map<Long, Product> loadProducts(Collection<Long> ids) {
+        return productCache.getAll(ids, missing -> {
+            List<Product> loaded = new ArrayList<>(missing.size());
+            for (int from = 0; from < missing.size(); from += batchChunkSize) {
+                List<Long> chunk = missing.subList(from, Math.min(from + batchChunkSize, missing.size()));
+                loaded.addAll(productMapper.findByIds(chunk));
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Replace search hits with current product data, keeping the search's order. The index
+     * holds price, stock and status as of the last sync; products that are gone or inactive
+     * by now are dropped.
+     */
+    private List<ProductSummary> hydrate(List<ProductSummary> hits) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        for (ProductSummary hit : hits) {
+            ids.add(hit.getId());
+        }
+        Map<Long, Product> found = loadProducts(ids);
+
+        List<ProductSummary> products = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(new ProductSummary(product));
+            }
+        }
+        return products;
     }
 
     /**
      * Get products by category
      */
     @Transactional(readOnly = true)
-    public List<Product> getProductsByCategory(String category) {
-        return productMapper.findByCategory(category);
+    public List<ProductSummary> getProductsByCategory(String category) {
+        return productMapper.findSummariesByCategory(category);
     }
 
     /**
-     * Search products by name or description
-     * Uses Elasticsearch if available, falls back to MySQL
+     * Search products by name or description.
+     * Uses Elasticsearch if available, then the embedded local index, then MySQL
+     * (LIKE or FULLTEXT per search.mysql.mode); with search.engine=local the embedded
+     * index is tried first. With search.hydrate, Elasticsearch only ranks and the products
+     * are loaded locally.
      */
     @Transactional(readOnly = true)
-    public List<Product> searchProducts(String query, Integer limit) {
+    public List<ProductSummary> searchProducts(String query, Integer limit) {
         if (query == null || query.trim().isEmpty()) {
             return List.of();
         }
@@ -85,21 +337,203 @@ public class ProductService {
             limit = 50; // Default limit
         }
         
+        String trimmed = query.trim();
+        int size = limit;
+        return searchResultCache.get(SearchResultCache.key(trimmed, size),
+                () -> searchProductsUncached(trimmed, size),
+                products -> products.stream().map(ProductSummary::getId).toList());
+    }
+
+    private List<ProductSummary> searchProductsUncached(String query, int limit) {
+        boolean localFirst = "local".equals(searchEngine);
+        if (localFirst && localSearchIndex.isServing()) {
+            try {
+                return localSearchIndex.search(query.trim(), limit);
+            } catch (Exception e) {
+                logger.warn("Local search failed, falling back: {}", e.getMessage());
+            }
+        }
+        
         // Try to use Elasticsearch if available
         if (elasticsearchService != null && elasticsearchService.isAvailable()) {
             try {
-                List<Product> elasticResults = elasticsearchService.searchProducts(query.trim(), limit);
+                List<ProductSummary> elasticResults =
+                        elasticsearchService.searchProducts(query.trim(), limit, hydrateSearchResults);
                 if (!elasticResults.isEmpty()) {
-                    return elasticResults;
+                    return hydrateSearchResults ? hydrate(elasticResults) : elasticResults;
                 }
             } catch (Exception e) {
-                // Log error and fall back to MySQL
-                System.err.println("Elasticsearch search failed, falling back to MySQL: " + e.getMessage());
+                // Log error and fall back
+                logger.warn("Elasticsearch search failed, falling back: {}", e.getMessage());
             }
         }
         
-        // Fallback to MySQL search
-        return productMapper.searchByName(query.trim(), limit);
+        return searchWithoutElasticsearch(query, limit, !localFirst);
+    }
+
+    private List<ProductSummary> searchWithoutElasticsearch(String query, int limit, boolean tryLocal) {
+        if (tryLocal && localSearchIndex.isServing()) {
+            try {
+                return localSearchIndex.search(query.trim(), limit);
+            } catch (Exception e) {
+                logger.warn("Local search failed, falling back to MySQL: {}", e.getMessage());
+            }
+        }
+        
+        // Last resort: MySQL
+        return productMapper.searchSummariesByName(query.trim(), limit,
+                "fulltext".equalsIgnoreCase(mysqlSearchMode) ? "fulltext" : "like");
+    }
+
+    /**
+     * One page of search results plus an opaque cursor for the next.
+     * On Elasticsearch each page continues after the last hit of the previous one (search_after
+     * on score, then id; optionally on a point in time), so page N costs the same as page 1.
+     * The other engines page by offset within the search window. A null or empty cursor
+     * starts from the first page.
+     */
+    @Transactional(readOnly = true)
+    public ProductSlice searchProductsAfter(String query, String cursorToken, Integer size) {
+        if (query == null || query.trim().isEmpty()) {
+            return new ProductSlice(List.of(), null);
+        }
+        String trimmed = query.trim();
+        int limit = size == null || size <= 0 ? 20 : Math.min(size, MAX_SEARCH_PAGE_SIZE);
+        SearchCursor cursor = cursorToken != null && !cursorToken.isEmpty()
+                ? SearchCursor.decode(cursorToken, trimmed)
+                : null;
+
+        boolean localFirst = "local".equals(searchEngine) && localSearchIndex.isServing();
+        if (cursor != null ? cursor.isElasticsearch() : !localFirst) {
+            boolean available = elasticsearchService != null && elasticsearchService.isAvailable();
+            if (available) {
+                try {
+                    ProductSlice slice = searchElasticsearchAfter(trimmed, cursor, limit);
+                    if (slice != null) {
+                        return slice;
+                    }
+                } catch (BadRequestException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (cursor != null) {
+                        throw new ServiceUnavailableException("Search is temporarily unavailable; start the search again", e);
+                    }
+                    logger.warn("Elasticsearch paged search failed, falling back: {}", e.getMessage());
+                }
+            } else if (cursor != null) {
+                throw new ServiceUnavailableException("Search is temporarily unavailable; start the search again");
+            }
+        }
+
+        int offset = cursor != null ? cursor.getOffset() : 0;
+        if (offset + limit >= MAX_SEARCH_WINDOW) {
+            throw new BadRequestException("Cannot page past " + MAX_SEARCH_WINDOW + " results; narrow the search");
+        }
+        // One extra row tells whether another page exists
+        List<ProductSummary> window = searchWithoutElasticsearch(trimmed, offset + limit + 1, true);
+        List<ProductSummary> page = window.size() > offset
+                ? new ArrayList<>(window.subList(offset, Math.min(window.size(), offset + limit)))
+                : new ArrayList<>();
+        String next = window.size() > offset + limit ? SearchCursor.offset(trimmed, offset + limit).encode() : null;
+        return new ProductSlice(page, next);
+    }
+
+    /**
+     * A page from Elasticsearch, or null if a new search found nothing there (so the other
+     * engines get a try, as in searchProducts)
+     */
+    private ProductSlice searchElasticsearchAfter(String query, SearchCursor cursor, int limit) {
+        String pointInTime = cursor != null
+                ? cursor.getPointInTimeId()
+                : searchPointInTime ? elasticsearchService.openPointInTime() : null;
+        Object[] searchAfter = cursor != null ? cursor.getSortValues() : null;
+
+        SearchResponseReader.Result result;
+        try {
+            result = elasticsearchService.searchProductsAfter(query, limit + 1, hydrateSearchResults,
+                    searchAfter, pointInTime);
+        } catch (RuntimeException e) {
+            if (cursor == null && pointInTime != null) {
+                elasticsearchService.closePointInTime(pointInTime);
+            }
+            throw e;
+        }
+        // The point in time id may change from one response to the next
+        if (result.pointInTimeId() != null) {
+            pointInTime = result.pointInTimeId();
+        }
+
+        List<ProductSummary> hits = result.products();
+        if (cursor == null && hits.isEmpty()) {
+            if (pointInTime != null) {
+                elasticsearchService.closePointInTime(pointInTime);
+            }
+            return null;
+        }
+
+        String next = null;
+        if (hits.size() > limit) {
+            // Whole sort values: with a point in time they include the implicit _shard_doc tiebreaker
+            next = SearchCursor.searchAfter(query, result.sortValues().get(limit - 1), pointInTime).encode();
+            hits = hits.subList(0, limit);
+        } else if (pointInTime != null) {
+            elasticsearchService.closePointInTime(pointInTime);
+        }
+        return new ProductSlice(hydrateSearchResults ? hydrate(hits) : new ArrayList<>(hits), next);
+    }
+
+    /**
+     * Autocomplete for the search box, served from the in-memory suggestion index
+     */
+    public List<String> getSearchSuggestions(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0) {
+            return List.of();
+        }
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * Faceted search with paging. Uses Elasticsearch if available, falls back to MySQL
+     * (LIKE matching, same filters and facets, no relevance ranking).
+     */
+    @Transactional(readOnly = true)
+    public ProductSearchResult advancedSearch(ProductSearchRequest request) {
+        int from = request.getFrom() != null ? Math.max(0, request.getFrom()) : 0;
+        int size = request.getSize() != null ? Math.max(1, Math.min(request.getSize(), MAX_SEARCH_PAGE_SIZE)) : 20;
+        if ((long) from + size > MAX_SEARCH_WINDOW) {
+            throw new BadRequestException("Cannot page past " + MAX_SEARCH_WINDOW + " results; narrow the search");
+        }
+
+        return searchResultCache.get(SearchResultCache.key(request, from, size),
+                () -> advancedSearchUncached(request, from, size),
+                result -> result.getProducts().stream().map(ProductSummary::getId).toList());
+    }
+
+    private ProductSearchResult advancedSearchUncached(ProductSearchRequest request, int from, int size) {
+        if (elasticsearchService != null && elasticsearchService.isAvailable()) {
+            try {
+                ProductSearchResult result =
+                        elasticsearchService.advancedSearch(request, from, size, priceBreaks, hydrateSearchResults);
+                if (hydrateSearchResults) {
+                    result.setProducts(hydrate(result.getProducts()));
+                }
+                return result;
+            } catch (Exception e) {
+                logger.warn("Elasticsearch advanced search failed, falling back to MySQL: {}", e.getMessage());
+            }
+        }
+
+        String sort = request.getSort().name();
+        List<ProductSummary> products = productMapper.searchSummariesFiltered(request, sort, from, size);
+        long total = productMapper.countSummariesFiltered(request);
+        List<FacetBucket> categoryFacets = productMapper.findCategoryFacets(request, CATEGORY_FACET_SIZE);
+
+        long[] priceCounts = new long[priceBreaks.size() + 1];
+        for (FacetBucket bucket : productMapper.findPriceFacets(request, priceBreaks)) {
+            priceCounts[Integer.parseInt(bucket.getKey())] = bucket.getCount();
+        }
+        return new ProductSearchResult(products, total, true, from, size, categoryFacets,
+                ProductElasticsearchService.priceFacets(priceBreaks, priceCounts), "mysql");
     }
 
     /**
@@ -107,7 +541,15 @@ public class ProductService {
      */
     @Transactional(readOnly = true)
     public List<String> getAllCategories() {
-        return productMapper.findAllCategories();
+        return categoryCache.getSnapshot().getNames();
+    }
+
+    /**
+     * Get categories with active product counts and the cache version/ETag
+     */
+    @Transactional(readOnly = true)
+    public CategoryCache.Snapshot getCategorySnapshot() {
+        return categoryCache.getSnapshot();
     }
 
     /**
@@ -115,6 +557,10 @@ public class ProductService {
      */
     @Transactional(readOnly = true)
     public int countProducts(String category, BigDecimal minPrice, BigDecimal maxPrice) {
+        Optional<ProductPage> inMemory = catalogEngine.query(category, minPrice, maxPrice, null, null, 0, 1);
+        if (inMemory.isPresent()) {
+            return inMemory.get().getTotal();
+        }
         return productMapper.countProducts(category, minPrice, maxPrice);
     }
 
@@ -143,67 +589,42 @@ public class ProductService {
         }
 
         int result = productMapper.decreaseStock(productId, quantity);
+        if (result > 0) {
+            productChanged(productId, ProductChange.STOCK);
+        }
         return result > 0;
     }
 
     /**
      * Create a new product (for sellers/admin)
-     * Automatically indexes to Elasticsearch
+     * Indexed to Elasticsearch through the search outbox
      */
     public Product createProduct(Product product) {
-        // Save to MySQL first
         productMapper.insert(product);
-        
-        // Index to Elasticsearch if available
-        if (elasticsearchService != null && elasticsearchService.isAvailable()) {
-            try {
-                elasticsearchService.indexProduct(product);
-            } catch (Exception e) {
-                logger.warn("Failed to index new product {} to Elasticsearch: {}", product.getId(), e.getMessage());
-            }
-        }
-        
+        productChanged(product.getId(), ProductChange.LISTING);
         return product;
     }
     
     /**
      * Update an existing product (for sellers/admin)
-     * Automatically updates in Elasticsearch
+     * Re-indexed in Elasticsearch through the search outbox
      */
     public Product updateProduct(Product product) {
-        // Update in MySQL first
         productMapper.update(product);
-        
-        // Update in Elasticsearch if available
-        if (elasticsearchService != null && elasticsearchService.isAvailable()) {
-            try {
-                elasticsearchService.indexProduct(product);
-            } catch (Exception e) {
-                logger.warn("Failed to update product {} in Elasticsearch: {}", product.getId(), e.getMessage());
-            }
-        }
-        
+        productChanged(product.getId(), ProductChange.LISTING);
         return product;
     }
     
     /**
      * Delete a product (for sellers/admin)
-     * Automatically removes from Elasticsearch
+     * Removed from Elasticsearch through the search outbox
      */
     public boolean deleteProduct(Long productId) {
-        // Delete from MySQL first
         int result = productMapper.deleteById(productId);
         boolean deleted = result > 0;
-        
-        // Remove from Elasticsearch if available
-        if (deleted && elasticsearchService != null && elasticsearchService.isAvailable()) {
-            try {
-                elasticsearchService.deleteProduct(productId);
-            } catch (Exception e) {
-                logger.warn("Failed to delete product {} from Elasticsearch: {}", productId, e.getMessage());
-            }
+        if (deleted) {
+            productChanged(productId, ProductChange.LISTING);
         }
-        
         return deleted;
     }
 
@@ -216,6 +637,9 @@ public class ProductService {
         }
 
         int result = productMapper.increaseStock(productId, quantity);
+        if (result > 0) {
+            productChanged(productId, ProductChange.STOCK);
+        }
         return result > 0;
     }
 
@@ -228,6 +652,9 @@ public class ProductService {
         }
 
         int result = productMapper.updateStock(productId, newQuantity);
+        if (result > 0) {
+            productChanged(productId, ProductChange.STOCK);
+        }
         return result > 0;
     }
 
@@ -245,6 +672,7 @@ public class ProductService {
         if (result == 0) {
             throw new RuntimeException("Failed to create product");
         }
+        productChanged(product.getId(), ProductChange.LISTING);
 
         return product;
     }
@@ -273,6 +701,7 @@ public class ProductService {
         if (result == 0) {
             throw new RuntimeException("Failed to update product");
         }
+        productChanged(productId, ProductChange.LISTING);
 
         return Optional.of(product);
     }
@@ -282,6 +711,9 @@ public class ProductService {
      */
     public boolean updateProductRating(Long productId, BigDecimal rating, Integer reviewCount) {
         int result = productMapper.updateRating(productId, rating, reviewCount);
+        if (result > 0) {
+            productChanged(productId, ProductChange.RATING);
+        }
         return result > 0;
     }
 
@@ -290,6 +722,9 @@ public class ProductService {
      */
     public boolean deactivateProduct(Long productId) {
         int result = productMapper.deactivate(productId);
+        if (result > 0) {
+            productChanged(productId, ProductChange.LISTING);
+        }
         return result > 0;
     }
 
@@ -298,7 +733,83 @@ public class ProductService {
      */
     public boolean activateProduct(Long productId) {
         int result = productMapper.activate(productId);
+        if (result > 0) {
+            productChanged(productId, ProductChange.LISTING);
+        }
         return result > 0;
     }
 
-}
\ No newline at end of file
+    /**
+     * Invalidate in-memory state for a product after a write.
+     * The cache entry is dropped immediately and again once the transaction commits,
+     * so a concurrent reader cannot re-cache the pre-commit row; the catalog engine
+     * re-reads the product only after commit. LISTING marks writes that can change which
+     * products match a listing filter (stock and rating changes cannot); they drop all
+     * cached search results, other writes only the results showing this product. Stock
+     * changes leave the suggestion index alone, since name, category and popularity stay.
+     * With the search outbox enabled, every change is also queued there within the same
+     * transaction, so the search index catches up even if Elasticsearch is down when the write
+     * commits. Stock and rating changes are queued as partial updates, held back for a short
+     * window. With it disabled nothing drains the table, so nothing is queued.
+     */
+    private void productChanged(Long productId, ProductChange change) {
+        boolean listingChanged = change == ProductChange.LISTING;
+        if (searchOutboxEnabled) {
+            searchOutboxMapper.insert(productId, !listingChanged, listingChanged ? 0 : partialUpdateDelayMillis);
+        }
+        productCache.invalidate(productId);
+        if (listingChanged) {
+            productCountCache.invalidateAll();
+        }
+        runAfterCommit(() -> {
+            productCache.invalidate(productId);
+            if (listingChanged) {
+                productCountCache.invalidateAll();
+                searchResultCache.invalidateAll();
+                categoryCache.refresh(productId);
+            } else {
+                searchResultCache.invalidate(productId);
+            }
+            catalogEngine.refresh(productId);
+            if (change != ProductChange.STOCK) {
+                suggestionIndex.refresh(productId);
+            }
+            localSearchIndex.refresh(productId);
+        });
+    }
+
+    private String normalizeSortBy(String sortBy) {
+        if (sortBy == null || sortBy.trim().isEmpty()) {
+            return "created_at";
+        }
+        return sortBy.trim();
+    }
+
+    private String normalizeSortOrder(String sortOrder) {
+        if (sortOrder == null || (!sortOrder.equalsIgnoreCase("asc") && !sortOrder.equalsIgnoreCase("desc"))) {
+            return "desc";
+        }
+        return sortOrder.toLowerCase();
+    }
+
+    /**
+     * Run once the surrounding transaction commits. The write has landed by then, so a failure
+     * is logged rather than thrown back at a caller whose change succeeded.
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        logger.error("After-commit refresh failed: ", e);
+                    }
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.shoppingmall.service;
+
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.exception.ResourceNotFoundException;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.mapper.ReindexJobMapper;
+import com.shoppingmall.mapper.SearchOutboxMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ReindexJob;
+import com.shoppingmall.model.ReindexPartition;
+import com.shoppingmall.search.BulkOperation;
+import com.shoppingmall.search.BulkReport;
+import com.shoppingmall.search.ElasticsearchBulkIndexer;
+import com.shoppingmall.search.ProductIndexManager;
+import com.shoppingmall.search.SearchConsistencyChecker;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full search reindex as a background job.
+ *
+ * Every job builds a new timestamped index (see {@link ProductIndexManager}). The products table (active and inactive rows) is split into contiguous id ranges. Each range
+ * is streamed through a MyBatis cursor and sent to Elasticsearch through the bulk indexer, and
+ * ranges run in parallel. After every chunk the partition records the last id Elasticsearch
+ * acknowledged, so a job interrupted by a crash or a cancel resumes from its checkpoints instead
+ * of starting over. Only one job runs at a time per instance.
+ *
+ * When every range is done, rows changed since the job started are re-sent (the stream may have
+ * read them before the change), deletes seen during the build are replayed, the document count
+ * is checked against MySQL, and only then does the alias move to the new index.
+ */
+@Service
+public class ReindexJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReindexJobService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ReindexJobMapper reindexJobMapper;
+    private final ProductMapper productMapper;
+    private final ProductElasticsearchService elasticsearchService;
+    private final ProductIndexManager indexManager;
+    private final SearchOutboxMapper searchOutboxMapper;
+    private final SearchConsistencyChecker consistencyChecker;
+    private final TransactionTemplate streamTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final ExecutorService executor;
+
+    @Value("${reindex.partition-size:20000}")
+    private long partitionSize;
+
+    @Value("${reindex.max-partitions:64}")
+    private int maxPartitions;
+
+    @Value("${reindex.checkpoint-every:2000}")
+    private int checkpointEvery;
+
+    @Value("${reindex.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    @Value("${reindex.catch-up-slack-seconds:60}")
+    private long catchUpSlackSeconds;
+
+    @Value("${reindex.verify-tolerance:0}")
+    private long verifyTolerance;
+
+    private final Object lock = new Object();
+    private volatile RunningJob current;
+    private volatile String rollingBackTo;
+    private volatile Map<String, Object> lastRollback;
+
+    @Autowired
+    public ReindexJobService(ReindexJobMapper reindexJobMapper,
+                             ProductMapper productMapper,
+                             ProductElasticsearchService elasticsearchService,
+                             ProductIndexManager indexManager,
+                             SearchOutboxMapper searchOutboxMapper,
+                             SearchConsistencyChecker consistencyChecker,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${reindex.parallelism:4}") int parallelism) {
+        this.reindexJobMapper = reindexJobMapper;
+        this.productMapper = productMapper;
+        this.elasticsearchService = elasticsearchService;
+        this.indexManager = indexManager;
+        this.searchOutboxMapper = searchOutboxMapper;
+        this.consistencyChecker = consistencyChecker;
+
+        // The cursor holds its connection until the range is drained; checkpoints must commit
+        // on a second connection while the stream is still open
+        this.streamTemplate = new TransactionTemplate(transactionManager);
+        this.streamTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "reindex-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        RunningJob job = current;
+        if (job != null) {
+            // Stop streaming but leave the job RUNNING so the next start resumes it
+            job.shuttingDown = true;
+            job.cancelled = true;
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Jobs left RUNNING by a previous process were interrupted; pick the latest one back up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        List<ReindexJob> orphaned = reindexJobMapper.findJobsByStatus(ReindexJob.RUNNING);
+        for (int i = 0; i < orphaned.size(); i++) {
+            ReindexJob job = orphaned.get(i);
+            if (i == 0 && resumeOnStartup) {
+                logger.info("Resuming reindex job {} interrupted by shutdown", job.getId());
+                try {
+                    indexManager.resumeBuild(job.getTargetIndex());
+                    launch(job);
+                } catch (Exception e) {
+                    logger.error("Could not resume reindex job {}: {}", job.getId(), e.getMessage());
+                    reindexJobMapper.updateJobStatus(job.getId(), ReindexJob.FAILED, truncate(e.getMessage()));
+                }
+            } else {
+                reindexJobMapper.updateJobStatus(job.getId(), ReindexJob.INTERRUPTED, "Interrupted by shutdown");
+            }
+        }
+    }
+
+    /**
+     * Create a job covering the whole products table and start it in the background
+     */
+    public ReindexJob startJob() {
+        synchronized (lock) {
+            ensureIdle();
+
+            ReindexJob job = new ReindexJob();
+            job.setStatus(ReindexJob.RUNNING);
+            job.setTotalProducts(productMapper.countAll());
+            job.setMinId(productMapper.findMinId());
+            job.setMaxId(productMapper.findMaxId());
+
+            List<ReindexPartition> partitions = job.getMinId() != null ? split(job) : List.of();
+            job.setPartitionCount(partitions.size());
+            job.setTargetIndex(indexManager.startBuild());
+
+            try {
+                writeTemplate.executeWithoutResult(status -> {
+                    reindexJobMapper.insertJob(job);
+                    if (!partitions.isEmpty()) {
+                        partitions.forEach(partition -> partition.setJobId(job.getId()));
+                        reindexJobMapper.insertPartitions(partitions);
+                    }
+                });
+            } catch (RuntimeException e) {
+                indexManager.endBuild();
+                throw e;
+            }
+
+            logger.info("Starting reindex job {}: {} products in ids [{}, {}] over {} partitions",
+                    job.getId(), job.getTotalProducts(), job.getMinId(), job.getMaxId(), job.getPartitionCount());
+            launch(job);
+            return job;
+        }
+    }
+
+    /**
+     * Continue a failed, cancelled or interrupted job from its checkpoints
+     */
+    public ReindexJob resumeJob(Long jobId) {
+        synchronized (lock) {
+            ensureIdle();
+            ReindexJob job = getJob(jobId);
+            if (ReindexJob.COMPLETED.equals(job.getStatus())) {
+                throw new BadRequestException("Reindex job " + jobId + " already completed");
+            }
+            try {
+                indexManager.resumeBuild(job.getTargetIndex());
+            } catch (IllegalStateException e) {
+                throw new BadRequestException(e.getMessage() + "; start a new reindex job instead");
+            }
+            reindexJobMapper.updateJobStatus(jobId, ReindexJob.RUNNING, null);
+            job.setStatus(ReindexJob.RUNNING);
+            launch(job);
+            return job;
+        }
+    }
+
+    /**
+     * Stop the running job after the chunk in flight; it keeps its checkpoints and can be resumed
+     */
+    public void cancelJob(Long jobId) {
+        RunningJob job = current;
+        if (job == null || !job.jobId.equals(jobId)) {
+            throw new BadRequestException("Reindex job " + jobId + " is not running");
+        }
+        job.cancelled = true;
+    }
+
+    public ReindexJob getJob(Long jobId) {
+        return reindexJobMapper.findJobById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reindex job not found with id: " + jobId));
+    }
+
+    public List<ReindexJob> getRecentJobs(int limit) {
+        return reindexJobMapper.findRecentJobs(Math.max(1, Math.min(limit, 100)));
+    }
+
+    /**
+     * Progress and throughput of a job, built from its partition checkpoints
+     */
+    public Map<String, Object> getJobStatus(Long jobId) {
+        ReindexJob job = getJob(jobId);
+        List<ReindexPartition> partitions = reindexJobMapper.findPartitionsByJobId(jobId);
+
+        long indexed = 0;
+        long failed = 0;
+        long retried = 0;
+        Map<String, Integer> partitionStates = new LinkedHashMap<>();
+        for (ReindexPartition partition : partitions) {
+            indexed += partition.getIndexedCount();
+            failed += partition.getFailedCount();
+            retried += partition.getRetriedCount();
+            partitionStates.merge(partition.getStatus(), 1, Integer::sum);
+        }
+        long processed = indexed + failed;
+        long total = job.getTotalProducts() != null ? job.getTotalProducts() : 0;
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", job.getId());
+        status.put("status", job.getStatus());
+        status.put("targetIndex", job.getTargetIndex());
+        status.put("totalProducts", total);
+        status.put("indexed", indexed);
+        status.put("failed", failed);
+        status.put("retried", retried);
+        status.put("percentComplete", total > 0 ? Math.min(100.0, Math.round(processed * 1000.0 / total) / 10.0) : 100.0);
+        status.put("partitionCount", job.getPartitionCount());
+        status.put("partitions", partitionStates);
+        status.put("startedAt", job.getStartedAt());
+        status.put("finishedAt", job.getFinishedAt());
+        status.put("errorMessage", job.getErrorMessage());
+
+        RunningJob running = current;
+        if (running != null && running.jobId.equals(jobId)) {
+            // Throughput of this run only, so a resumed job is not credited with earlier runs
+            double seconds = Math.max(0.001, (System.currentTimeMillis() - running.runStartedAt) / 1000.0);
+            double rate = running.processed.get() / seconds;
+            status.put("docsPerSecond", Math.round(rate));
+            status.put("etaSeconds", rate > 0 ? Math.round(Math.max(0, total - processed) / rate) : null);
+        } else if (job.getStartedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : job.getUpdatedAt();
+            long seconds = Math.max(1, Duration.between(job.getStartedAt(), end).getSeconds());
+            status.put("docsPerSecond", processed / seconds);
+        }
+        status.put("partitionDetails", partitions);
+        return status;
+    }
+
+    public boolean isRunning() {
+        return current != null;
+    }
+
+    private void ensureIdle() {
+        RunningJob running = current;
+        if (running != null) {
+            throw new BadRequestException("Reindex job " + running.jobId + " is already running");
+        }
+        if (rollingBackTo != null) {
+            throw new BadRequestException("Search index rollback to " + rollingBackTo + " is in progress");
+        }
+    }
+
+    /**
+     * Contiguous, roughly equal id ranges. Sized by id span rather than row count, so gaps in
+     * the id sequence only make some ranges cheaper.
+     */
+    private List<ReindexPartition> split(ReindexJob job) {
+        long min = job.getMinId();
+        long max = job.getMaxId();
+        long rows = Math.max(1, job.getTotalProducts());
+        int count = (int) Math.max(1, Math.min(maxPartitions, (rows + partitionSize - 1) / partitionSize));
+        long span = max - min + 1;
+        long width = (span + count - 1) / count;
+
+        List<ReindexPartition> partitions = new ArrayList<>(count);
+        long start = min;
+        for (int no = 0; start <= max; no++) {
+            long end = Math.min(max, start + width - 1);
+            partitions.add(new ReindexPartition(null, no, start, end));
+            start = end + 1;
+        }
+        return partitions;
+    }
+
+    private void launch(ReindexJob job) {
+        RunningJob running = new RunningJob(job.getId(), job.getTargetIndex());
+        current = running;
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (ReindexPartition partition : reindexJobMapper.findPartitionsByJobId(job.getId())) {
+            if (!ReindexPartition.DONE.equals(partition.getStatus())) {
+                futures.add(CompletableFuture.supplyAsync(() -> runPartition(partition, running), executor));
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            if (running.shuttingDown) {
+                current = null;
+                return;
+            }
+            long failedPartitions = futures.stream().filter(f -> !f.join()).count();
+            String status;
+            String message = null;
+            if (running.cancelled) {
+                status = ReindexJob.CANCELLED;
+            } else if (failedPartitions > 0) {
+                status = ReindexJob.FAILED;
+                message = failedPartitions + " partition(s) failed; resume to retry them";
+            } else {
+                try {
+                    finishBuild(getJob(job.getId()));
+                    status = ReindexJob.COMPLETED;
+                } catch (Exception e) {
+                    logger.error("Reindex job {} could not be promoted: ", job.getId(), e);
+                    status = ReindexJob.FAILED;
+                    message = truncate("Verification or alias swap failed: " + e.getMessage());
+                }
+            }
+            if (!ReindexJob.COMPLETED.equals(status)) {
+                indexManager.endBuild();
+            }
+            try {
+                reindexJobMapper.updateJobStatus(job.getId(), status, message);
+            } catch (Exception e) {
+                logger.error("Failed to record final status of reindex job {}: ", job.getId(), e);
+            } finally {
+                current = null;
+            }
+            logger.info("Reindex job {} finished as {} ({} products processed this run in {} ms)",
+                    job.getId(), status, running.processed.get(), System.currentTimeMillis() - running.runStartedAt);
+        });
+    }
+
+    /**
+     * Stream one id range into the bulk indexer, checkpointing after each acknowledged chunk
+     *
+     * @return false if the partition failed
+     */
+    private boolean runPartition(ReindexPartition partition, RunningJob running) {
+        try {
+            reindexJobMapper.updatePartitionStatus(partition.getId(), ReindexPartition.RUNNING, null);
+            Boolean finished = streamTemplate.execute(status -> {
+                try (Cursor<Product> cursor = productMapper.streamRange(partition.resumeAfterId(), partition.getEndId())) {
+                    List<BulkOperation> chunk = new ArrayList<>(checkpointEvery);
+                    Long lastId = null;
+                    for (Product product : cursor) {
+                        if (running.cancelled) {
+                            break;
+                        }
+                        chunk.add(elasticsearchService.indexOperation(running.targetIndex, product));
+                        lastId = product.getId();
+                        if (chunk.size() >= checkpointEvery) {
+                            checkpoint(partition, chunk, lastId, running);
+                            chunk.clear();
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        checkpoint(partition, chunk, lastId, running);
+                    }
+                    return !running.cancelled;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to close product cursor", e);
+                }
+            });
+
+            String state = Boolean.TRUE.equals(finished) ? ReindexPartition.DONE : ReindexPartition.PENDING;
+            reindexJobMapper.updatePartitionStatus(partition.getId(), state, null);
+            return true;
+        } catch (Exception e) {
+            logger.error("Reindex job {} partition {} failed: ", partition.getJobId(), partition.getPartitionNo(), e);
+            reindexJobMapper.updatePartitionStatus(partition.getId(), ReindexPartition.FAILED, truncate(e.getMessage()));
+            return false;
+        }
+    }
+
+    private void checkpoint(ReindexPartition partition, List<BulkOperation> chunk, Long lastId, RunningJob running) {
+        BulkReport report = elasticsearchService.getBulkIndexer().execute(chunk);
+        if (report.getSucceeded() == 0 && report.getFailed() > 0) {
+            // Nothing got through: treat as an outage and keep the checkpoint where it was
+            throw new IllegalStateException("Bulk chunk rejected entirely: " + report.getErrors());
+        }
+        writeTemplate.executeWithoutResult(status -> reindexJobMapper.checkpointPartition(
+                partition.getId(), lastId, report.getSucceeded(), report.getFailed(), report.getRetried()));
+        running.processed.addAndGet(report.getSucceeded() + report.getFailed());
+    }
+
+    /**
+     * Catch up, verify and promote a fully loaded build index. Dual-writing continues until
+     * after the alias swap so no change falls between the two indices.
+     *
+     * The dual-write and the deletes recorded during the build live in this instance only: other
+     * instances write just to the alias, and a build resumed after a restart starts with no
+     * recorded deletes. A consistency pass over the whole index repairs what that missed before
+     * the alias moves, as a rollback does.
+     */
+    private void finishBuild(ReindexJob job) {
+        String index = job.getTargetIndex();
+        ElasticsearchBulkIndexer.Session session = elasticsearchService.getBulkIndexer().openSession();
+
+        LocalDateTime since = job.getStartedAt().minusSeconds(catchUpSlackSeconds);
+        streamTemplate.executeWithoutResult(status -> {
+            try (Cursor<Product> cursor = productMapper.streamUpdatedSince(since)) {
+                for (Product product : cursor) {
+                    session.add(elasticsearchService.indexOperation(index, product));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to close product cursor", e);
+            }
+        });
+        BulkReport catchUp = session.finish();
+        if (catchUp.getFailed() > 0) {
+            throw new IllegalStateException("Catch-up pass failed for " + catchUp.getFailed() + " products");
+        }
+
+        Map<String, Object> reconciled = consistencyChecker.reconcile(index);
+        if (!"consistent".equals(reconciled.get("status")) && !"repaired".equals(reconciled.get("status"))) {
+            throw new IllegalStateException("Could not reconcile " + index + " with MySQL: " + reconciled);
+        }
+        // Deletes that arrived after the consistency pass compared their range
+        Set<Long> deleted = indexManager.getDeletedDuringBuild();
+        List<BulkOperation> deletes = new ArrayList<>();
+        for (Long productId : deleted) {
+            deletes.add(BulkOperation.delete(index, productId));
+        }
+        if (!deletes.isEmpty() && elasticsearchService.getBulkIndexer().execute(deletes).getFailed() > 0) {
+            throw new IllegalStateException("Replaying deletes into " + index + " failed");
+        }
+
+        List<String> mismatches = indexManager.verifyMapping(index);
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Index " + index + " mapping does not match the template: " + mismatches);
+        }
+
+        long indexed = indexManager.refreshAndCount(index);
+        long expected = productMapper.countAll();
+        long pending = searchOutboxMapper.countPending();
+        if (Math.abs(indexed - expected) > pending + verifyTolerance) {
+            throw new IllegalStateException("Index " + index + " holds " + indexed + " documents but MySQL has "
+                    + expected + " products (" + pending + " outbox events pending)");
+        }
+
+        indexManager.applyServingSettings(index);
+        indexManager.swapAlias(index);
+        indexManager.endBuild();
+        logger.info("Reindex job {} promoted {} ({} documents, {} caught up, {} deletes replayed, consistency pass: {})",
+                job.getId(), index, indexed, catchUp.getSucceeded(), deleted.size(), reconciled);
+
+        try {
+            indexManager.prune();
+        } catch (Exception e) {
+            logger.warn("Pruning old search indices failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move the alias back to the previous index, brought up to date first. After a swap only the
+     * new index gets writes, so the previous one is missing every change since. While it is
+     * dual-written like a build, rows updated since the serving index was created are replayed
+     * into it, a consistency pass over the whole index removes the products deleted in the
+     * meantime (and fixes anything else that drifted), and only then does the alias move.
+     * That takes as long as the replay and the consistency pass, so it runs in the background.
+     *
+     * @return the rollback's status, also served by getRollbackStatus() until it finishes
+     */
+    public Map<String, Object> startRollback() {
+        synchronized (lock) {
+            ensureIdle();
+            String current = indexManager.getServingIndex();
+            String target = indexManager.getRollbackTarget();
+            indexManager.attachBuild(target);
+            rollingBackTo = target;
+
+            Map<String, Object> status = Collections.synchronizedMap(new LinkedHashMap<>());
+            status.put("status", ReindexJob.RUNNING);
+            status.put("from", current);
+            status.put("to", target);
+            status.put("startedAt", LocalDateTime.now());
+            lastRollback = status;
+            try {
+                executor.execute(() -> rollback(status, current, target));
+            } catch (RuntimeException e) {
+                indexManager.endBuild();
+                rollingBackTo = null;
+                throw e;
+            }
+            return getRollbackStatus();
+        }
+    }
+
+    /**
+     * The running or last finished rollback; null if none ran since startup
+     */
+    public Map<String, Object> getRollbackStatus() {
+        Map<String, Object> status = lastRollback;
+        if (status == null) {
+            return null;
+        }
+        synchronized (status) {
+            return new LinkedHashMap<>(status);
+        }
+    }
+
+    private void rollback(Map<String, Object> status, String current, String target) {
+        try {
+            LocalDateTime createdAt = indexManager.getCreatedAt(current);
+            long replayed = 0;
+            if (createdAt != null) {
+                ElasticsearchBulkIndexer.Session session = elasticsearchService.getBulkIndexer().openSession();
+                LocalDateTime since = createdAt.minusSeconds(catchUpSlackSeconds);
+                streamTemplate.executeWithoutResult(tx -> {
+                    try (Cursor<Product> cursor = productMapper.streamUpdatedSince(since)) {
+                        for (Product product : cursor) {
+                            session.add(elasticsearchService.indexOperation(target, product));
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Failed to close product cursor", e);
+                    }
+                });
+                BulkReport report = session.finish();
+                if (report.getFailed() > 0) {
+                    throw new IllegalStateException("Rollback catch-up failed for " + report.getFailed() + " products");
+                }
+                replayed = report.getSucceeded();
+            }
+
+            Map<String, Object> reconciled = consistencyChecker.reconcile(target);
+            if (!"consistent".equals(reconciled.get("status")) && !"repaired".equals(reconciled.get("status"))) {
+                throw new IllegalStateException("Could not reconcile " + target + " with MySQL: " + reconciled);
+            }
+            // Deletes that arrived after the consistency pass compared their range
+            List<BulkOperation> deletes = new ArrayList<>();
+            for (Long productId : indexManager.getDeletedDuringBuild()) {
+                deletes.add(BulkOperation.delete(target, productId));
+            }
+            if (!deletes.isEmpty() && elasticsearchService.getBulkIndexer().execute(deletes).getFailed() > 0) {
+                throw new IllegalStateException("Replaying deletes into " + target + " failed");
+            }
+
+            indexManager.swapAlias(target);
+            logger.info("Rolled search alias back from {} to {} ({} rows replayed, consistency pass: {})",
+                    current, target, replayed, reconciled);
+            status.put("replayed", replayed);
+            status.put("consistency", reconciled);
+            status.put("status", ReindexJob.COMPLETED);
+        } catch (Exception e) {
+            logger.error("Rolling search alias back from {} to {} failed: ", current, target, e);
+            status.put("error", truncate(e.getMessage()));
+            status.put("status", ReindexJob.FAILED);
+        } finally {
+            indexManager.endBuild();
+            rollingBackTo = null;
+            status.put("finishedAt", LocalDateTime.now());
+        }
+    }
+
+    private static String truncate(String message) {
+        String text = String.valueOf(message);
+        return text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+
+    private static final class RunningJob {
+        final Long jobId;
+        final String targetIndex;
+        final long runStartedAt = System.currentTimeMillis();
+        final AtomicLong processed = new AtomicLong();
+        volatile boolean cancelled;
+        volatile boolean shuttingDown;
+
+        RunningJob(Long jobId, String targetIndex) {
+            this.jobId = jobId;
+            this.targetIndex = targetIndex;
+        }
+    }
+}
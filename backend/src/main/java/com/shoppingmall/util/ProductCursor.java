@@ -0,0 +1,147 @@
+package com.shoppingmall.util;
+
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.model.ProductSummary;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for product listings.
+ *
+ * Encodes the sort mode together with the sort key and id of the last row of a page, so the
+ * next page can be fetched with a seek predicate instead of an OFFSET.
+ * Format (before base64url): v1|{sort}|{id}|{value}; a NULL rating or created_at is empty.
+ */
+public class ProductCursor {
+
+    public static final String SORT_CREATED_AT = "created_at";
+    public static final String SORT_PRICE_ASC = "price_asc";
+    public static final String SORT_PRICE_DESC = "price_desc";
+    public static final String SORT_RATING = "rating";
+    public static final String SORT_NAME = "name";
+
+    private static final String VERSION = "v1";
+
+    private final String sort;
+    private final Long id;
+    private final BigDecimal price;
+    private final BigDecimal rating;
+    private final String name;
+    private final LocalDateTime createdAt;
+
+    private ProductCursor(String sort, Long id, BigDecimal price, BigDecimal rating, String name, LocalDateTime createdAt) {
+        this.sort = sort;
+        this.id = id;
+        this.price = price;
+        this.rating = rating;
+        this.name = name;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Map the listing sortBy/sortOrder parameters to a keyset sort mode,
+     * following the same rules as ProductMapper.findAllSummaries
+     */
+    public static String sortOf(String sortBy, String sortOrder) {
+        if ("price".equals(sortBy)) {
+            return "asc".equals(sortOrder) ? SORT_PRICE_ASC : SORT_PRICE_DESC;
+        }
+        if ("rating".equals(sortBy)) {
+            return SORT_RATING;
+        }
+        if ("name".equals(sortBy)) {
+            return SORT_NAME;
+        }
+        return SORT_CREATED_AT;
+    }
+
+    /**
+     * Build the cursor that points just past the given product
+     */
+    public static ProductCursor after(String sort, ProductSummary last) {
+        return new ProductCursor(sort, last.getId(),
+                last.getPrice(),
+                last.getRating(),
+                last.getName(),
+                last.getCreatedAt());
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                throw new BadRequestException("Invalid cursor");
+            }
+
+            String sort = parts[1];
+            Long id = Long.valueOf(parts[2]);
+            String value = parts[3];
+            switch (sort) {
+                case SORT_PRICE_ASC:
+                case SORT_PRICE_DESC:
+                    return new ProductCursor(sort, id, new BigDecimal(value), null, null, null);
+                case SORT_RATING:
+                    return new ProductCursor(sort, id, null, value.isEmpty() ? null : new BigDecimal(value), null, null);
+                case SORT_NAME:
+                    return new ProductCursor(sort, id, null, null, value, null);
+                case SORT_CREATED_AT:
+                    return new ProductCursor(sort, id, null, null, null,
+                            value.isEmpty() ? null : LocalDateTime.parse(value));
+                default:
+                    throw new BadRequestException("Invalid cursor");
+            }
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String value;
+        switch (sort) {
+            case SORT_PRICE_ASC:
+            case SORT_PRICE_DESC:
+                value = price.toPlainString();
+                break;
+            case SORT_RATING:
+                value = rating != null ? rating.toPlainString() : "";
+                break;
+            case SORT_NAME:
+                value = name;
+                break;
+            default:
+                value = createdAt != null ? createdAt.toString() : "";
+        }
+        String raw = VERSION + "|" + sort + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getRating() {
+        return rating;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
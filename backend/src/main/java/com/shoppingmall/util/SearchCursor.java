@@ -0,0 +1,161 @@
+package com.shoppingmall.util;
+
+import com.shoppingmall.exception.BadRequestException;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Opaque cursor for paging through search results.
+ *
+ * An Elasticsearch cursor carries the sort values of the last hit of a page exactly as the hit
+ * returned them, for search_after, and the point in time the search is pinned to if there is one.
+ * With a point in time Elasticsearch appends its own _shard_doc tiebreaker to the sort, so the
+ * values are kept whole rather than as the sort fields asked for. When the search ran on a
+ * fallback engine the cursor is a plain offset. Both remember a hash of the query so a cursor
+ * can't be replayed against a different search.
+ * Format (before base64url): v2|es|{queryHash}|{pitId}|{value},{value}... with each value tagged
+ * l: (integer), d: (decimal), s: (URL-encoded string) or n (null); or v1|offset|{queryHash}|{offset}.
+ * v1 Elasticsearch cursors (v1|es|{queryHash}|{score}|{id}|{pitId}) are still read.
+ */
+public class SearchCursor {
+
+    private static final String VERSION = "v1";
+    private static final String SORT_VALUES_VERSION = "v2";
+    private static final String ELASTICSEARCH = "es";
+    private static final String OFFSET = "offset";
+
+    private final String queryHash;
+    private final boolean elasticsearch;
+    private final Object[] sortValues;
+    private final String pointInTimeId;
+    private final int offset;
+
+    private SearchCursor(String queryHash, boolean elasticsearch, Object[] sortValues, String pointInTimeId, int offset) {
+        this.queryHash = queryHash;
+        this.elasticsearch = elasticsearch;
+        this.sortValues = sortValues;
+        this.pointInTimeId = pointInTimeId;
+        this.offset = offset;
+    }
+
+    /**
+     * Cursor for the Elasticsearch hit with the given sort values (numbers, strings or nulls)
+     */
+    public static SearchCursor searchAfter(String query, Object[] sortValues, String pointInTimeId) {
+        return new SearchCursor(hash(query), true, sortValues.clone(), pointInTimeId, 0);
+    }
+
+    public static SearchCursor offset(String query, int offset) {
+        return new SearchCursor(hash(query), false, null, null, offset);
+    }
+
+    public static SearchCursor decode(String token, String query) {
+        SearchCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 6);
+            if (parts.length < 4) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            if (SORT_VALUES_VERSION.equals(parts[0]) && ELASTICSEARCH.equals(parts[1]) && parts.length == 5) {
+                cursor = new SearchCursor(parts[2], true, decodeValues(parts[4]), parts[3].isEmpty() ? null : parts[3], 0);
+            } else if (VERSION.equals(parts[0]) && ELASTICSEARCH.equals(parts[1]) && parts.length == 6) {
+                Object[] sortValues = {Double.parseDouble(parts[3]), Long.parseLong(parts[4])};
+                cursor = new SearchCursor(parts[2], true, sortValues, parts[5].isEmpty() ? null : parts[5], 0);
+            } else if (VERSION.equals(parts[0]) && OFFSET.equals(parts[1]) && parts.length == 4) {
+                cursor = new SearchCursor(parts[2], false, null, null, Math.max(0, Integer.parseInt(parts[3])));
+            } else {
+                throw new BadRequestException("Invalid cursor");
+            }
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor", e);
+        }
+
+        if (!cursor.queryHash.equals(hash(query))) {
+            throw new BadRequestException("Cursor does not match the search query");
+        }
+        return cursor;
+    }
+
+    public String encode() {
+        String raw = elasticsearch
+                ? SORT_VALUES_VERSION + "|" + ELASTICSEARCH + "|" + queryHash + "|"
+                        + (pointInTimeId != null ? pointInTimeId : "") + "|" + encodeValues(sortValues)
+                : VERSION + "|" + OFFSET + "|" + queryHash + "|" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isElasticsearch() {
+        return elasticsearch;
+    }
+
+    /**
+     * The last hit's sort values, to pass back as search_after unchanged
+     */
+    public Object[] getSortValues() {
+        return sortValues != null ? sortValues.clone() : null;
+    }
+
+    public String getPointInTimeId() {
+        return pointInTimeId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    private static String encodeValues(Object[] values) {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            Object value = values[i];
+            if (value == null) {
+                encoded.append('n');
+            } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+                encoded.append("d:").append(value);
+            } else if (value instanceof Number) {
+                encoded.append("l:").append(value);
+            } else {
+                encoded.append("s:").append(URLEncoder.encode(value.toString(), StandardCharsets.UTF_8));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static Object[] decodeValues(String encoded) {
+        if (encoded.isEmpty()) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        String[] parts = encoded.split(",");
+        Object[] values = new Object[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.equals("n")) {
+                values[i] = null;
+            } else if (part.startsWith("d:")) {
+                values[i] = Double.parseDouble(part.substring(2));
+            } else if (part.startsWith("l:")) {
+                values[i] = Long.parseLong(part.substring(2));
+            } else if (part.startsWith("s:")) {
+                values[i] = URLDecoder.decode(part.substring(2), StandardCharsets.UTF_8);
+            } else {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+        return values;
+    }
+
+    private static String hash(String query) {
+        String normalized = query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return Integer.toHexString(normalized.hashCode());
+    }
+}
@@ -106,6 +106,66 @@ CREATE TABLE IF NOT EXISTS refresh_tokens (
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Search reindex jobs; partitions checkpoint the last id acknowledged by Elasticsearch
+CREATE TABLE IF NOT EXISTS reindex_jobs (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    target_index VARCHAR(255) NOT NULL,
+    min_id BIGINT,
+    max_id BIGINT,
+    total_products BIGINT NOT NULL DEFAULT 0,
+    partition_count INT NOT NULL DEFAULT 0,
+    error_message VARCHAR(1000),
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP NULL
+);
+
+CREATE TABLE IF NOT EXISTS reindex_partitions (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    job_id BIGINT NOT NULL,
+    partition_no INT NOT NULL,
+    start_id BIGINT NOT NULL,
+    end_id BIGINT NOT NULL,
+    last_id BIGINT,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    indexed_count BIGINT NOT NULL DEFAULT 0,
+    failed_count BIGINT NOT NULL DEFAULT 0,
+    retried_count BIGINT NOT NULL DEFAULT 0,
+    error_message VARCHAR(1000),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_reindex_partitions_job_no (job_id, partition_no),
+    FOREIGN KEY (job_id) REFERENCES reindex_jobs(id) ON DELETE CASCADE
+);
+
+-- Transactional outbox: product ids whose search document must be re-synced.
+-- Rows are written in the same transaction as the product change and drained by SearchOutboxDispatcher.
+CREATE TABLE IF NOT EXISTS search_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id BIGINT NOT NULL,
+    -- Stock/rating-only change: synced as a partial document update
+    partial BOOLEAN NOT NULL DEFAULT FALSE,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    available_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_search_outbox_available (available_at, id),
+    INDEX idx_search_outbox_product (product_id, id)
+);
+
+-- Outbox events that kept failing past search.outbox.max-attempts, kept for inspection until
+-- search.outbox.dead-letter-retention-days; the consistency checker repairs their products.
+CREATE TABLE IF NOT EXISTS search_outbox_dead (
+    id BIGINT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    partial BOOLEAN NOT NULL DEFAULT FALSE,
+    attempts INT NOT NULL,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP(3) NULL,
+    dead_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_search_outbox_dead_at (dead_at)
+);
+
 -- Create indexes for better performance
 CREATE INDEX idx_users_email ON users(email);
 CREATE INDEX idx_products_category ON products(category);
@@ -114,4 +174,23 @@ CREATE INDEX idx_cart_user_id ON cart(user_id);
 CREATE INDEX idx_cart_items_cart_id ON cart_items(cart_id);
 CREATE INDEX idx_orders_user_id ON orders(user_id);
 CREATE INDEX idx_orders_status ON orders(status);
-CREATE INDEX idx_order_items_order_id ON order_items(order_id);
\ No newline at end of file
+CREATE INDEX idx_order_items_order_id ON order_items(order_id);
+
+-- Composite indexes backing keyset pagination on product listings (sort key + id tiebreaker)
+CREATE INDEX idx_products_active_created ON products(is_active, created_at, id);
+CREATE INDEX idx_products_active_price ON products(is_active, price, id);
+CREATE INDEX idx_products_active_rating ON products(is_active, rating, id);
+CREATE INDEX idx_products_active_name ON products(is_active, name, id);
+CREATE INDEX idx_products_category_created ON products(category, is_active, created_at, id);
+CREATE INDEX idx_products_category_price ON products(category, is_active, price, id);
+CREATE INDEX idx_products_category_rating ON products(category, is_active, rating, id);
+CREATE INDEX idx_products_category_name ON products(category, is_active, name, id);
+
+-- Catch-up pass of search reindex jobs
+CREATE INDEX idx_products_updated ON products(updated_at);
+
+-- MySQL full-text search fallback (search.mysql.mode=fulltext). The ngram parser splits text into
+-- two-character tokens, so Korean/CJK names without spaces still match; the name-only index lets
+-- relevance count name matches twice.
+CREATE FULLTEXT INDEX ft_products_name_description ON products(name, description) WITH PARSER ngram;
+CREATE FULLTEXT INDEX ft_products_name ON products(name) WITH PARSER ngram;
@@ -0,0 +1,88 @@
+package com.shoppingmall.cache;
+
+import com.shoppingmall.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class ProductCacheTest {
+
+    private final ProductCache cache = new ProductCache(true, 100, 300, 10);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadIsNotCachedWhenItsProductIsInvalidatedMeanwhile() {
+        cache.get(1L, id -> {
+            cache.invalidate(1L);
+            return load(id);
+        });
+        cache.get(1L, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidatingAnotherProductDoesNotBlockCaching() {
+        cache.get(1L, id -> {
+            cache.invalidate(2L);
+            return load(id);
+        });
+        cache.get(1L, this::load);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateAllDuringALoadPreventsCaching() {
+        cache.get(1L, id -> {
+            cache.invalidateAll();
+            return load(id);
+        });
+        cache.get(1L, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void batchLoadSkipsOnlyTheInvalidatedIds() {
+        cache.getAll(List.of(1L, 2L), ids -> {
+            cache.invalidate(2L);
+            return loadAll(ids);
+        });
+        cache.getAll(List.of(1L, 2L), this::loadAll);
+
+        // The second call only had to load product 2
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void handsOutCopies() {
+        Product first = cache.get(1L, this::load).orElseThrow();
+        Product second = cache.get(1L, this::load).orElseThrow();
+
+        assertNotSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    private Optional<Product> load(Long id) {
+        loads.incrementAndGet();
+        Product product = new Product();
+        product.setId(id);
+        product.setName("product " + id);
+        return Optional.of(product);
+    }
+
+    private List<Product> loadAll(List<Long> ids) {
+        List<Product> products = new ArrayList<>();
+        for (Long id : ids) {
+            products.add(load(id).orElseThrow());
+        }
+        return products;
+    }
+}
@@ -0,0 +1,52 @@
+package com.shoppingmall.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductCountCacheTest {
+
+    private final ProductCountCache cache = new ProductCountCache(true, 2, 60);
+
+    @Test
+    void storesACountComputedWithinOneGeneration() {
+        long generation = cache.generation();
+        cache.put("a", generation, 42);
+
+        assertEquals(42, cache.get("a"));
+    }
+
+    @Test
+    void dropsACountComputedAcrossAnInvalidation() {
+        long generation = cache.generation();
+        cache.invalidateAll();
+        cache.put("a", generation, 42);
+
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void evictsOneEntryWhenFull() {
+        long generation = cache.generation();
+        cache.put("a", generation, 1);
+        cache.put("b", generation, 2);
+        cache.put("c", generation, 3);
+
+        assertEquals(2, cache.getStats().get("size"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+        assertEquals(3, cache.get("c"));
+    }
+
+    @Test
+    void replacingAKeyDoesNotEvict() {
+        long generation = cache.generation();
+        cache.put("a", generation, 1);
+        cache.put("b", generation, 2);
+        cache.put("a", generation, 10);
+
+        assertEquals(10, cache.get("a"));
+        assertEquals(2, cache.get("b"));
+        assertEquals(0L, cache.getStats().get("evictions"));
+    }
+}
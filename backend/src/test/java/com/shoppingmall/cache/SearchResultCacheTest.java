@@ -0,0 +1,114 @@
+package com.shoppingmall.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchResultCacheTest {
+
+    private final SearchResultCache cache = new SearchResultCache(true, 100, 60);
+
+    @Test
+    void concurrentMissesShareOneSearch() throws Exception {
+        CountDownLatch searching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger searches = new AtomicInteger();
+        List<Long> result = List.of(1L, 2L);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<List<Long>> first = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+                searches.incrementAndGet();
+                searching.countDown();
+                await(release);
+                return result;
+            }, ids -> ids), threads);
+            assertTrue(searching.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<List<Long>> second = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+                searches.incrementAndGet();
+                return List.of(3L);
+            }, ids -> ids), threads);
+            while (!Long.valueOf(1).equals(cache.getStats().get("coalescedLoads"))) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertSame(result, first.get(5, TimeUnit.SECONDS));
+            assertSame(result, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, searches.get());
+            assertEquals(1L, cache.getStats().get("loads"));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void resultIsNotCachedWhenOneOfItsProductsChangesDuringTheSearch() {
+        AtomicInteger searches = new AtomicInteger();
+
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            cache.invalidate(2L);
+            return List.of(1L, 2L);
+        }, ids -> ids);
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            return List.of(1L, 2L);
+        }, ids -> ids);
+
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void writesToOtherProductsDoNotBlockCaching() {
+        AtomicInteger searches = new AtomicInteger();
+
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            cache.invalidate(3L);
+            return List.of(1L, 2L);
+        }, ids -> ids);
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            return List.of(1L, 2L);
+        }, ids -> ids);
+
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void invalidateAllDuringTheSearchPreventsCaching() {
+        AtomicInteger searches = new AtomicInteger();
+
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            cache.invalidateAll();
+            return List.of(1L);
+        }, ids -> ids);
+        cache.get("k", () -> {
+            searches.incrementAndGet();
+            return List.of(1L);
+        }, ids -> ids);
+
+        assertEquals(2, searches.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
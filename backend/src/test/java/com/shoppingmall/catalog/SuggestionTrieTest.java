@@ -0,0 +1,122 @@
+package com.shoppingmall.catalog;
+
+import com.shoppingmall.catalog.SuggestionTrie.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionTrieTest {
+
+    @Test
+    void ranksByPopularityThenText() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                new Entry("Phone Case", 5),
+                new Entry("Phone Charger", 20),
+                new Entry("Phone Stand", 5),
+                new Entry("Laptop", 100)), 10);
+
+        assertEquals(List.of("Phone Charger", "Phone Case", "Phone Stand"), trie.suggest("pho", 10));
+        assertEquals(List.of("Phone Charger"), trie.suggest("PHONE", 1));
+        assertEquals(List.of(), trie.suggest("tablet", 10));
+        assertEquals(List.of(), trie.suggest("  ", 10));
+    }
+
+    @Test
+    void matchesInnerWordsBelowFirstWord() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                new Entry("Smart Phone X", 10),
+                new Entry("Phone Holder", 8),
+                new Entry("Headphones", 50)), 10);
+
+        // "Smart Phone X" scores 10 * 0.5 as an inner-word match, "Headphones" doesn't match at a word
+        assertEquals(List.of("Phone Holder", "Smart Phone X"), trie.suggest("phone", 10));
+        assertEquals(List.of("Smart Phone X"), trie.suggest("smart ph", 10));
+    }
+
+    @Test
+    void normalizesCaseAccentsAndPunctuation() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                new Entry("Café Crème", 3),
+                new Entry("cafe-creme", 1),
+                new Entry("무선 이어폰", 2)), 10);
+
+        assertEquals(1, trie.suggest("cafe creme", 10).size());
+        assertEquals(List.of("Café Crème"), trie.suggest("CAFE", 10));
+        assertEquals(List.of("무선 이어폰"), trie.suggest("이어", 10));
+    }
+
+    @Test
+    void verifiesQueriesLongerThanKeys() {
+        String longName = "Extraordinarily Comfortable Ergonomic Office Chair Deluxe";
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                new Entry(longName, 1),
+                new Entry("Extraordinarily Comfortable Ergonomic Office Desk", 2)), 10);
+
+        assertEquals(List.of(longName), trie.suggest("extraordinarily comfortable ergonomic office chair", 10));
+    }
+
+    @Test
+    void patchAddsReplacesAndRemoves() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                new Entry("Desk Lamp", 5),
+                new Entry("Desk Chair", 3),
+                new Entry("Desk Mat", 1)), 10);
+
+        SuggestionTrie patched = trie.patch(
+                List.of(new Entry("Desk Mat", 9), new Entry("Desk Fan", 4)),
+                List.of("desk lamp"));
+
+        assertEquals(List.of("Desk Mat", "Desk Fan", "Desk Chair"), patched.suggest("desk", 10));
+        assertEquals(3, patched.size());
+        assertEquals(3, patched.changeCount());
+        // The original stays as it was
+        assertEquals(List.of("Desk Lamp", "Desk Chair", "Desk Mat"), trie.suggest("desk", 10));
+
+        SuggestionTrie readded = patched.patch(List.of(new Entry("Desk Lamp", 2)), List.of("desk fan"));
+        assertEquals(List.of("Desk Mat", "Desk Chair", "Desk Lamp"), readded.suggest("desk", 10));
+        // Desk Fan was never in the base, so removing it leaves nothing to mask
+        assertEquals(2, readded.changeCount());
+    }
+
+    @Test
+    void patchedTrieAnswersLikeAFreshBuild() {
+        Random random = new Random(7);
+        String[] words = {"wireless", "premium", "compact", "smart", "phone", "keyboard", "lamp", "chair", "이어폰"};
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            entries.add(new Entry(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + i, random.nextInt(1000)));
+        }
+        SuggestionTrie trie = SuggestionTrie.build(entries, 10);
+
+        List<Entry> current = new ArrayList<>(entries);
+        for (int round = 0; round < 5; round++) {
+            List<Entry> upserts = new ArrayList<>();
+            List<String> removals = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                int at = random.nextInt(current.size());
+                if (i % 4 == 0) {
+                    removals.add(current.remove(at).text());
+                } else {
+                    Entry changed = new Entry(current.get(at).text(), random.nextInt(1000));
+                    current.set(at, changed);
+                    upserts.add(changed);
+                }
+            }
+            trie = trie.patch(upserts, removals);
+        }
+
+        SuggestionTrie fresh = SuggestionTrie.build(current, 10);
+        assertEquals(fresh.size(), trie.size());
+        for (String query : List.of("w", "wireless", "smart p", "phone", "lamp c", "이", "12")) {
+            List<String> expected = fresh.suggest(query, 10);
+            assertTrue(!expected.isEmpty(), query);
+            assertEquals(expected, trie.suggest(query, 10), query);
+        }
+    }
+}
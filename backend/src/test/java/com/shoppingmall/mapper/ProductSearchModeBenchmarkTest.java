@@ -0,0 +1,215 @@
+package com.shoppingmall.mapper;
+
+import com.shoppingmall.model.ProductSummary;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the LIKE and FULLTEXT modes of ProductMapper.searchSummariesByName on a synthetic
+ * catalog. Needs a MySQL 8 server started with --innodb-ft-enable-stopword=OFF (see
+ * docker-compose.yml) and only runs when asked for:
+ *
+ *   mvn test -Dtest=ProductSearchModeBenchmarkTest -Dbenchmark.mysql.url=jdbc:mysql://localhost:3306/shopping_mall
+ *            -Dbenchmark.mysql.user=root -Dbenchmark.mysql.password=... [-Dbenchmark.mysql.rows=200000]
+ *
+ * The products table and its FULLTEXT indexes are created from schema.sql in a scratch database
+ * (benchmark.mysql.database, default shopping_mall_benchmark), which is dropped afterwards. The
+ * queries are the mapper's own, run through MyBatis with ProductMapper.xml.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark.mysql.url", matches = ".+")
+class ProductSearchModeBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchModeBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int LIMIT = 50;
+
+    private static final String[] ADJECTIVES = {"Wireless", "Premium", "Compact", "Organic", "Smart", "Classic",
+            "Portable", "Ergonomic", "Vintage", "Ultra", "무선", "프리미엄", "휴대용"};
+    private static final String[] NOUNS = {"Headphones", "Keyboard", "Backpack", "Coffee Beans", "Desk Lamp",
+            "Running Shoes", "Water Bottle", "Monitor", "Blender", "Notebook", "이어폰", "키보드", "텀블러", "운동화"};
+    private static final List<String> QUERIES = List.of("wireless", "keyboard", "coffee", "desk lamp", "이어폰", "무선 키보드");
+
+    private String database;
+    private Connection connection;
+    private SqlSession session;
+
+    @BeforeAll
+    void createCatalog() throws SQLException, IOException {
+        String url = System.getProperty("benchmark.mysql.url");
+        String separator = url.contains("?") ? "&" : "?";
+        connection = DriverManager.getConnection(url + separator + "rewriteBatchedStatements=true",
+                System.getProperty("benchmark.mysql.user", "root"), System.getProperty("benchmark.mysql.password", ""));
+        database = System.getProperty("benchmark.mysql.database", "shopping_mall_benchmark");
+        int rows = Integer.getInteger("benchmark.mysql.rows", 200_000);
+
+        List<String> indexes = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + database);
+            statement.execute("CREATE DATABASE " + database + " CHARACTER SET utf8mb4");
+            connection.setCatalog(database);
+            for (String ddl : schemaStatements()) {
+                String upper = ddl.toUpperCase(Locale.ROOT);
+                if (upper.startsWith("CREATE TABLE IF NOT EXISTS PRODUCTS ")) {
+                    statement.execute(ddl);
+                } else if (upper.startsWith("CREATE FULLTEXT INDEX") && upper.contains(" ON PRODUCTS(")) {
+                    indexes.add(ddl);
+                }
+            }
+        }
+
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO products (name, description, price, category) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                String noun = pick(NOUNS, random);
+                insert.setString(1, pick(ADJECTIVES, random) + " " + noun + " " + i);
+                insert.setString(2, "A " + pick(ADJECTIVES, random).toLowerCase() + " take on the "
+                        + pick(NOUNS, random).toLowerCase() + ", built to last. 상품 설명 " + pick(NOUNS, random));
+                insert.setBigDecimal(3, BigDecimal.valueOf(1 + random.nextInt(50_000), 2));
+                insert.setString(4, noun);
+                insert.addBatch();
+                if (i % 5_000 == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+
+        // Built after loading, which is much faster than maintaining them row by row
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : indexes) {
+                statement.execute(ddl);
+            }
+        }
+        session = openSession();
+        logger.info("Loaded {} synthetic products into {}", rows, database);
+    }
+
+    @AfterAll
+    void dropCatalog() throws SQLException {
+        if (session != null) {
+            session.close();
+        }
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP DATABASE IF EXISTS " + database);
+            }
+            connection.close();
+        }
+    }
+
+    @Test
+    void compareLikeAndFulltext() {
+        ProductMapper mapper = session.getMapper(ProductMapper.class);
+        logger.info(String.format("%-14s %12s %8s %12s %8s", "query", "like ms", "hits", "fulltext ms", "hits"));
+        double likeTotal = 0;
+        double fulltextTotal = 0;
+        for (String query : QUERIES) {
+            Result like = measure(mapper, query, "like");
+            Result fulltext = measure(mapper, query, "fulltext");
+            likeTotal += like.medianMillis();
+            fulltextTotal += fulltext.medianMillis();
+            logger.info(String.format("%-14s %12.2f %8d %12.2f %8d", query, like.medianMillis(), like.hits(),
+                    fulltext.medianMillis(), fulltext.hits()));
+            assertTrue(fulltext.hits() > 0, "FULLTEXT mode found nothing for " + query);
+        }
+        logger.info(String.format("median total: like %.2f ms, fulltext %.2f ms", likeTotal, fulltextTotal));
+    }
+
+    private record Result(double medianMillis, int hits) {
+    }
+
+    private Result measure(ProductMapper mapper, String query, String mode) {
+        double[] timings = new double[MEASURED_ROUNDS];
+        int hits = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<ProductSummary> found = mapper.searchSummariesByName(query, LIMIT, mode);
+            hits = found.size();
+            if (round >= WARMUP_ROUNDS) {
+                timings[round - WARMUP_ROUNDS] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+        }
+        Arrays.sort(timings);
+        return new Result(timings[MEASURED_ROUNDS / 2], hits);
+    }
+
+    /**
+     * A MyBatis session on the benchmark connection with ProductMapper.xml loaded, configured like
+     * application.yml. The session cache is per statement so repeated rounds really hit MySQL.
+     */
+    private SqlSession openSession() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setDefaultFetchSize(100);
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.getTypeAliasRegistry().registerAliases("com.shoppingmall.model");
+        String resource = "mapper/ProductMapper.xml";
+        try (InputStream mapperXml = new ClassPathResource(resource).getInputStream()) {
+            new XMLMapperBuilder(mapperXml, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
+        return factory.openSession(connection);
+    }
+
+    /**
+     * schema.sql split into statements, with comments removed
+     */
+    private static List<String> schemaStatements() throws IOException {
+        String script = StreamUtils.copyToString(new ClassPathResource("schema.sql").getInputStream(), StandardCharsets.UTF_8);
+        StringBuilder withoutComments = new StringBuilder(script.length());
+        for (String line : script.split("\n")) {
+            int comment = line.indexOf("--");
+            withoutComments.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+        }
+        List<String> statements = new ArrayList<>();
+        for (String statement : withoutComments.toString().split(";")) {
+            String trimmed = statement.trim().replaceAll("\\s+", " ");
+            if (!trimmed.isEmpty()) {
+                statements.add(trimmed);
+            }
+        }
+        return statements;
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
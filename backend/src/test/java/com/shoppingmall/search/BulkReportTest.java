@@ -0,0 +1,130 @@
+package com.shoppingmall.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class BulkReportTest {
+
+    private static final String INDEX = "products";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+    private ElasticsearchBulkIndexer indexer;
+
+    @AfterEach
+    void shutdown() {
+        if (indexer != null) {
+            indexer.shutdown();
+        }
+    }
+
+    @Test
+    void countsEverythingWhenTheResponseHasNoErrors() {
+        indexer = indexer(0);
+        respond("{\"errors\":false}");
+
+        BulkReport report = indexer.execute(List.of(index(1), index(2), BulkOperation.delete(INDEX, 3)));
+
+        server.verify();
+        assertEquals(3, report.getSucceeded());
+        assertEquals(0, report.getFailed());
+        assertEquals(1, report.getRequests());
+    }
+
+    @Test
+    void sortsItemsByStatusAndOperation() {
+        indexer = indexer(0);
+        respond("""
+                {"errors": true, "items": [
+                  {"index": {"status": 201}},
+                  {"delete": {"status": 404}},
+                  {"update": {"status": 404, "error": {"type": "document_missing_exception", "reason": "[4]: missing"}}},
+                  {"index": {"status": 400, "error": {"type": "mapper_parsing_exception", "reason": "failed to parse field [price]"}}},
+                  {"index": {"status": 429, "error": {"type": "es_rejected_execution_exception", "reason": "queue full"}}}
+                ]}
+                """);
+
+        BulkReport report = indexer.execute(List.of(index(1), BulkOperation.delete(INDEX, 2),
+                BulkOperation.update(INDEX, 4, Map.of("stockQuantity", 3)), index(5), index(6)));
+
+        server.verify();
+        assertEquals(2, report.getSucceeded());
+        assertEquals(Set.of("4"), report.getMissingIds());
+        assertEquals(2, report.getFailed());
+        assertEquals(Set.of("5", "6"), report.getFailedIds());
+        Map<String, Object> error = report.getErrors().get(0);
+        assertEquals("5", error.get("id"));
+        assertEquals(400, error.get("status"));
+        assertEquals("mapper_parsing_exception: failed to parse field [price]", error.get("reason"));
+        assertEquals(429, report.getErrors().get(1).get("status"));
+    }
+
+    @Test
+    void resendsOnlyRejectedItems() {
+        indexer = indexer(1);
+        respond("""
+                {"errors": true, "items": [
+                  {"index": {"status": 200}},
+                  {"index": {"status": 429, "error": {"type": "es_rejected_execution_exception", "reason": "queue full"}}}
+                ]}
+                """);
+        respond("{\"errors\":false}");
+
+        BulkReport report = indexer.execute(List.of(index(1), index(2)));
+
+        server.verify();
+        assertEquals(2, report.getSucceeded());
+        assertEquals(1, report.getRetried());
+        assertEquals(2, report.getRequests());
+        assertEquals(0, report.getFailed());
+    }
+
+    @Test
+    void failsEveryItemOfARejectedRequest() {
+        indexer = indexer(3);
+        server.expect(method(HttpMethod.POST)).andRespond(withStatus(HttpStatus.BAD_REQUEST));
+
+        BulkReport report = indexer.execute(List.of(index(1), index(2)));
+
+        server.verify();
+        assertEquals(2, report.getFailed());
+        assertEquals(Set.of("1", "2"), report.getFailedIds());
+        assertEquals(0, report.getRetried());
+        assertTrue(report.getErrors().stream().allMatch(error -> error.get("status").equals(400)));
+    }
+
+    private ElasticsearchBulkIndexer indexer(int maxRetries) {
+        ElasticsearchHttpClients httpClients = mock(ElasticsearchHttpClients.class);
+        when(httpClients.bulk()).thenReturn(restTemplate);
+        ElasticsearchBulkIndexer bulkIndexer = new ElasticsearchBulkIndexer(
+                new ElasticsearchCircuitBreaker(5, 60_000), httpClients, 1000, 5_242_880, 1, maxRetries, 1);
+        ReflectionTestUtils.setField(bulkIndexer, "elasticsearchUrl", "http://elasticsearch:9200");
+        return bulkIndexer;
+    }
+
+    private void respond(String body) {
+        server.expect(method(HttpMethod.POST)).andRespond(withSuccess(body, MediaType.APPLICATION_JSON));
+    }
+
+    private static BulkOperation index(long id) {
+        return BulkOperation.index(INDEX, id, Map.of("id", id, "name", "Product " + id));
+    }
+}
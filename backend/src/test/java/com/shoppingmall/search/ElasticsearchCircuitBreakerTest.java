@@ -0,0 +1,111 @@
+package com.shoppingmall.search;
+
+import com.shoppingmall.search.ElasticsearchCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElasticsearchCircuitBreakerTest {
+
+    private static final IOException FAILURE = new IOException("connection refused");
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(3, 60_000);
+
+        breaker.recordFailure(FAILURE);
+        breaker.recordFailure(FAILURE);
+        breaker.recordSuccess();
+        breaker.recordFailure(FAILURE);
+        breaker.recordFailure(FAILURE);
+        assertEquals(State.CLOSED, breaker.getState());
+
+        breaker.recordFailure(FAILURE);
+        assertEquals(State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1L, breaker.getStats().get("rejectedCalls"));
+    }
+
+    @Test
+    void letsOneTrialThroughAfterTheOpenPeriod() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(1, 0);
+        breaker.recordFailure(FAILURE);
+        assertEquals(State.OPEN, breaker.getState());
+
+        // isOpen has no side effects: the state only moves when a call asks to go through
+        assertFalse(breaker.isOpen());
+        assertEquals(State.OPEN, breaker.getState());
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void failedTrialReopens() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(1, 0);
+        breaker.recordFailure(FAILURE);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure(FAILURE);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void skippedTrialFreesTheSlot() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(1, 0);
+        breaker.recordFailure(FAILURE);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSkipped();
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void probeSuccessClosesButKeepsTheFailureCountOfAClosedCircuit() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(3, 60_000);
+        breaker.recordFailure(FAILURE);
+        breaker.recordFailure(FAILURE);
+        breaker.recordProbeSuccess();
+        breaker.recordFailure(FAILURE);
+        assertEquals(State.OPEN, breaker.getState());
+
+        breaker.recordProbeSuccess();
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getStats().get("consecutiveFailures"));
+    }
+
+    @Test
+    void probeFailuresCountTowardsOpening() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(2, 60_000);
+        breaker.recordProbeFailure(new IllegalStateException("cluster status red"));
+        assertEquals(State.CLOSED, breaker.getState());
+
+        breaker.recordProbeFailure(new IllegalStateException("cluster status red"));
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals("IllegalStateException: cluster status red", breaker.getStats().get("lastFailure"));
+    }
+
+    @Test
+    void probeFailureLeavesTheTrialInFlight() {
+        ElasticsearchCircuitBreaker breaker = new ElasticsearchCircuitBreaker(1, 0);
+        breaker.recordFailure(FAILURE);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordProbeFailure(FAILURE);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+}
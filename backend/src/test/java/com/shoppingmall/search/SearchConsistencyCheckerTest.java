@@ -0,0 +1,204 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.model.IdRangeChecksum;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.service.ProductElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives a check against a fake MySQL and Elasticsearch that agree on every product except
+ * the ones left out of the index, and checks that only the ranges holding those are narrowed
+ * down and compared document by document.
+ */
+class SearchConsistencyCheckerTest {
+
+    private static final long MAX_ID = 5000;
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final ProductMapper productMapper = mock(ProductMapper.class);
+    private final ProductElasticsearchService elasticsearchService = mock(ProductElasticsearchService.class);
+    private final ElasticsearchBulkIndexer bulkIndexer = mock(ElasticsearchBulkIndexer.class);
+    private final ProductIndexManager indexManager = mock(ProductIndexManager.class);
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Ids that MySQL has but the index lacks */
+    private final Set<Long> missingFromIndex = new HashSet<>();
+    private final List<Long> reindexed = new ArrayList<>();
+    private int aggregationRequests;
+    private int documentRequests;
+
+    private SearchConsistencyChecker checker;
+
+    @BeforeEach
+    void setUp() {
+        ElasticsearchHttpClients httpClients = mock(ElasticsearchHttpClients.class);
+        when(httpClients.admin()).thenReturn(restTemplate);
+        when(indexManager.getAlias()).thenReturn("products");
+        when(elasticsearchService.isAvailable()).thenReturn(true);
+        when(elasticsearchService.getBulkIndexer()).thenReturn(bulkIndexer);
+        when(elasticsearchService.indexOperations(any())).thenAnswer(invocation -> {
+            Long id = invocation.<Product>getArgument(0).getId();
+            reindexed.add(id);
+            return List.of(BulkOperation.index("products", id, Map.of()));
+        });
+        when(bulkIndexer.execute(any())).thenReturn(mock(BulkReport.class));
+
+        when(productMapper.findMaxId()).thenReturn(MAX_ID);
+        when(productMapper.findIdRangeChecksums(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<IdRangeChecksum> checksums = new ArrayList<>();
+            for (IdRangeChecksum range : invocation.<List<IdRangeChecksum>>getArgument(0)) {
+                IdRangeChecksum checksum = new IdRangeChecksum(range.getFromId(), range.getToId());
+                checksum.setCount(rowsIn(range.getFromId(), range.getToId()));
+                checksums.add(checksum);
+            }
+            return checksums;
+        });
+        when(productMapper.findSyncFieldsInIdRanges(anyList())).thenAnswer(invocation -> {
+            List<Product> rows = new ArrayList<>();
+            for (IdRangeChecksum range : invocation.<List<IdRangeChecksum>>getArgument(0)) {
+                for (long id = Math.max(1, range.getFromId()); id < range.getToId() && id <= MAX_ID; id++) {
+                    rows.add(product(id));
+                }
+            }
+            return rows;
+        });
+        when(productMapper.findByIdsIncludingInactive(anyList())).thenAnswer(invocation ->
+                invocation.<List<Long>>getArgument(0).stream().map(SearchConsistencyCheckerTest::product).toList());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(search(invocation.<HttpEntity<Map<String, Object>>>getArgument(2).getBody())));
+
+        checker = new SearchConsistencyChecker(productMapper, elasticsearchService, indexManager, httpClients,
+                mock(ExecutorService.class), 1024, 64, 16, 10_000);
+    }
+
+    @Test
+    void consistentIndexStopsAtTheTopLevel() {
+        Map<String, Object> report = checker.check();
+
+        assertEquals("consistent", report.get("status"));
+        assertEquals(1, report.get("levels"));
+        // Five ranges of 1024 ids up to the max id, plus the open range above it
+        assertEquals(6L, report.get("rangesCompared"));
+        assertEquals(0L, report.get("documentsCompared"));
+        assertEquals(1, aggregationRequests);
+        assertEquals(0, documentRequests);
+    }
+
+    @Test
+    void narrowsAMismatchDownToOneLeafRange() {
+        missingFromIndex.add(3000L);
+
+        Map<String, Object> report = checker.check();
+
+        assertEquals("repaired", report.get("status"));
+        // [2048, 3072) mismatches at the top level, then only [2944, 3008) among its 16 children
+        assertEquals(2, report.get("levels"));
+        assertEquals(22L, report.get("rangesCompared"));
+        assertEquals(1, report.get("mismatchedLeafRanges"));
+        assertEquals(64L, report.get("documentsCompared"));
+        assertEquals(1L, report.get("missingFromIndex"));
+        assertEquals(0L, report.get("staleInIndex"));
+        assertEquals(List.of(3000L), reindexed);
+        assertEquals(2, aggregationRequests);
+        assertEquals(1, documentRequests);
+    }
+
+    @Test
+    void narrowsSeparateMismatchesIndependently() {
+        missingFromIndex.add(10L);
+        missingFromIndex.add(4500L);
+
+        Map<String, Object> report = checker.check();
+
+        assertEquals(2, report.get("mismatchedLeafRanges"));
+        // [4096, 5001) is narrower than the others, so it splits into 15 children
+        assertEquals(6L + 16 + 15, report.get("rangesCompared"));
+        assertEquals(2L, report.get("missingFromIndex"));
+        assertEquals(List.of(10L, 4500L), reindexed);
+    }
+
+    private long rowsIn(long fromId, long toId) {
+        return Math.max(0, Math.min(toId, MAX_ID + 1) - Math.max(fromId, 1));
+    }
+
+    private long indexedIn(long fromId, long toId) {
+        long missing = missingFromIndex.stream().filter(id -> id >= fromId && id < toId).count();
+        return rowsIn(fromId, toId) - missing;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String search(Map<String, Object> body) throws JsonProcessingException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (body.containsKey("aggs")) {
+            aggregationRequests++;
+            Map<String, Object> range = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) body.get("aggs"))
+                    .get("ranges")).get("range");
+            List<Map<String, Object>> buckets = new ArrayList<>();
+            for (Map<String, Object> spec : (List<Map<String, Object>>) range.get("ranges")) {
+                long from = ((Number) spec.get("from")).longValue();
+                long to = ((Number) spec.get("to")).longValue();
+                Map<String, Object> zero = Map.of("value", 0.0);
+                buckets.add(Map.of("key", spec.get("key"), "doc_count", indexedIn(from, to),
+                        "stock", zero, "price", zero, "updated", zero, "active", zero));
+            }
+            response.put("aggregations", Map.of("ranges", Map.of("buckets", buckets)));
+        } else {
+            documentRequests++;
+            List<Object> should = (List<Object>) ((Map<String, Object>) ((Map<String, Object>) body.get("query"))
+                    .get("bool")).get("should");
+            List<Map<String, Object>> hits = new ArrayList<>();
+            for (Object clause : should) {
+                Map<String, Object> bounds = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) clause)
+                        .get("range")).get("id");
+                long from = ((Number) bounds.get("gte")).longValue();
+                long to = ((Number) bounds.get("lt")).longValue();
+                for (long id = Math.max(1, from); id < to && id <= MAX_ID; id++) {
+                    if (!missingFromIndex.contains(id)) {
+                        hits.add(Map.of("_id", String.valueOf(id), "_source", Map.of("id", id, "price", 10.0,
+                                "stockQuantity", 5, "isActive", true, "updatedAt", UPDATED_AT.toString())));
+                    }
+                }
+            }
+            response.put("hits", Map.of("hits", hits));
+        }
+        return objectMapper.writeValueAsString(response);
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(5);
+        product.setIsActive(true);
+        product.setUpdatedAt(UPDATED_AT);
+        return product;
+    }
+}
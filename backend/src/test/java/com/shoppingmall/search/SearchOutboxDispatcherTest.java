@@ -0,0 +1,200 @@
+package com.shoppingmall.search;
+
+import com.shoppingmall.cache.SearchResultCache;
+import com.shoppingmall.mapper.ProductMapper;
+import com.shoppingmall.mapper.SearchOutboxMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.SearchOutboxEvent;
+import com.shoppingmall.service.ProductElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchOutboxDispatcherTest {
+
+    private static final long BASE_DELAY_MS = 1_000;
+    private static final long MAX_DELAY_MS = 300_000;
+
+    private final SearchOutboxMapper outboxMapper = mock(SearchOutboxMapper.class);
+    private final ProductMapper productMapper = mock(ProductMapper.class);
+    private final ProductElasticsearchService elasticsearchService = mock(ProductElasticsearchService.class);
+    private final ElasticsearchBulkIndexer bulkIndexer = mock(ElasticsearchBulkIndexer.class);
+    private final SearchResultCache searchResultCache = mock(SearchResultCache.class);
+
+    /** Operations of each bulk call, rendered as "type:id" */
+    private final List<List<String>> sent = new ArrayList<>();
+    private final Deque<BulkReport> reports = new ArrayDeque<>();
+
+    private SearchOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        BulkReport succeeded = report(Set.of(), Set.of(), List.of());
+        when(elasticsearchService.isAvailable()).thenReturn(true);
+        when(elasticsearchService.getBulkIndexer()).thenReturn(bulkIndexer);
+        when(elasticsearchService.indexOperations(any())).thenAnswer(invocation ->
+                List.of(BulkOperation.index("products", invocation.<Product>getArgument(0).getId(), Map.of())));
+        when(elasticsearchService.partialUpdateOperations(any())).thenAnswer(invocation ->
+                List.of(BulkOperation.update("products", invocation.<Product>getArgument(0).getId(), Map.of())));
+        when(elasticsearchService.deleteOperations(any())).thenAnswer(invocation ->
+                List.of(BulkOperation.delete("products", invocation.<Long>getArgument(0))));
+        when(bulkIndexer.execute(anyCollection())).thenAnswer(invocation -> {
+            List<String> operations = new ArrayList<>();
+            for (BulkOperation operation : invocation.<Collection<BulkOperation>>getArgument(0)) {
+                operations.add(operation.getType().name().toLowerCase() + ":" + operation.getId());
+            }
+            sent.add(operations);
+            return reports.isEmpty() ? succeeded : reports.poll();
+        });
+
+        dispatcher = new SearchOutboxDispatcher(outboxMapper, productMapper, elasticsearchService, searchResultCache);
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 500);
+        ReflectionTestUtils.setField(dispatcher, "maxBatchesPerRun", 20);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseDelayMillis", BASE_DELAY_MS);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxDelayMillis", MAX_DELAY_MS);
+        ReflectionTestUtils.setField(dispatcher, "visibilityDelayMillis", 0L);
+    }
+
+    @Test
+    void coalescesEventsIntoOneActionPerProduct() {
+        when(outboxMapper.findDue(500)).thenReturn(List.of(
+                event(1, 10, false), event(2, 10, true), event(3, 11, true), event(4, 11, true), event(5, 12, false)));
+        when(productMapper.findByIdsIncludingInactive(List.of(10L, 11L, 12L))).thenReturn(List.of(product(10), product(11)));
+
+        dispatcher.dispatch();
+
+        // 10 has a full-document event, 11 only stock/rating changes, 12 is gone
+        assertEquals(List.of(List.of("index:10", "update:11", "delete:12")), sent);
+        verify(outboxMapper).deleteUpTo(Set.of(10L, 12L), 5L, false);
+        verify(outboxMapper).deleteUpTo(Set.of(11L), 5L, true);
+        verify(outboxMapper, never()).markFailed(anyCollection(), anyLong(), anyString(), anyLong(), anyLong());
+
+        Map<String, Object> stats = dispatcher.getStats();
+        assertEquals(5L, stats.get("dispatchedEvents"));
+        assertEquals(1L, stats.get("indexedProducts"));
+        assertEquals(1L, stats.get("partiallyUpdatedProducts"));
+        assertEquals(1L, stats.get("deletedProducts"));
+    }
+
+    @Test
+    void reschedulesFailedProductsWithBackoff() {
+        when(outboxMapper.findDue(500)).thenReturn(List.of(event(7, 1, false), event(8, 2, false)));
+        when(productMapper.findByIdsIncludingInactive(List.of(1L, 2L))).thenReturn(List.of(product(1), product(2)));
+        String reason = "mapper_parsing_exception: " + "x".repeat(600);
+        reports.add(report(Set.of("2"), Set.of(), List.of(Map.of("id", "2", "status", 400, "reason", reason))));
+
+        dispatcher.dispatch();
+
+        verify(outboxMapper).deleteUpTo(Set.of(1L), 8L, false);
+        verify(outboxMapper).markFailed(Set.of(2L), 8L, reason.substring(0, 500), BASE_DELAY_MS, MAX_DELAY_MS);
+        assertEquals(1L, dispatcher.getStats().get("failedProducts"));
+        assertEquals(reason, dispatcher.getStats().get("lastError"));
+    }
+
+    @Test
+    void sendsTheFullDocumentWhenAPartialUpdateFindsNone() {
+        when(outboxMapper.findDue(500)).thenReturn(List.of(event(3, 5, true)));
+        when(productMapper.findByIdsIncludingInactive(List.of(5L))).thenReturn(List.of(product(5)));
+        reports.add(report(Set.of(), Set.of("5"), List.of()));
+
+        dispatcher.dispatch();
+
+        assertEquals(List.of(List.of("update:5"), List.of("index:5")), sent);
+        // Synced in full now, so the delete no longer has to spare full-document events
+        verify(outboxMapper).deleteUpTo(Set.of(5L), 3L, false);
+        assertEquals(1L, dispatcher.getStats().get("partialFallbacks"));
+    }
+
+    @Test
+    void keepsReadingWhileBatchesAreFull() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        when(outboxMapper.findDue(2))
+                .thenReturn(List.of(event(1, 1, false), event(2, 2, false)))
+                .thenReturn(List.of(event(3, 3, false)));
+        when(productMapper.findByIdsIncludingInactive(any())).thenReturn(List.of());
+
+        dispatcher.dispatch();
+
+        assertEquals(List.of(List.of("delete:1", "delete:2"), List.of("delete:3")), sent);
+    }
+
+    @Test
+    void waitsWhileElasticsearchIsUnavailable() {
+        when(elasticsearchService.isAvailable()).thenReturn(false);
+
+        dispatcher.dispatch();
+
+        verify(outboxMapper, never()).findDue(anyInt());
+        verify(outboxMapper, never()).deleteUpTo(anyCollection(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    void movesExhaustedEventsToTheDeadLetterTable() {
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 20);
+        ReflectionTestUtils.setField(dispatcher, "deadLetterRetentionDays", 7);
+        when(outboxMapper.copyExhaustedToDead(20)).thenReturn(3);
+
+        dispatcher.retireExhausted();
+
+        verify(outboxMapper).deleteDeadLettered();
+        verify(outboxMapper).purgeDeadBefore(7);
+        assertEquals(3L, dispatcher.getStats().get("deadLetteredEvents"));
+    }
+
+    @Test
+    void invalidatesCachedResultsOnTheNextRun() {
+        when(outboxMapper.findDue(500)).thenReturn(List.of(event(1, 10, false))).thenReturn(List.of());
+        when(productMapper.findByIdsIncludingInactive(List.of(10L))).thenReturn(List.of(product(10)));
+
+        dispatcher.dispatch();
+        verify(searchResultCache, never()).invalidate(eq(10L));
+
+        dispatcher.dispatch();
+        verify(searchResultCache).invalidate(10L);
+    }
+
+    private static SearchOutboxEvent event(long id, long productId, boolean partial) {
+        SearchOutboxEvent event = new SearchOutboxEvent();
+        event.setId(id);
+        event.setProductId(productId);
+        event.setPartial(partial);
+        return event;
+    }
+
+    private static Product product(long id) {
+        Product product = new Product("Product " + id, "", BigDecimal.TEN, "General");
+        product.setId(id);
+        return product;
+    }
+
+    private static BulkReport report(Set<String> failedIds, Set<String> missingIds, List<Map<String, Object>> errors) {
+        BulkReport report = mock(BulkReport.class);
+        when(report.getFailedIds()).thenReturn(failedIds);
+        when(report.getMissingIds()).thenReturn(missingIds);
+        when(report.getErrors()).thenReturn(errors);
+        return report;
+    }
+}
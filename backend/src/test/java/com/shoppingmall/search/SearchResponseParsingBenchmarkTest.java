@@ -0,0 +1,175 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shoppingmall.model.Product;
+import com.shoppingmall.model.ProductSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding an Elasticsearch _search response the old way (body as String, JsonNode
+ * tree, copy into Product, then ProductSummary) with SearchResponseReader streaming straight into
+ * ProductSummary, each over a full _source and over the summary fields the search now asks for.
+ * The GC profiler's gc.alloc.rate.norm column is the allocation per decoded response.
+ * Only runs when asked for:
+ *
+ *   mvn test -Dtest=SearchResponseParsingBenchmarkTest -Dbenchmark.jmh=true
+ *
+ * Runs inside the test JVM (no forks), which is enough to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchResponseParsingBenchmarkTest {
+
+    @Param({"50"})
+    public int hits;
+
+    @Param({"200", "2000"})
+    public int descriptionLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SearchResponseReader reader = new SearchResponseReader(objectMapper.getFactory());
+    private byte[] fullSourceBody;
+    private byte[] summarySourceBody;
+
+    @Setup
+    public void createResponses() throws IOException {
+        fullSourceBody = objectMapper.writeValueAsBytes(response(true));
+        summarySourceBody = objectMapper.writeValueAsBytes(response(false));
+    }
+
+    @Benchmark
+    public List<ProductSummary> treeFullSource() throws IOException {
+        return parseTree(new String(fullSourceBody, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public List<ProductSummary> treeSummarySource() throws IOException {
+        return parseTree(new String(summarySourceBody, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public List<ProductSummary> streamingFullSource() throws IOException {
+        return reader.read(new ByteArrayInputStream(fullSourceBody)).products();
+    }
+
+    @Benchmark
+    public List<ProductSummary> streamingSummarySource() throws IOException {
+        return reader.read(new ByteArrayInputStream(summarySourceBody)).products();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.jmh", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SearchResponseParsingBenchmarkTest.class.getName())
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .build()).run();
+    }
+
+    /**
+     * What ProductElasticsearchService did before reading responses as a stream
+     */
+    private List<ProductSummary> parseTree(String responseBody) throws IOException {
+        List<ProductSummary> products = new ArrayList<>();
+        JsonNode root = objectMapper.readTree(responseBody);
+        for (JsonNode hit : root.path("hits").path("hits")) {
+            JsonNode source = hit.path("_source");
+            Product product = new Product();
+            product.setId(source.path("id").asLong());
+            product.setName(source.path("name").asText());
+            product.setDescription(source.path("description").asText());
+            product.setPrice(source.path("price").decimalValue());
+            product.setCategory(source.path("category").asText());
+            product.setImageUrl(source.path("imageUrl").asText());
+            product.setStockQuantity(source.path("stockQuantity").asInt());
+            product.setRating(source.path("rating").decimalValue());
+            product.setReviewCount(source.path("reviewCount").asInt());
+            product.setIsActive(source.path("isActive").asBoolean());
+            products.add(new ProductSummary(product));
+        }
+        return products;
+    }
+
+    private Map<String, Object> response(boolean fullSource) {
+        Random random = new Random(42);
+        List<Object> hitList = new ArrayList<>();
+        for (int i = 1; i <= hits; i++) {
+            Map<String, Object> source = new LinkedHashMap<>();
+            source.put("id", i);
+            source.put("name", "Wireless Headphones " + i);
+            source.put("price", BigDecimal.valueOf(1 + random.nextInt(50_000), 2));
+            source.put("category", "Electronics");
+            source.put("imageUrl", "https://images.example.com/products/" + i + ".jpg");
+            source.put("stockQuantity", random.nextInt(500));
+            source.put("rating", BigDecimal.valueOf(random.nextInt(51), 1));
+            source.put("reviewCount", random.nextInt(2_000));
+            source.put("createdAt", LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i).toString());
+            if (fullSource) {
+                source.put("description", description(random));
+                source.put("isActive", true);
+                source.put("updatedAt", LocalDateTime.of(2024, 6, 1, 0, 0).plusMinutes(i).toString());
+            }
+
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("_index", "products-20240601000000");
+            hit.put("_id", String.valueOf(i));
+            hit.put("_score", 12.5 - i * 0.1);
+            hit.put("_source", source);
+            hitList.add(hit);
+        }
+
+        Map<String, Object> hitsSection = new LinkedHashMap<>();
+        hitsSection.put("total", Map.of("value", 1_234, "relation", "eq"));
+        hitsSection.put("max_score", 12.4);
+        hitsSection.put("hits", hitList);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("took", 7);
+        response.put("timed_out", false);
+        response.put("_shards", Map.of("total", 1, "successful", 1, "skipped", 0, "failed", 0));
+        response.put("hits", hitsSection);
+        return response;
+    }
+
+    private String description(Random random) {
+        String[] words = {"premium", "sound", "battery", "comfortable", "noise", "cancelling", "bluetooth",
+                "lightweight", "travel", "case", "무선", "이어폰"};
+        StringBuilder description = new StringBuilder(descriptionLength + 16);
+        while (description.length() < descriptionLength) {
+            description.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return description.toString();
+    }
+}
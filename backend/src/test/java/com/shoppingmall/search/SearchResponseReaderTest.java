@@ -0,0 +1,152 @@
+package com.shoppingmall.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.shoppingmall.model.FacetBucket;
+import com.shoppingmall.model.ProductSummary;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchResponseReaderTest {
+
+    private static final String RESPONSE = """
+            {
+              "pit_id": "pit-2",
+              "took": 3,
+              "timed_out": false,
+              "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+              "hits": {
+                "total": {"value": 1234, "relation": "gte"},
+                "max_score": 2.5,
+                "hits": [
+                  {
+                    "_index": "products_v2",
+                    "_id": "17",
+                    "_score": 2.5,
+                    "_source": {
+                      "id": 17,
+                      "name": "Wireless Keyboard",
+                      "description": "skipped by the reader",
+                      "price": 49.90,
+                      "category": "Electronics",
+                      "imageUrl": null,
+                      "stockQuantity": 12,
+                      "rating": "4.50",
+                      "reviewCount": 8,
+                      "createdAt": "2024-03-01T12:30:15",
+                      "tags": ["not", "a", "summary", "field"],
+                      "dimensions": {"width": 40}
+                    },
+                    "sort": [2.5, "Wireless Keyboard", null, 17]
+                  },
+                  {
+                    "_index": "products_v2",
+                    "_id": "23",
+                    "_score": 1.0,
+                    "sort": [1.0, 23]
+                  }
+                ]
+              },
+              "aggregations": {
+                "categories": {
+                  "doc_count": 40,
+                  "categories": {
+                    "doc_count_error_upper_bound": 0,
+                    "buckets": [
+                      {"key": "Electronics", "doc_count": 30},
+                      {"key": "Office", "doc_count": 10}
+                    ]
+                  }
+                },
+                "price_ranges": {
+                  "buckets": [
+                    {"key": "*-50.0", "to": 50.0, "doc_count": 25},
+                    {"key": "50.0-*", "from": 50.0, "doc_count": 15}
+                  ]
+                }
+              }
+            }
+            """;
+
+    private final SearchResponseReader reader = new SearchResponseReader(new JsonFactory());
+
+    @Test
+    void readsHitsWithSourceAndSortValues() throws IOException {
+        SearchResponseReader.Result result = read(RESPONSE);
+
+        assertEquals(2, result.products().size());
+        ProductSummary first = result.products().get(0);
+        assertEquals(17L, first.getId());
+        assertEquals("Wireless Keyboard", first.getName());
+        assertEquals(new BigDecimal("49.90"), first.getPrice());
+        assertEquals("Electronics", first.getCategory());
+        assertNull(first.getImageUrl());
+        assertEquals(12, first.getStockQuantity());
+        assertEquals(new BigDecimal("4.50"), first.getRating());
+        assertEquals(8, first.getReviewCount());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 12, 30, 15), first.getCreatedAt());
+        assertArrayEquals(new Object[]{2.5, "Wireless Keyboard", null, 17}, result.sortValues().get(0));
+    }
+
+    @Test
+    void keepsHitsWithoutSourceAsIds() throws IOException {
+        SearchResponseReader.Result result = read(RESPONSE);
+
+        ProductSummary second = result.products().get(1);
+        assertEquals(23L, second.getId());
+        assertNull(second.getName());
+        assertArrayEquals(new Object[]{1.0, 23}, result.sortValues().get(1));
+    }
+
+    @Test
+    void readsTotalPointInTimeAndBuckets() throws IOException {
+        SearchResponseReader.Result result = read(RESPONSE);
+
+        assertEquals(1234, result.total());
+        assertFalse(result.totalExact());
+        assertEquals("pit-2", result.pointInTimeId());
+
+        List<FacetBucket> categories = result.buckets("categories");
+        assertEquals(2, categories.size());
+        assertEquals("Electronics", categories.get(0).getKey());
+        assertEquals(30, categories.get(0).getCount());
+        assertEquals("Office", categories.get(1).getKey());
+
+        List<FacetBucket> prices = result.buckets("price_ranges");
+        assertEquals(List.of("*-50.0", "50.0-*"), prices.stream().map(FacetBucket::getKey).toList());
+        assertEquals(15, prices.get(1).getCount());
+        assertTrue(result.buckets("missing").isEmpty());
+    }
+
+    @Test
+    void readsIntegerTotalsAndEmptyResponses() throws IOException {
+        SearchResponseReader.Result result = read("{\"hits\":{\"total\":5,\"hits\":[]}}");
+
+        assertEquals(5, result.total());
+        assertTrue(result.totalExact());
+        assertTrue(result.products().isEmpty());
+        assertNull(result.pointInTimeId());
+    }
+
+    @Test
+    void rejectsNonObjectBodies() {
+        assertThrows(JsonParseException.class, () -> read("[]"));
+    }
+
+    private SearchResponseReader.Result read(String json) throws IOException {
+        return reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
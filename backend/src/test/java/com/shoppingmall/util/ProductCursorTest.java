@@ -0,0 +1,76 @@
+package com.shoppingmall.util;
+
+import com.shoppingmall.exception.BadRequestException;
+import com.shoppingmall.model.ProductSummary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductCursorTest {
+
+    @Test
+    void mapsListingSortParameters() {
+        assertEquals(ProductCursor.SORT_PRICE_ASC, ProductCursor.sortOf("price", "asc"));
+        assertEquals(ProductCursor.SORT_PRICE_DESC, ProductCursor.sortOf("price", "desc"));
+        assertEquals(ProductCursor.SORT_RATING, ProductCursor.sortOf("rating", "asc"));
+        assertEquals(ProductCursor.SORT_NAME, ProductCursor.sortOf("name", "desc"));
+        assertEquals(ProductCursor.SORT_CREATED_AT, ProductCursor.sortOf("created_at", "desc"));
+    }
+
+    @Test
+    void roundTripsEachSortKey() {
+        ProductSummary last = product(7L, "Desk | Lamp", new BigDecimal("19.90"), new BigDecimal("4.50"),
+                LocalDateTime.of(2024, 3, 1, 12, 30, 15, 250_000_000));
+
+        assertEquals(new BigDecimal("19.90"), roundTrip(ProductCursor.SORT_PRICE_ASC, last).getPrice());
+        assertEquals(new BigDecimal("19.90"), roundTrip(ProductCursor.SORT_PRICE_DESC, last).getPrice());
+        assertEquals(new BigDecimal("4.50"), roundTrip(ProductCursor.SORT_RATING, last).getRating());
+        assertEquals("Desk | Lamp", roundTrip(ProductCursor.SORT_NAME, last).getName());
+        ProductCursor newest = roundTrip(ProductCursor.SORT_CREATED_AT, last);
+        assertEquals(last.getCreatedAt(), newest.getCreatedAt());
+        assertEquals(7L, newest.getId());
+        assertEquals(ProductCursor.SORT_CREATED_AT, newest.getSort());
+    }
+
+    @Test
+    void keepsNullRatingAndCreationTime() {
+        ProductSummary last = product(9L, "Chair", BigDecimal.TEN, null, null);
+
+        assertNull(roundTrip(ProductCursor.SORT_RATING, last).getRating());
+        assertNull(roundTrip(ProductCursor.SORT_CREATED_AT, last).getCreatedAt());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String token : new String[]{"***", encode("v2|price_asc|1|10"), encode("v1|price_asc|1"),
+                encode("v1|unknown|1|10"), encode("v1|price_asc|x|10"), encode("v1|rating|1|high")}) {
+            assertThrows(BadRequestException.class, () -> ProductCursor.decode(token), token);
+        }
+    }
+
+    private static ProductCursor roundTrip(String sort, ProductSummary last) {
+        return ProductCursor.decode(ProductCursor.after(sort, last).encode());
+    }
+
+    private static ProductSummary product(Long id, String name, BigDecimal price, BigDecimal rating,
+                                          LocalDateTime createdAt) {
+        ProductSummary product = new ProductSummary();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(price);
+        product.setRating(rating);
+        product.setCreatedAt(createdAt);
+        return product;
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.shoppingmall.util;
+
+import com.shoppingmall.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchCursorTest {
+
+    @Test
+    void keepsElasticsearchSortValuesWhole() {
+        Object[] sortValues = {12.5, 1_700_000_000_000L, "Desk Lamp, 50|cm", null, 42L};
+        String token = SearchCursor.searchAfter("desk lamp", sortValues, "pit-id==").encode();
+
+        SearchCursor cursor = SearchCursor.decode(token, "desk lamp");
+        assertTrue(cursor.isElasticsearch());
+        assertArrayEquals(sortValues, cursor.getSortValues());
+        assertEquals("pit-id==", cursor.getPointInTimeId());
+    }
+
+    @Test
+    void worksWithoutPointInTime() {
+        String token = SearchCursor.searchAfter("lamp", new Object[]{3.0, 7L}, null).encode();
+
+        SearchCursor cursor = SearchCursor.decode(token, "lamp");
+        assertNull(cursor.getPointInTimeId());
+        assertArrayEquals(new Object[]{3.0, 7L}, cursor.getSortValues());
+    }
+
+    @Test
+    void roundTripsOffsets() {
+        SearchCursor cursor = SearchCursor.decode(SearchCursor.offset("lamp", 40).encode(), "lamp");
+
+        assertFalse(cursor.isElasticsearch());
+        assertEquals(40, cursor.getOffset());
+        assertNull(cursor.getSortValues());
+    }
+
+    @Test
+    void readsVersionOneElasticsearchCursors() {
+        String query = "Lamp";
+        String hash = Integer.toHexString("lamp".hashCode());
+        String token = encode("v1|es|" + hash + "|1.25|99|pit");
+
+        SearchCursor cursor = SearchCursor.decode(token, query);
+        assertArrayEquals(new Object[]{1.25, 99L}, cursor.getSortValues());
+        assertEquals("pit", cursor.getPointInTimeId());
+    }
+
+    @Test
+    void matchesQueriesAfterNormalizing() {
+        String token = SearchCursor.offset("Desk  Lamp ", 20).encode();
+
+        assertEquals(20, SearchCursor.decode(token, "desk lamp").getOffset());
+    }
+
+    @Test
+    void rejectsCursorFromAnotherQuery() {
+        String token = SearchCursor.searchAfter("desk lamp", new Object[]{1.0, 2L}, null).encode();
+
+        BadRequestException e = assertThrows(BadRequestException.class, () -> SearchCursor.decode(token, "chair"));
+        assertEquals("Cursor does not match the search query", e.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String hash = Integer.toHexString("lamp".hashCode());
+        for (String token : new String[]{"not base64 ***", encode("v2|es|" + hash + "||"),
+                encode("v2|es|" + hash + "||x:1"), encode("v9|offset|" + hash + "|1"),
+                encode("v1|offset|" + hash + "|many")}) {
+            assertThrows(BadRequestException.class, () -> SearchCursor.decode(token, "lamp"), token);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -90,6 +90,12 @@ export const productsAPI = {
   getById: (id: number) =>
     apiRequest<any>(`/products/${id}`),
 
+  getByIds: (ids: number[]) =>
+    apiRequest<{ products: any[]; missingIds: number[]; count: number }>('/products/batch', {
+      method: 'POST',
+      body: JSON.stringify({ ids }),
+    }),
+
   search: (query: string) =>
     apiRequest<{ products: any[] }>(`/products/search?q=${encodeURIComponent(query)}`),
 